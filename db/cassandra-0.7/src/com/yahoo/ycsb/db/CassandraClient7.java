@@ -25,8 +25,10 @@ import java.util.Map;
 import java.util.Set;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Vector;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.Properties;
 
 import org.apache.thrift.transport.TTransport;
@@ -36,6 +38,7 @@ import org.apache.thrift.protocol.TProtocol;
 import org.apache.thrift.protocol.TBinaryProtocol;
 import org.apache.cassandra.thrift.*;
 import java.nio.ByteBuffer;
+import java.io.UnsupportedEncodingException;
 
 
 //XXXX if we do replication, fix the consistency levels
@@ -45,6 +48,11 @@ import java.nio.ByteBuffer;
 public class CassandraClient7 extends DB
 {
   static Random random = new Random();
+
+  /**
+   * The number of connections opened so far, for spreading them over the hosts in turn.
+   */
+  static AtomicInteger connections = new AtomicInteger();
   public static final int Ok = 0;
   public static final int Error = -1;
 
@@ -64,6 +72,13 @@ public class CassandraClient7 extends DB
   public static final String COLUMN_FAMILY_PROPERTY = "cassandra.columnfamily";
   public static final String COLUMN_FAMILY_PROPERTY_DEFAULT = "data";
 
+  /**
+   * How each DB instance picks the host it connects to: "random", or "roundrobin" to spread the
+   * connections evenly over the hosts, which matters when there are few of them (see "connectioncount").
+   */
+  public static final String HOST_SELECTION_PROPERTY = "cassandra.hostselection";
+  public static final String HOST_SELECTION_PROPERTY_DEFAULT = "random";
+
   TTransport tr;
   Cassandra.Client client;
 
@@ -94,7 +109,15 @@ public class CassandraClient7 extends DB
     _debug = Boolean.parseBoolean(getProperties().getProperty("debug", "false"));
 
     String[] allhosts = hosts.split(",");
-    String myhost = allhosts[random.nextInt(allhosts.length)];
+    String myhost;
+    if (getProperties().getProperty(HOST_SELECTION_PROPERTY, HOST_SELECTION_PROPERTY_DEFAULT).compareTo("roundrobin") == 0)
+    {
+      myhost = allhosts[(connections.getAndIncrement() & Integer.MAX_VALUE) % allhosts.length];
+    }
+    else
+    {
+      myhost = allhosts[random.nextInt(allhosts.length)];
+    }
 
     Exception connectexception = null;
 
@@ -405,6 +428,74 @@ System.out.print("(" + new String(column.name.array()) + "=" + new String(column
    * @return Zero on success, a non-zero error code on error
    */
   public int insert(String table, String key, HashMap<String, String> values)
+  {
+    Vector<String> keys = new Vector<String>(1);
+    keys.add(key);
+    Vector<HashMap<String, String>> records = new Vector<HashMap<String, String>>(1);
+    records.add(values);
+
+    int res = write(table, keys, records, 0);
+    if ((res == Ok) && (_debug))
+    {
+      System.out.println("INSERT");
+    }
+    return res;
+  }
+
+  /**
+   * Insert a record whose columns expire, using the Cassandra column TTL.
+   * 
+   * @param table
+   *          The name of the table
+   * @param key
+   *          The record key of the record to insert.
+   * @param values
+   *          A HashMap of field/value pairs to insert in the record
+   * @param ttl
+   *          The number of seconds after which the record expires
+   * @return Zero on success, a non-zero error code on error
+   */
+  public int insertWithTTL(String table, String key, HashMap<String, String> values, int ttl)
+  {
+    Vector<String> keys = new Vector<String>(1);
+    keys.add(key);
+    Vector<HashMap<String, String>> records = new Vector<HashMap<String, String>>(1);
+    records.add(values);
+
+    int res = write(table, keys, records, ttl);
+    if ((res == Ok) && (_debug))
+    {
+      System.out.println("INSERT TTL " + ttl);
+    }
+    return res;
+  }
+
+  /**
+   * Insert several records in the database with a single batch_mutate.
+   * 
+   * @param table
+   *          The name of the table
+   * @param keys
+   *          The record keys of the records to insert.
+   * @param values
+   *          For each record, a HashMap of field/value pairs to insert in it
+   * @return Zero on success, a non-zero error code on error
+   */
+  public int insertBatch(String table, Vector<String> keys, Vector<HashMap<String, String>> values)
+  {
+    int res = write(table, keys, values, 0);
+    if ((res == Ok) && (_debug))
+    {
+      System.out.println("INSERT BATCH " + keys.size());
+    }
+    return res;
+  }
+
+  /**
+   * Write several records with a single batch_mutate, with columns that expire after ttl seconds,
+   * or never if ttl is 0.
+   */
+  int write(String table, Vector<String> keys, Vector<HashMap<String, String>> values, int ttl)
   {
     Exception errorexception = null;
 
@@ -425,36 +516,15 @@ System.out.print("(" + new String(column.name.array()) + "=" + new String(column
 
       try
       {
-        //Map<byte[], Map<String, List<Mutation>>> batch_mutation = new HashMap<byte[], Map<String, List<Mutation>>>();
-Map<ByteBuffer, Map<String, List<Mutation>>> batch_mutation = new HashMap<ByteBuffer, Map<String, List<Mutation>>>();
-        ArrayList<Mutation> v = new ArrayList<Mutation>(values.size());
-        Map<String, List<Mutation>> cfMutationMap = new HashMap<String, List<Mutation>>();
-        cfMutationMap.put(column_family, v);
-       // batch_mutation.put(key.getBytes("UTF-8"), cfMutationMap);
-batch_mutation.put(ByteBuffer.wrap(key.getBytes("UTF-8")), cfMutationMap);
-        for (String field : values.keySet())
+        // keep the keys in the order they are given in, which may have been sorted (sortbatchkeys)
+        Map<ByteBuffer, Map<String, List<Mutation>>> batch_mutation = new LinkedHashMap<ByteBuffer, Map<String, List<Mutation>>>();
+        for (int k = 0; k < keys.size(); k++)
         {
-          String val = values.get(field);
-          //Column col = new Column(field.getBytes("UTF-8"), val.getBytes("UTF-8"), timestamp);
-           Column col = new Column();
-           col.setName(field.getBytes("UTF8"));
-           col.setValue(val.getBytes("UTF8"));
-           col.setTimestamp(timestamp);
-          ColumnOrSuperColumn c = new ColumnOrSuperColumn();
-          c.setColumn(col);
-          c.unsetSuper_column();
-          Mutation m = new Mutation();
-          m.setColumn_or_supercolumn(c);
-          v.add(m);
+          batch_mutation.put(ByteBuffer.wrap(keys.get(k).getBytes("UTF-8")), mutations(values.get(k), timestamp, ttl));
         }
 
         client.batch_mutate(batch_mutation, ConsistencyLevel.ONE);
 
-        if (_debug)
-        {
-          System.out.println("INSERT");
-        }
-
         return Ok;
       } catch (Exception e)
       {
@@ -473,6 +543,37 @@ batch_mutation.put(ByteBuffer.wrap(key.getBytes("UTF-8")), cfMutationMap);
     return Error;
   }
 
+  /**
+   * The mutations that write the given field/value pairs of one record to the column family, with
+   * columns that expire after ttl seconds, or never if ttl is 0.
+   */
+  Map<String, List<Mutation>> mutations(HashMap<String, String> values, long timestamp, int ttl) throws UnsupportedEncodingException
+  {
+    ArrayList<Mutation> v = new ArrayList<Mutation>(values.size());
+    for (String field : values.keySet())
+    {
+      String val = values.get(field);
+      Column col = new Column();
+      col.setName(field.getBytes("UTF8"));
+      col.setValue(val.getBytes("UTF8"));
+      col.setTimestamp(timestamp);
+      if (ttl > 0)
+      {
+        col.setTtl(ttl);
+      }
+      ColumnOrSuperColumn c = new ColumnOrSuperColumn();
+      c.setColumn(col);
+      c.unsetSuper_column();
+      Mutation m = new Mutation();
+      m.setColumn_or_supercolumn(c);
+      v.add(m);
+    }
+
+    Map<String, List<Mutation>> cfMutationMap = new HashMap<String, List<Mutation>>();
+    cfMutationMap.put(column_family, v);
+    return cfMutationMap;
+  }
+
   /**
    * Delete a record from the database.
    * 
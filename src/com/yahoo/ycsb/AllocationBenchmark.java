@@ -0,0 +1,198 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Enumeration;
+import java.util.Properties;
+
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.recordlogs.RecordLogs;
+
+/**
+ * Measures how many bytes the workload allocates per transaction, without a database. The workload runs on
+ * a single thread against a NoopDB, so everything it allocates comes from generating the operations
+ * (plus the few bytes NoopDB puts in read results). After a warmup, the allocations of the thread over the
+ * measured operations are read from the JVM, and reported per operation.
+ *
+ * The trace file is not recorded unless "trace" is set, since recording it is the dominant cost.
+ */
+public class AllocationBenchmark
+{
+	public static void usageMessage()
+	{
+		System.out.println("Usage: java com.yahoo.ycsb.AllocationBenchmark [options]");
+		System.out.println("Options:");
+		System.out.println("  -ops n: measure n transactions (default: 1000000)");
+		System.out.println("  -warmup n: do n transactions before measuring (default: 1000000)");
+		System.out.println("  -measure: measure the operations with DBWrapper, as Client does");
+		System.out.println("  -P propertyfile: load properties from the given file");
+		System.out.println("  -p name=value: specify a property");
+	}
+
+	public static void main(String[] args)
+	{
+		long ops=1000000;
+		long warmup=1000000;
+		boolean measure=false;
+		Properties props=new Properties();
+		Properties fileprops=new Properties();
+
+		int argindex=0;
+		while (argindex<args.length)
+		{
+			if ( (args[argindex].compareTo("-ops")==0) || (args[argindex].compareTo("-warmup")==0) )
+			{
+				String option=args[argindex];
+				argindex++;
+				if (argindex>=args.length)
+				{
+					usageMessage();
+					System.exit(0);
+				}
+				if (option.compareTo("-ops")==0)
+				{
+					ops=Long.parseLong(args[argindex]);
+				}
+				else
+				{
+					warmup=Long.parseLong(args[argindex]);
+				}
+				argindex++;
+			}
+			else if (args[argindex].compareTo("-measure")==0)
+			{
+				measure=true;
+				argindex++;
+			}
+			else if (args[argindex].compareTo("-P")==0)
+			{
+				argindex++;
+				if (argindex>=args.length)
+				{
+					usageMessage();
+					System.exit(0);
+				}
+				try
+				{
+					fileprops.load(new FileInputStream(args[argindex]));
+				}
+				catch (IOException e)
+				{
+					System.out.println(e.getMessage());
+					System.exit(0);
+				}
+				argindex++;
+			}
+			else if (args[argindex].compareTo("-p")==0)
+			{
+				argindex++;
+				if ( (argindex>=args.length) || (args[argindex].indexOf('=')<0) )
+				{
+					usageMessage();
+					System.exit(0);
+				}
+				int eq=args[argindex].indexOf('=');
+				props.setProperty(args[argindex].substring(0,eq),args[argindex].substring(eq+1));
+				argindex++;
+			}
+			else
+			{
+				System.out.println("Unknown option "+args[argindex]);
+				usageMessage();
+				System.exit(0);
+			}
+		}
+
+		for (Enumeration e=props.propertyNames(); e.hasMoreElements(); )
+		{
+			String prop=(String)e.nextElement();
+			fileprops.setProperty(prop,props.getProperty(prop));
+		}
+		props=fileprops;
+		if (props.getProperty("trace")==null)
+		{
+			props.setProperty("trace","false");
+		}
+
+		if (!Client.checkRequiredProperties(props))
+		{
+			System.exit(0);
+		}
+
+		java.lang.management.ThreadMXBean threads=ManagementFactory.getThreadMXBean();
+		if ( (!(threads instanceof com.sun.management.ThreadMXBean)) || (!((com.sun.management.ThreadMXBean)threads).isThreadAllocatedMemorySupported()) )
+		{
+			System.out.println("This JVM cannot measure the memory allocated by a thread.");
+			System.exit(0);
+		}
+		com.sun.management.ThreadMXBean allocation=(com.sun.management.ThreadMXBean)threads;
+		allocation.setThreadAllocatedMemoryEnabled(true);
+
+		Measurements.setProperties(props);
+		RecordLogs.setProperties(props);
+
+		try
+		{
+			Workload workload=(Workload)Class.forName(props.getProperty(Client.WORKLOAD_PROPERTY)).getDeclaredConstructor().newInstance();
+			workload.init(props);
+			Object state=workload.initThread(props,0,1);
+
+			DB db=new NoopDB();
+			db.setProperties(props);
+			if (measure)
+			{
+				db=new DBWrapper(db);
+			}
+			db.init();
+
+			for (long i=0; i<warmup; i++)
+			{
+				workload.doTransaction(db,state);
+			}
+
+			long id=Thread.currentThread().getId();
+			long st=System.nanoTime();
+			long before=allocation.getThreadAllocatedBytes(id);
+			for (long i=0; i<ops; i++)
+			{
+				workload.doTransaction(db,state);
+			}
+			long after=allocation.getThreadAllocatedBytes(id);
+			long en=System.nanoTime();
+
+			db.cleanup();
+			workload.cleanup();
+
+			System.out.println("[ALLOCATION], Operations, "+ops);
+			System.out.println("[ALLOCATION], Bytes, "+(after-before));
+			System.out.println("[ALLOCATION], Bytes/op, "+((double)(after-before))/ops);
+			System.out.println("[ALLOCATION], Time/op(ns), "+((double)(en-st))/ops);
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			e.printStackTrace(System.out);
+			System.exit(0);
+		}
+
+		System.exit(0);
+	}
+}
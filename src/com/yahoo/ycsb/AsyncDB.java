@@ -0,0 +1,198 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An asynchronous layer for accessing a database to be benchmarked. Unlike DB, each operation
+ * returns as soon as it has been issued, and reports its return code later through a Callback.
+ * This allows one client thread to keep many requests outstanding against the database.
+ *
+ * As with DB, each client thread will be given its own instance, the class should be constructed
+ * using a no-argument constructor, and any argument-based initialization should be done by init().
+ * Callbacks may be invoked from any thread, so implementations should not assume anything about
+ * the thread that completes an operation. The result HashMap/Vector passed to read and scan must
+ * be filled in before the callback is invoked.
+ *
+ * Existing synchronous bindings can be used through AsyncDBAdapter.
+ */
+public abstract class AsyncDB
+{
+	/**
+	 * Notified when an asynchronous operation completes.
+	 */
+	public interface Callback
+	{
+		/**
+		 * Called once when the operation has completed.
+		 *
+		 * @param result Zero on success, a non-zero error code on error or "not found", as for the DB methods.
+		 */
+		public void completed(int result);
+	}
+
+	/**
+	 * Properties for configuring this DB.
+	 */
+	Properties _p=new Properties();
+
+	/**
+	 * Set the properties for this DB.
+	 */
+	public void setProperties(Properties p)
+	{
+		_p=p;
+	}
+
+	/**
+	 * Get the set of properties for this DB.
+	 */
+	public Properties getProperties()
+	{
+		return _p;
+	}
+
+	/**
+	 * Initialize any state for this DB.
+	 * Called once per DB instance; there is one DB instance per client thread.
+	 */
+	public void init() throws DBException
+	{
+	}
+
+	/**
+	 * Cleanup any state for this DB.
+	 * Called once per DB instance, after all operations issued through it have completed.
+	 */
+	public void cleanup() throws DBException
+	{
+	}
+
+	/**
+	 * Read a record from the database. Each field/value pair from the result will be stored in a HashMap.
+	 *
+	 * @param table The name of the table
+	 * @param key The record key of the record to read.
+	 * @param fields The list of fields to read, or null for all of them
+	 * @param result A HashMap of field/value pairs for the result
+	 * @param callback Notified with zero on success, a non-zero error code on error or "not found".
+	 */
+	public abstract void read(String table, String key, Set<String> fields, HashMap<String,String> result, Callback callback);
+
+	/**
+	 * Perform a range scan for a set of records in the database. Each field/value pair from the result will be stored in a HashMap.
+	 *
+	 * @param table The name of the table
+	 * @param startkey The record key of the first record to read.
+	 * @param recordcount The number of records to read
+	 * @param fields The list of fields to read, or null for all of them
+	 * @param result A Vector of HashMaps, where each HashMap is a set field/value pairs for one record
+	 * @param callback Notified with zero on success, a non-zero error code on error.
+	 */
+	public abstract void scan(String table, String startkey, int recordcount, Set<String> fields, Vector<HashMap<String,String>> result, Callback callback);
+
+	/**
+	 * Update a record in the database. Any field/value pairs in the specified values HashMap will be written into the record with the specified
+	 * record key, overwriting any existing values with the same field name.
+	 *
+	 * @param table The name of the table
+	 * @param key The record key of the record to write.
+	 * @param values A HashMap of field/value pairs to update in the record
+	 * @param callback Notified with zero on success, a non-zero error code on error.
+	 */
+	public abstract void update(String table, String key, HashMap<String,String> values, Callback callback);
+
+	/**
+	 * Insert a record in the database. Any field/value pairs in the specified values HashMap will be written into the record with the specified
+	 * record key.
+	 *
+	 * @param table The name of the table
+	 * @param key The record key of the record to insert.
+	 * @param values A HashMap of field/value pairs to insert in the record
+	 * @param callback Notified with zero on success, a non-zero error code on error.
+	 */
+	public abstract void insert(String table, String key, HashMap<String,String> values, Callback callback);
+
+	/**
+	 * Insert several records at once. By default the records are inserted one at a time, all outstanding
+	 * together, and the callback is notified once they have all completed.
+	 *
+	 * @param table The name of the table
+	 * @param keys The record keys of the records to insert.
+	 * @param values For each record, a HashMap of field/value pairs to insert in it
+	 * @param callback Notified with zero on success, or the error code of the first insert that failed.
+	 */
+	public void insertBatch(String table, Vector<String> keys, Vector<HashMap<String,String>> values, final Callback callback)
+	{
+		if (keys.size()==0)
+		{
+			callback.completed(0);
+			return;
+		}
+
+		final AtomicInteger remaining=new AtomicInteger(keys.size());
+		final AtomicInteger firsterror=new AtomicInteger(0);
+		Callback each=new Callback()
+		{
+			public void completed(int result)
+			{
+				if (result!=0)
+				{
+					firsterror.compareAndSet(0,result);
+				}
+				if (remaining.decrementAndGet()==0)
+				{
+					callback.completed(firsterror.get());
+				}
+			}
+		};
+		for (int i=0; i<keys.size(); i++)
+		{
+			insert(table,keys.get(i),values.get(i),each);
+		}
+	}
+
+	/**
+	 * Insert a record that expires ttl seconds after it is written. By default it fails with
+	 * DB.NOT_SUPPORTED, as for DB.
+	 *
+	 * @param table The name of the table
+	 * @param key The record key of the record to insert.
+	 * @param values A HashMap of field/value pairs to insert in the record
+	 * @param ttl The number of seconds after which the record expires
+	 * @param callback Notified with zero on success, a non-zero error code on error.
+	 */
+	public void insertWithTTL(String table, String key, HashMap<String,String> values, int ttl, Callback callback)
+	{
+		callback.completed(DB.NOT_SUPPORTED);
+	}
+
+	/**
+	 * Delete a record from the database.
+	 *
+	 * @param table The name of the table
+	 * @param key The record key of the record to delete.
+	 * @param callback Notified with zero on success, a non-zero error code on error.
+	 */
+	public abstract void delete(String table, String key, Callback callback);
+}
@@ -0,0 +1,202 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Makes a set of synchronous DB instances look like one AsyncDB. Operations are run on a small
+ * pool of threads, one per DB instance, so at most as many operations are outstanding as there
+ * are DB instances. This is the default for bindings that only implement DB.
+ */
+public class AsyncDBAdapter extends AsyncDB
+{
+	Vector<DB> _dbs;
+	BlockingQueue<DB> _idle;
+	ExecutorService _executor;
+
+	/**
+	 * @param dbs the (unmeasured) synchronous DB instances to run operations against; one operation
+	 * can be outstanding against each of them at a time
+	 */
+	public AsyncDBAdapter(Vector<DB> dbs)
+	{
+		_dbs=dbs;
+		_idle=new LinkedBlockingQueue<DB>(dbs);
+	}
+
+	public void setProperties(Properties p)
+	{
+		super.setProperties(p);
+		for (DB db : _dbs)
+		{
+			db.setProperties(p);
+		}
+	}
+
+	public void init() throws DBException
+	{
+		for (DB db : _dbs)
+		{
+			db.init();
+		}
+		_executor=Executors.newFixedThreadPool(_dbs.size());
+	}
+
+	public void cleanup() throws DBException
+	{
+		_executor.shutdown();
+		try
+		{
+			_executor.awaitTermination(Long.MAX_VALUE,TimeUnit.MILLISECONDS);
+		}
+		catch (InterruptedException e)
+		{
+			//do nothing
+		}
+
+		for (DB db : _dbs)
+		{
+			db.cleanup();
+		}
+	}
+
+	/**
+	 * One operation against whichever DB instance is idle.
+	 */
+	abstract class Operation implements Runnable
+	{
+		Callback _callback;
+
+		Operation(Callback callback)
+		{
+			_callback=callback;
+		}
+
+		abstract int execute(DB db);
+
+		public void run()
+		{
+			int res=-1;
+			DB db=null;
+			try
+			{
+				db=_idle.take();
+				res=execute(db);
+			}
+			catch (Exception e)
+			{
+				e.printStackTrace();
+				e.printStackTrace(System.out);
+			}
+			finally
+			{
+				if (db!=null)
+				{
+					_idle.add(db);
+				}
+			}
+			_callback.completed(res);
+		}
+	}
+
+	public void read(final String table, final String key, final Set<String> fields, final HashMap<String,String> result, Callback callback)
+	{
+		_executor.execute(new Operation(callback)
+		{
+			int execute(DB db)
+			{
+				return db.read(table,key,fields,result);
+			}
+		});
+	}
+
+	public void scan(final String table, final String startkey, final int recordcount, final Set<String> fields, final Vector<HashMap<String,String>> result, Callback callback)
+	{
+		_executor.execute(new Operation(callback)
+		{
+			int execute(DB db)
+			{
+				return db.scan(table,startkey,recordcount,fields,result);
+			}
+		});
+	}
+
+	public void update(final String table, final String key, final HashMap<String,String> values, Callback callback)
+	{
+		_executor.execute(new Operation(callback)
+		{
+			int execute(DB db)
+			{
+				return db.update(table,key,values);
+			}
+		});
+	}
+
+	public void insert(final String table, final String key, final HashMap<String,String> values, Callback callback)
+	{
+		_executor.execute(new Operation(callback)
+		{
+			int execute(DB db)
+			{
+				return db.insert(table,key,values);
+			}
+		});
+	}
+
+	public void insertBatch(final String table, final Vector<String> keys, final Vector<HashMap<String,String>> values, Callback callback)
+	{
+		_executor.execute(new Operation(callback)
+		{
+			int execute(DB db)
+			{
+				return db.insertBatch(table,keys,values);
+			}
+		});
+	}
+
+	public void insertWithTTL(final String table, final String key, final HashMap<String,String> values, final int ttl, Callback callback)
+	{
+		_executor.execute(new Operation(callback)
+		{
+			int execute(DB db)
+			{
+				return db.insertWithTTL(table,key,values,ttl);
+			}
+		});
+	}
+
+	public void delete(final String table, final String key, Callback callback)
+	{
+		_executor.execute(new Operation(callback)
+		{
+			int execute(DB db)
+			{
+				return db.delete(table,key);
+			}
+		});
+	}
+}
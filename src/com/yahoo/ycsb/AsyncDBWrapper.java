@@ -0,0 +1,198 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.penalty.Penalty;
+import com.yahoo.ycsb.recordlogs.RecordLogs;
+
+/**
+ * Wrapper around a "real" AsyncDB that measures latencies and counts return codes, the same way
+ * DBWrapper does for synchronous DBs. Latency is measured from when the operation is issued until
+ * its callback is invoked, and is attributed to the tenant class it was issued for.
+ */
+public class AsyncDBWrapper extends AsyncDB
+{
+	AsyncDB _db;
+	Measurements _measurements;
+	RecordLogs _recordlogs;
+
+	public AsyncDBWrapper(AsyncDB db)
+	{
+		_db=db;
+		_measurements=Measurements.getMeasurements();
+		_recordlogs=RecordLogs.getRecordLogs();
+	}
+
+	public void setProperties(Properties p)
+	{
+		_db.setProperties(p);
+	}
+
+	public Properties getProperties()
+	{
+		return _db.getProperties();
+	}
+
+	public void init() throws DBException
+	{
+		_db.init();
+	}
+
+	public void cleanup() throws DBException
+	{
+		_db.cleanup();
+	}
+
+	/**
+	 * Measures one operation when it completes, then passes the result on. The start time, the
+	 * intended start time and the profile segment are taken on the issuing thread, since the
+	 * callback may run on another one.
+	 */
+	class MeasuringCallback implements Callback
+	{
+		String _operation;
+		Callback _callback;
+		long _st;
+		long _intended;
+		String _segment;
+		String _tenantclass;
+
+		MeasuringCallback(String operation, Callback callback)
+		{
+			_operation=operation;
+			_callback=callback;
+			_intended=_measurements.getIntendedStartTime();
+			_segment=_measurements.getSegment();
+			_tenantclass=_measurements.getTenantClass();
+			_st=System.nanoTime();
+		}
+
+		public void completed(int result)
+		{
+			long en=System.nanoTime();
+
+			//measure for the class the operation was issued for, not the one of the thread completing it
+			String tenantclass=_measurements.getTenantClass();
+			_measurements.setTenantClass(_tenantclass);
+			try
+			{
+				DBWrapper.measure(_measurements,_operation,_st,en,_intended,_segment);
+				_measurements.reportReturnCode(_operation,result);
+
+				done(en,result);
+			}
+			finally
+			{
+				_measurements.setTenantClass(tenantclass);
+			}
+
+			_callback.completed(result);
+		}
+
+		void done(long en, int result)
+		{
+		}
+	}
+
+	public void read(String table, final String key, Set<String> fields, final HashMap<String,String> result, Callback callback)
+	{
+		_db.read(table,key,fields,result,new MeasuringCallback("READ",callback)
+		{
+			void done(long en, int res)
+			{
+				Penalty penalty=new Penalty(result.get("scheduler"));
+
+				penalty.client_finished_time=System.currentTimeMillis();
+				penalty.client_latency=(en-_st)/1000000;
+				penalty.client_issue_time=penalty.client_finished_time-penalty.client_latency;
+
+				_measurements.measure("Total Penalty",(int)(penalty.getTotalPenalty()*1000));
+				_measurements.reportReturnCode("Total Penalty",res);
+
+				_measurements.measure("QoS Penalty",(int)(penalty.getQoSPenalty()*1000));
+				_measurements.reportReturnCode("QoS Penalty",res);
+
+				_measurements.measure("QoD Penalty",(int)(penalty.getQoDPenalty()*1000));
+				_measurements.reportReturnCode("QoD Penalty",res);
+
+				_recordlogs.recordlog("READ record","key="+key+", "+penalty.toprint());
+			}
+		});
+	}
+
+	public void scan(String table, String startkey, int recordcount, Set<String> fields, Vector<HashMap<String,String>> result, Callback callback)
+	{
+		_db.scan(table,startkey,recordcount,fields,result,new MeasuringCallback("SCAN",callback));
+	}
+
+	public void update(String table, String key, HashMap<String,String> values, Callback callback)
+	{
+		_db.update(table,key,values,new MeasuringCallback("UPDATE",callback));
+	}
+
+	/**
+	 * Measures an insert when it completes, and counts its records for INSERTED if it succeeded. Their
+	 * size is taken when the insert is issued, since the workload may reuse the values afterwards.
+	 */
+	class InsertCallback extends MeasuringCallback
+	{
+		long _rows;
+		long _bytes;
+
+		InsertCallback(String operation, Callback callback, long rows, long bytes)
+		{
+			super(operation,callback);
+			_rows=rows;
+			_bytes=bytes;
+		}
+
+		void done(long en, int result)
+		{
+			if (result==0)
+			{
+				DBWrapper.inserted(_measurements,_rows,_bytes);
+			}
+		}
+	}
+
+	public void insert(String table, String key, HashMap<String,String> values, Callback callback)
+	{
+		_db.insert(table,key,values,new InsertCallback("INSERT",callback,1,DBWrapper.size(key,values)));
+	}
+
+	public void insertBatch(String table, Vector<String> keys, Vector<HashMap<String,String>> values, Callback callback)
+	{
+		_db.insertBatch(table,keys,values,new InsertCallback("INSERT-BATCH",callback,keys.size(),DBWrapper.size(keys,values)));
+	}
+
+	public void insertWithTTL(String table, String key, HashMap<String,String> values, int ttl, Callback callback)
+	{
+		_db.insertWithTTL(table,key,values,ttl,new InsertCallback("INSERT-TTL",callback,1,DBWrapper.size(key,values)));
+	}
+
+	public void delete(String table, String key, Callback callback)
+	{
+		_db.delete(table,key,new MeasuringCallback("DELETE",callback));
+	}
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Presents an AsyncDB to a workload as a DB, so that unmodified workloads can drive it. Each
+ * operation is issued and the call returns immediately with success; the real return code is
+ * counted by the AsyncDBWrapper when the operation completes. At most a fixed number of operations
+ * are in flight: once that many are outstanding, issuing the next one blocks until one completes.
+ *
+ * Since calls return before the operation has completed, workloads that time several operations
+ * themselves (such as the READ-MODIFY-WRITE measurement of CoreWorkload) only see issue time, and
+ * read results are not available to the workload.
+ */
+class AsyncDriverDB extends DB
+{
+	AsyncDB _db;
+	int _outstanding;
+	Semaphore _permits;
+
+	AsyncDB.Callback _release=new AsyncDB.Callback()
+	{
+		public void completed(int result)
+		{
+			_permits.release();
+		}
+	};
+
+	/**
+	 * @param db the measured AsyncDB to issue operations to
+	 * @param outstanding the maximum number of operations in flight at once
+	 */
+	AsyncDriverDB(AsyncDB db, int outstanding)
+	{
+		_db=db;
+		_outstanding=outstanding;
+		_permits=new Semaphore(outstanding);
+	}
+
+	public void setProperties(Properties p)
+	{
+		_db.setProperties(p);
+	}
+
+	public Properties getProperties()
+	{
+		return _db.getProperties();
+	}
+
+	public void init() throws DBException
+	{
+		_db.init();
+	}
+
+	/**
+	 * Wait for all outstanding operations to complete, then clean up the AsyncDB.
+	 */
+	public void cleanup() throws DBException
+	{
+		_permits.acquireUninterruptibly(_outstanding);
+		_db.cleanup();
+	}
+
+	public int read(String table, String key, Set<String> fields, HashMap<String,String> result)
+	{
+		_permits.acquireUninterruptibly();
+		_db.read(table,key,fields,result,_release);
+		return 0;
+	}
+
+	public int scan(String table, String startkey, int recordcount, Set<String> fields, Vector<HashMap<String,String>> result)
+	{
+		_permits.acquireUninterruptibly();
+		_db.scan(table,startkey,recordcount,fields,result,_release);
+		return 0;
+	}
+
+	public int update(String table, String key, HashMap<String,String> values)
+	{
+		_permits.acquireUninterruptibly();
+		_db.update(table,key,values,_release);
+		return 0;
+	}
+
+	public int insert(String table, String key, HashMap<String,String> values)
+	{
+		_permits.acquireUninterruptibly();
+		_db.insert(table,key,values,_release);
+		return 0;
+	}
+
+	public int insertBatch(String table, Vector<String> keys, Vector<HashMap<String,String>> values)
+	{
+		_permits.acquireUninterruptibly();
+		_db.insertBatch(table,keys,values,_release);
+		return 0;
+	}
+
+	public int insertWithTTL(String table, String key, HashMap<String,String> values, int ttl)
+	{
+		_permits.acquireUninterruptibly();
+		_db.insertWithTTL(table,key,values,ttl,_release);
+		return 0;
+	}
+
+	public int delete(String table, String key)
+	{
+		_permits.acquireUninterruptibly();
+		_db.delete(table,key,_release);
+		return 0;
+	}
+}
@@ -221,6 +221,24 @@ public class BasicDB extends DB
 		return 0;
 	}
 
+	/**
+	 * Insert a record that expires after ttl seconds. BasicDB only prints it, like any other insert.
+	 *
+	 * @param table The name of the table
+	 * @param key The record key of the record to insert.
+	 * @param values A HashMap of field/value pairs to insert in the record
+	 * @param ttl The number of seconds after which the record expires
+	 * @return Zero on success, a non-zero error code on error
+	 */
+	public int insertWithTTL(String table, String key, HashMap<String,String> values, int ttl)
+	{
+		if (verbose)
+		{
+			System.out.print("TTL "+ttl+" ");
+		}
+		return insert(table,key,values);
+	}
+
 
 	/**
 	 * Delete a record from the database. 
@@ -19,12 +19,22 @@ package com.yahoo.ycsb;
 
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.text.DecimalFormat;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
 
+import com.yahoo.ycsb.measurements.ClientMonitor;
+import com.yahoo.ycsb.measurements.LiveMetrics;
 import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.StageTimer;
 import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
 import com.yahoo.ycsb.measurements.exporter.TextMeasurementsExporter;
+import com.yahoo.ycsb.rate.ArrivalProcess;
+import com.yahoo.ycsb.rate.ConstantRateProfile;
+import com.yahoo.ycsb.rate.RateProfile;
+import com.yahoo.ycsb.rate.TokenBucket;
 import com.yahoo.ycsb.recordlogs.RecordLogs;
 
 //import org.apache.log4j.BasicConfigurator;
@@ -42,15 +52,16 @@ class StatusThread extends Thread
 	boolean _standardstatus;
 	
 	/**
-	 * The interval for reporting status.
+	 * The interval for reporting status, in milliseconds.
 	 */
-	public static final long sleeptime=10000;
+	long _sleeptime;
 
-	public StatusThread(Vector<Thread> threads, String label, boolean standardstatus)
+	public StatusThread(Vector<Thread> threads, String label, boolean standardstatus, long sleeptime)
 	{
 		_threads=threads;
 		_label=label;
 		_standardstatus=standardstatus;
+		_sleeptime=sleeptime;
 	}
 
 	/**
@@ -69,17 +80,18 @@ class StatusThread extends Thread
 		{
 			alldone=true;
 
-			int totalops=0;
+			long totalops=0;
 
 			//terminate this thread when all the worker threads are done
 			for (Thread t : _threads)
 			{
-				if (t.getState()!=Thread.State.TERMINATED)
+				ClientThread ct=(ClientThread)t;
+
+				if (ct.getRunner().getState()!=Thread.State.TERMINATED)
 				{
 					alldone=false;
 				}
 
-				ClientThread ct=(ClientThread)t;
 				totalops+=ct.getOpsDone();
 			}
 
@@ -118,7 +130,7 @@ class StatusThread extends Thread
 
 			try
 			{
-				sleep(sleeptime);
+				sleep(_sleeptime);
 			}
 			catch (InterruptedException e)
 			{
@@ -131,189 +143,159 @@ class StatusThread extends Thread
 }
 
 /**
- * A thread for executing transactions or data inserts to the database.
- * 
- * @author cooperb
- *
+ * A thread that stops the client threads once the maximum execution time has passed.
  */
-class ClientThread extends Thread
+class TerminatorThread extends Thread
 {
-	static Random random=new Random();
-
-	DB _db;
-	boolean _dotransactions;
-	Workload _workload;
-	int _opcount;
-	double _target;
-
-	int _opsdone;
-	int _threadid;
-	int _threadcount;
-	Object _workloadstate;
-	Properties _props;
-
+	Vector<Thread> _threads;
+	long _maxexecutiontime;
 
 	/**
-	 * Constructor.
-	 * 
-	 * @param db the DB implementation to use
-	 * @param dotransactions true to do transactions, false to insert data
-	 * @param workload the workload to use
-	 * @param threadid the id of this thread 
-	 * @param threadcount the total number of threads 
-	 * @param props the properties defining the experiment
-	 * @param opcount the number of operations (transactions or inserts) to do
-	 * @param targetperthreadperms target number of operations per thread per ms
+	 * @param threads the client threads to stop
+	 * @param maxexecutiontime the time to let them run, in milliseconds
 	 */
-	public ClientThread(DB db, boolean dotransactions, Workload workload, int threadid, int threadcount, Properties props, int opcount, double targetperthreadperms)
-	{
-		//TODO: consider removing threadcount and threadid
-		_db=db;
-		_dotransactions=dotransactions;
-		_workload=workload;
-		_opcount=opcount;
-		_opsdone=0;
-		_target=targetperthreadperms;
-		_threadid=threadid;
-		_threadcount=threadcount;
-		_props=props;
-		//System.out.println("Interval = "+interval);
-	}
-
-	public int getOpsDone()
+	public TerminatorThread(Vector<Thread> threads, long maxexecutiontime)
 	{
-		return _opsdone;
+		_threads=threads;
+		_maxexecutiontime=maxexecutiontime;
+		setDaemon(true);
 	}
 
 	public void run()
 	{
 		try
 		{
-			_db.init();
+			sleep(_maxexecutiontime);
 		}
-		catch (DBException e)
+		catch (InterruptedException e)
 		{
-			e.printStackTrace();
-			e.printStackTrace(System.out);
+			//the threads finished first
 			return;
 		}
 
-		try
+		System.err.println("Maximum execution time reached; stopping.");
+		for (Thread t : _threads)
 		{
-			_workloadstate=_workload.initThread(_props,_threadid,_threadcount);
+			((ClientThread)t).requestStop();
 		}
-		catch (WorkloadException e)
+	}
+}
+
+/**
+ * A thread that periodically saves a checkpoint of the load phase, so that an interrupted load can be
+ * resumed with -resume instead of being started over.
+ */
+class CheckpointThread extends Thread
+{
+	Vector<Thread> _threads;
+	Workload _workload;
+	String _file;
+	long _interval;
+
+	/**
+	 * @param threads the client threads loading the data
+	 * @param workload the workload to checkpoint
+	 * @param file the file to save the checkpoints to
+	 * @param interval the time between checkpoints, in milliseconds
+	 */
+	public CheckpointThread(Vector<Thread> threads, Workload workload, String file, long interval)
+	{
+		_threads=threads;
+		_workload=workload;
+		_file=file;
+		_interval=interval;
+		setDaemon(true);
+	}
+
+	public void run()
+	{
+		while (true)
 		{
-			e.printStackTrace();
-			e.printStackTrace(System.out);
-			return;
+			try
+			{
+				sleep(_interval);
+			}
+			catch (InterruptedException e)
+			{
+				return;
+			}
+			save();
 		}
+	}
 
-		//spread the thread operations out so they don't all hit the DB at the same time
-		try
+	/**
+	 * Save a checkpoint now. The previous checkpoint is replaced atomically, so it survives a crash
+	 * while saving.
+	 *
+	 * @return false if the workload cannot be checkpointed
+	 */
+	synchronized boolean save()
+	{
+		Object[] states=new Object[_threads.size()];
+		for (int i=0; i<states.length; i++)
 		{
-		   //GH issue 4 - throws exception if _target>1 because random.nextInt argument must be >0
-		   //and the sleep() doesn't make sense for granularities < 1 ms anyway
-		   if ( (_target>0) && (_target<=1.0) ) 
-		   {
-		      sleep(random.nextInt((int)(1.0/_target)));
-		   }
+			states[i]=((ClientThread)_threads.get(i)).getWorkloadState();
 		}
-		catch (InterruptedException e)
+
+		Properties checkpoint=_workload.checkpoint(states);
+		if (checkpoint==null)
 		{
-		   //do nothing
+			return false;
 		}
-		
+
 		try
 		{
-			if (_dotransactions)
+			File tmp=new File(_file+".tmp");
+			FileOutputStream out=new FileOutputStream(tmp);
+			try
 			{
-				long st=System.currentTimeMillis();
-
-				while ( (_opcount==0) || (_opsdone<_opcount) )
-				{
-
-					if (!_workload.doTransaction(_db,_workloadstate))
-					{
-						break;
-					}
-
-					_opsdone++;
-
-					//throttle the operations
-					if (_target>0)
-					{
-						//this is more accurate than other throttling approaches we have tried,
-						//like sleeping for (1/target throughput)-operation latency,
-						//because it smooths timing inaccuracies (from sleep() taking an int, 
-						//current time in millis) over many operations
-						while (System.currentTimeMillis()-st<((double)_opsdone)/_target)
-						{
-							try
-							{
-								sleep(1);
-							}
-							catch (InterruptedException e)
-							{
-								//do nothing
-							}
-
-						}
-					}
-				}
+				checkpoint.store(out,"YCSB load checkpoint");
+				out.getFD().sync();
 			}
-			else
+			finally
 			{
-				long st=System.currentTimeMillis();
-
-				while ( (_opcount==0) || (_opsdone<_opcount) )
-				{
-
-					if (!_workload.doInsert(_db,_workloadstate))
-					{
-						break;
-					}
-
-					_opsdone++;
-
-					//throttle the operations
-					if (_target>0)
-					{
-						//this is more accurate than other throttling approaches we have tried,
-						//like sleeping for (1/target throughput)-operation latency,
-						//because it smooths timing inaccuracies (from sleep() taking an int, 
-						//current time in millis) over many operations
-						while (System.currentTimeMillis()-st<((double)_opsdone)/_target)
-						{
-							try 
-							{
-								sleep(1);
-							}
-							catch (InterruptedException e)
-							{
-								//do nothing
-							}
-						}
-					}
-				}
+				out.close();
 			}
+			Files.move(tmp.toPath(),new File(_file).toPath(),StandardCopyOption.REPLACE_EXISTING,StandardCopyOption.ATOMIC_MOVE);
 		}
-		catch (Exception e)
+		catch (IOException e)
 		{
 			e.printStackTrace();
 			e.printStackTrace(System.out);
-			System.exit(0);
 		}
+		return true;
+	}
+}
+
+/**
+ * Runs when the JVM is asked to shut down, e.g. by SIGTERM or Ctrl-C, and stops the run gracefully: the
+ * client threads stop issuing operations, in-flight operations finish, and the results so far are exported
+ * before the JVM exits. Killing the process with SIGKILL still ends it at once.
+ */
+class ShutdownHook extends Thread
+{
+	/**
+	 * Counted down by Client when it has nothing left to do before exiting.
+	 */
+	CountDownLatch _done=new CountDownLatch(1);
+
+	public void run()
+	{
+		if (_done.getCount()==0)
+		{
+			//a normal exit
+			return;
+		}
+
+		System.err.println("Shutting down: letting in-flight operations finish and exporting the results so far...");
+		Client.requestStop();
 
 		try
 		{
-			_db.cleanup();
+			_done.await();
 		}
-		catch (DBException e)
+		catch (InterruptedException e)
 		{
-			e.printStackTrace();
-			e.printStackTrace(System.out);
-			return;
 		}
 	}
 }
@@ -337,6 +319,230 @@ public class Client
 	 */
 	public static final String INSERT_COUNT_PROPERTY="insertcount";
 
+	/**
+	 * Run open-loop: each operation is given an intended start time from a fixed schedule derived from
+	 * the target throughput, and latencies are additionally reported from that intended start time
+	 * (as "INTENDED-" measurements). This avoids coordinated omission, where a stalled store slows down
+	 * the client and the stall never shows up in the latency histograms. Requires a target.
+	 */
+	public static final String OPEN_LOOP_PROPERTY="openloop";
+
+	public static final String OPEN_LOOP_PROPERTY_DEFAULT="false";
+
+	/**
+	 * Measure the overhead of the client itself: run against a NoopDB, and report the throughput of each
+	 * thread and the time spent per operation in each stage of the client (see StageTimer).
+	 */
+	public static final String OVERHEAD_PROPERTY="overhead";
+
+	public static final String OVERHEAD_PROPERTY_DEFAULT="false";
+
+	/**
+	 * If set, the load phase saves a checkpoint to this file periodically, from which it can be resumed
+	 * with -resume after an interruption, instead of being started over.
+	 */
+	public static final String CHECKPOINT_FILE_PROPERTY="checkpoint.file";
+
+	/**
+	 * The time between checkpoints, in seconds.
+	 */
+	public static final String CHECKPOINT_INTERVAL_PROPERTY="checkpoint.interval";
+
+	public static final String CHECKPOINT_INTERVAL_PROPERTY_DEFAULT="60";
+
+	/**
+	 * Resume the load phase from the checkpoint in the checkpoint file.
+	 */
+	public static final String RESUME_PROPERTY="resume";
+
+	/**
+	 * Drive the DB asynchronously: each client thread issues operations without waiting for them to
+	 * complete, keeping up to "outstanding" of them in flight. DBs that extend AsyncDB are used directly;
+	 * synchronous DBs are run through an AsyncDBAdapter with one DB instance per outstanding operation.
+	 */
+	public static final String ASYNC_PROPERTY="async";
+
+	public static final String ASYNC_PROPERTY_DEFAULT="false";
+
+	/**
+	 * The maximum number of operations each client thread keeps in flight when running asynchronously.
+	 */
+	public static final String OUTSTANDING_PROPERTY="outstanding";
+
+	public static final String OUTSTANDING_PROPERTY_DEFAULT="10";
+
+	/**
+	 * Run each client session on its own virtual thread rather than on a platform thread, so that
+	 * "threadcount" can be set to tens of thousands of concurrent sessions. Requires Java 21 or later;
+	 * on older JVMs the client refuses to run rather than quietly measuring platform threads instead.
+	 */
+	public static final String VIRTUAL_THREADS_PROPERTY="virtualthreads";
+
+	public static final String VIRTUAL_THREADS_PROPERTY_DEFAULT="false";
+
+	/**
+	 * If set, client sessions share this many DB instances (connections) instead of getting one each.
+	 * A session holds a connection only for the duration of one operation.
+	 */
+	public static final String CONNECTION_COUNT_PROPERTY="connectioncount";
+
+	/**
+	 * How long, in milliseconds, a session waits for a pooled connection before its operation fails.
+	 * 0 means as long as it takes.
+	 */
+	public static final String CONNECTION_TIMEOUT_PROPERTY="connectionpool.timeout";
+
+	public static final String CONNECTION_TIMEOUT_PROPERTY_DEFAULT="0";
+
+	/**
+	 * A comma-separated list of phases to run in sequence in this one client process, e.g.
+	 * "load,warmup,t1000,t2000". Each phase uses the base properties, overridden by any properties named
+	 * "phase.&lt;name&gt;.&lt;property&gt;" (for example "phase.t1000.target=1000"), and exports its own set of
+	 * measurements, to "exportfile.&lt;name&gt;" if an export file is given. The workload is initialized once
+	 * and shared by all phases. The -load and -t options are ignored when a run plan is given.
+	 */
+	public static final String RUN_PLAN_PROPERTY="runplan";
+
+	/**
+	 * The type of a run plan phase, "load" or "t" (transactions). Defaults to "load" for a phase named
+	 * "load", and to "t" otherwise.
+	 */
+	public static final String PHASE_TYPE_PROPERTY="type";
+
+	/**
+	 * Whether to export the measurements of a run plan phase. Set it to false to discard a warmup phase.
+	 */
+	public static final String PHASE_EXPORT_PROPERTY="export";
+
+	public static final String PHASE_EXPORT_PROPERTY_DEFAULT="true";
+
+	/**
+	 * The interval between status reports (-s) and between windows of the live metrics, in seconds.
+	 */
+	public static final String STATUS_INTERVAL_PROPERTY="status.interval";
+
+	public static final String STATUS_INTERVAL_PROPERTY_DEFAULT="10";
+
+	/**
+	 * The longest time a phase may run, in seconds. When it is reached, the client threads stop after their
+	 * operations in progress, and the results so far are reported. 0 means no limit; the phase then runs until
+	 * the operation count is reached (which may be 0 as well, to run until the process is stopped).
+	 */
+	public static final String MAX_EXECUTION_TIME_PROPERTY="maxexecutiontime";
+
+	public static final String MAX_EXECUTION_TIME_PROPERTY_DEFAULT="0";
+
+	/**
+	 * What a phase did.
+	 */
+	static class PhaseResult
+	{
+		/**
+		 * The run time of the phase, in milliseconds.
+		 */
+		long _runtime;
+
+		/**
+		 * The number of operations done, which is less than asked for if the phase was stopped early.
+		 */
+		long _opsdone;
+	}
+
+	static volatile boolean stopping=false;
+
+	/**
+	 * The client threads of the phase in progress, if any.
+	 */
+	static volatile Vector<Thread> runningthreads=null;
+
+	static ShutdownHook shutdownhook=null;
+
+	/**
+	 * Stop the run gracefully: the phase in progress ends after its operations in progress, and no
+	 * further phases are started.
+	 */
+	static void requestStop()
+	{
+		stopping=true;
+		Vector<Thread> threads=runningthreads;
+		if (threads!=null)
+		{
+			for (Thread t : threads)
+			{
+				((ClientThread)t).requestStop();
+			}
+		}
+	}
+
+	/**
+	 * Whether the run has been asked to stop.
+	 */
+	static boolean isStopping()
+	{
+		return stopping;
+	}
+
+	/**
+	 * Exit the JVM. Once the run has started, use this rather than System.exit(), so that the shutdown hook
+	 * does not wait for a graceful stop that is not going to happen.
+	 */
+	static void exit(int status)
+	{
+		if (shutdownhook!=null)
+		{
+			shutdownhook._done.countDown();
+		}
+		System.exit(status);
+	}
+
+	/**
+	 * Create an unstarted virtual thread running r. Looked up reflectively so that the client still builds
+	 * and runs on older JVMs, as long as virtual threads are not asked for there (see useVirtualThreads()).
+	 */
+	static Thread newVirtualThread(Runnable r)
+	{
+		try
+		{
+			Object builder=Thread.class.getMethod("ofVirtual").invoke(null);
+			return (Thread)Class.forName("java.lang.Thread$Builder").getMethod("unstarted",Runnable.class).invoke(builder,r);
+		}
+		catch (Exception e)
+		{
+			throw new IllegalStateException("Could not create a virtual thread",e);
+		}
+	}
+
+	/**
+	 * Whether the sessions are to run on virtual threads. Exits if they are, but this JVM cannot run them,
+	 * so that platform threads are never measured under the label of virtual ones.
+	 */
+	static boolean useVirtualThreads(Properties props)
+	{
+		boolean virtual=Boolean.parseBoolean(props.getProperty(VIRTUAL_THREADS_PROPERTY,VIRTUAL_THREADS_PROPERTY_DEFAULT));
+		if (virtual && !virtualThreadsSupported())
+		{
+			System.out.println("Virtual threads were asked for with \""+VIRTUAL_THREADS_PROPERTY+"\", but this JVM ("+System.getProperty("java.version")+") does not support them; use Java 21 or later.");
+			exit(0);
+		}
+		return virtual;
+	}
+
+	/**
+	 * Whether this JVM can run virtual threads.
+	 */
+	static boolean virtualThreadsSupported()
+	{
+		try
+		{
+			Thread.class.getMethod("ofVirtual");
+			return true;
+		}
+		catch (NoSuchMethodException e)
+		{
+			return false;
+		}
+	}
+
 	public static void usageMessage()
 	{
 		System.out.println("Usage: java com.yahoo.ycsb.Client [options]");
@@ -354,13 +560,52 @@ public class Client
 		System.out.println("  -p name=value:  specify a property to be passed to the DB and workloads;");
 		System.out.println("                  multiple properties can be specified, and override any");
 		System.out.println("                  values in the propertyfile");
-		System.out.println("  -s:  show status during run (default: no status)");
+		System.out.println("  -openloop:  issue operations on a fixed schedule derived from the target, and also report\n" +
+				"             latency from each operation's intended start time - can also be specified as\n" +
+				"             the \""+OPEN_LOOP_PROPERTY+"\" property using -p");
+		System.out.println("  -overhead:  measure the overhead of the client: run against a no-op DB, and report the\n" +
+				"             throughput of each thread and the time per operation spent in each stage of\n" +
+				"             the client - can also be specified as the \""+OVERHEAD_PROPERTY+"\" property using -p");
+		System.out.println("  -resume:  continue an interrupted load phase from the last checkpoint saved to the\n" +
+				"             \""+CHECKPOINT_FILE_PROPERTY+"\" file (every \""+CHECKPOINT_INTERVAL_PROPERTY+"\" seconds, default: 60),\n" +
+				"             without redoing the inserts it had done");
+		System.out.println("  -s:  show status during run (default: no status), every \""+STATUS_INTERVAL_PROPERTY+"\" seconds (default: 10)");
 		System.out.println("  -l label:  use label for status (e.g. to label one experiment out of a whole batch)");
 		System.out.println("");
 		System.out.println("Required properties:");
 		System.out.println("  "+WORKLOAD_PROPERTY+": the name of the workload class to use (e.g. com.yahoo.ycsb.workloads.CoreWorkload)");
 		System.out.println("");
+		System.out.println("To serve live metrics over HTTP during the run, set the \""+LiveMetrics.METRICS_PORT_PROPERTY+"\" property;");
+		System.out.println("they are served to this machine only, unless \""+LiveMetrics.METRICS_BIND_PROPERTY+"\" sets another address (e.g. 0.0.0.0)");
+		System.out.println("");
+		System.out.println("The client's own CPU, GC, allocation rate and scheduling lag are reported as \"CLIENT\" measurements,");
+		System.out.println("with a warning if it looks saturated; set \""+ClientMonitor.CLIENT_MONITOR_PROPERTY+"\" to false to turn this off");
+		System.out.println("");
+		System.out.println("To change the target, operation mix, active threads or QoS bounds during the run, set the");
+		System.out.println("\""+ControlServer.CONTROL_PORT_PROPERTY+"\" property and send name=value lines to that local port");
+		System.out.println("");
+		System.out.println("To issue operations as a Poisson, bursty (MMPP) or recorded arrival process instead of evenly");
+		System.out.println("spaced, set the \""+ArrivalProcess.ARRIVAL_PROCESS_PROPERTY+"\" property; achieved and intended inter-arrival");
+		System.out.println("times are then reported as INTERARRIVAL-ACTUAL and INTERARRIVAL-INTENDED");
+		System.out.println("");
+		System.out.println("To vary the target throughput during the run (ramp, step, sine, burst or a trace), set the");
+		System.out.println("\""+RateProfile.RATE_PROFILE_PROPERTY+"\" property; latencies are then also reported per profile segment");
+		System.out.println("");
+		System.out.println("To find the highest throughput that meets a latency SLO, set the \""+ThroughputSearch.SLO_PROPERTY+"\" property,");
+		System.out.println("e.g. to \"READ:99:10\" (99th percentile READ latency of at most 10 ms)");
+		System.out.println("");
+		System.out.println("To share a smaller number of DB connections among the threads, set the \""+CONNECTION_COUNT_PROPERTY+"\" property;");
+		System.out.println("the wait for a connection is reported as POOL-WAIT and bounded by \""+CONNECTION_TIMEOUT_PROPERTY+"\" (ms), and");
+		System.out.println("\""+DBConnectionPool.DISPATCH_PROPERTY+"\" orders the waiting operations: fifo (default), edf (earliest deadline first)");
+		System.out.println("or weighted (deadline divided by penalty weight)");
+		System.out.println("");
+		System.out.println("To run several phases (e.g. load, warmup and a throughput sweep) in one client, set the");
+		System.out.println("\""+RUN_PLAN_PROPERTY+"\" property to a list of phases and override properties per phase with");
+		System.out.println("\"phase.<name>.<property>\"");
+		System.out.println("");
 		System.out.println("To run the transaction phase from multiple servers, start a separate client on each.");
+		System.out.println("Alternatively, use com.yahoo.ycsb.Coordinator to divide the work among several clients");
+		System.out.println("and merge their results.");
 		System.out.println("To run the load phase from multiple servers, start a separate client on each; additionally,");
 		System.out.println("use the \"insertcount\" and \"insertstart\" properties to divide up the records to be inserted");
 	}
@@ -382,7 +627,17 @@ public class Client
 	 * loaded from conf.
 	 * @throws IOException Either failed to write to output stream or failed to close it.
 	 */
-	private static void exportMeasurements(Properties props, int opcount, long runtime)
+	static void exportMeasurements(Properties props, long opcount, long runtime)
+			throws IOException
+	{
+		exportMeasurements(props, opcount, runtime, null);
+	}
+
+	/**
+	 * Exports the measurements, preceded by the trajectory and result of a throughput search
+	 * if search is not null.
+	 */
+	static void exportMeasurements(Properties props, long opcount, long runtime, ThroughputSearch search)
 			throws IOException
 	{
 		MeasurementsExporter exporter = null;
@@ -393,7 +648,19 @@ public class Client
 			String exportFile = props.getProperty("exportfile");
 			if (exportFile == null)
 			{
-				out = System.out;
+				//don't let the exporter close stdout, there may be more phases to export
+				out = new FilterOutputStream(System.out)
+				{
+					public void write(byte[] b, int off, int len) throws IOException
+					{
+						this.out.write(b, off, len);
+					}
+
+					public void close() throws IOException
+					{
+						flush();
+					}
+				};
 			} else
 			{
 				out = new FileOutputStream(exportFile);
@@ -412,11 +679,38 @@ public class Client
 				exporter = new TextMeasurementsExporter(out);
 			}
 
-			exporter.write("OVERALL", "RunTime(ms)", runtime);
+			exporter.write("OVERALL", "RunTime(ms)", (double) runtime);
 			double throughput = 1000.0 * ((double) opcount) / ((double) runtime);
 			exporter.write("OVERALL", "Throughput(ops/sec)", throughput);
 
+			if (search != null)
+			{
+				search.exportResults(exporter);
+			}
+
+			long rows = Measurements.getMeasurements().getCount(DBWrapper.INSERTED_ROWS);
+			if (rows > 0)
+			{
+				long bytes = Measurements.getMeasurements().getCount(DBWrapper.INSERTED_BYTES);
+				exporter.write("INSERTED", "Rows", (double) rows);
+				exporter.write("INSERTED", "Rows/sec", 1000.0 * ((double) rows) / ((double) runtime));
+				exporter.write("INSERTED", "Bytes", (double) bytes);
+				exporter.write("INSERTED", "Bytes/sec", 1000.0 * ((double) bytes) / ((double) runtime));
+			}
+
+			for (String tenantclass : Measurements.getMeasurements().getTenantClasses())
+			{
+				long ops = Measurements.getMeasurements().getCount(Measurements.CLASS_OPERATIONS + tenantclass);
+				exporter.write("OVERALL@" + tenantclass, "Operations", (double) ops);
+				exporter.write("OVERALL@" + tenantclass, "Throughput(ops/sec)", 1000.0 * ((double) ops) / ((double) runtime));
+			}
+
 			Measurements.getMeasurements().exportMeasurements(exporter);
+
+			if (StageTimer.isEnabled())
+			{
+				StageTimer.export(exporter, runtime);
+			}
 			
 			/*Chen add*/
 			RecordLogs.getRecordLogs().exportRecordLogs(exporter);
@@ -434,12 +728,9 @@ public class Client
 	@SuppressWarnings("unchecked")
 	public static void main(String[] args)
 	{
-		String dbname;
 		Properties props=new Properties();
 		Properties fileprops=new Properties();
 		boolean dotransactions=true;
-		int threadcount=1;
-		int target=0;
 		boolean status=false;
 		String label="";
 
@@ -483,17 +774,32 @@ public class Client
 				dotransactions=false;
 				argindex++;
 			}
-			else if (args[argindex].compareTo("-t")==0)
+			else if (args[argindex].compareTo("-resume")==0)
 			{
-				dotransactions=true;
+				props.setProperty(RESUME_PROPERTY,"true");
 				argindex++;
 			}
-			else if (args[argindex].compareTo("-s")==0)
+			else if (args[argindex].compareTo("-overhead")==0)
 			{
-				status=true;
+				props.setProperty(OVERHEAD_PROPERTY,"true");
 				argindex++;
 			}
-			else if (args[argindex].compareTo("-db")==0)
+			else if (args[argindex].compareTo("-t")==0)
+			{
+				dotransactions=true;
+				argindex++;
+			}
+			else if (args[argindex].compareTo("-openloop")==0)
+			{
+				props.setProperty(OPEN_LOOP_PROPERTY,"true");
+				argindex++;
+			}
+			else if (args[argindex].compareTo("-s")==0)
+			{
+				status=true;
+				argindex++;
+			}
+			else if (args[argindex].compareTo("-db")==0)
 			{
 				argindex++;
 				if (argindex>=args.length)
@@ -601,23 +907,40 @@ public class Client
 
 		props=fileprops;
 
+		if (Boolean.parseBoolean(props.getProperty(OVERHEAD_PROPERTY,OVERHEAD_PROPERTY_DEFAULT)))
+		{
+			props.setProperty("db",NoopDB.class.getName());
+		}
+
 		if (!checkRequiredProperties(props))
 		{
 			System.exit(0);
 		}
 
-		//get number of threads, target and db
-		threadcount=Integer.parseInt(props.getProperty("threadcount","1"));
-		dbname=props.getProperty("db","com.yahoo.ycsb.BasicDB");
-		target=Integer.parseInt(props.getProperty("target","0"));
-		
-		//compute the target throughput
-		double targetperthreadperms=-1;
-		if (target>0)
+		useVirtualThreads(props);
+
+		//in a coordinated run, get our share of the work before setting anything up
+		CoordinatorClient coordinator=null;
+		if (props.getProperty(Coordinator.COORDINATOR_PROPERTY)!=null)
 		{
-			double targetperthread=((double)target)/((double)threadcount);
-			targetperthreadperms=targetperthread/1000.0;
-		}	 
+			if ( (props.getProperty(RUN_PLAN_PROPERTY)!=null) || (props.getProperty(ThroughputSearch.SLO_PROPERTY)!=null) )
+			{
+				System.out.println("A run plan or throughput search cannot be used in a coordinated run.");
+				System.exit(0);
+			}
+
+			try
+			{
+				coordinator=new CoordinatorClient(props.getProperty(Coordinator.COORDINATOR_PROPERTY));
+				coordinator.register(props,dotransactions);
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+				e.printStackTrace(System.out);
+				System.exit(0);
+			}
+		}
 
 		System.out.println("YCSB Client 0.1");
 		System.out.print("Command line:");
@@ -672,6 +995,38 @@ public class Client
 			System.exit(0);
 		}
 
+		//continue an interrupted load where its last checkpoint left off
+		if (Boolean.parseBoolean(props.getProperty(RESUME_PROPERTY,"false")))
+		{
+			if ( (dotransactions) || (props.getProperty(CHECKPOINT_FILE_PROPERTY)==null) )
+			{
+				System.out.println("-resume requires -load and the \""+CHECKPOINT_FILE_PROPERTY+"\" property");
+				System.exit(0);
+			}
+
+			try
+			{
+				Properties checkpoint=new Properties();
+				FileInputStream in=new FileInputStream(props.getProperty(CHECKPOINT_FILE_PROPERTY));
+				try
+				{
+					checkpoint.load(in);
+				}
+				finally
+				{
+					in.close();
+				}
+				workload.resume(checkpoint);
+				System.err.println("Resuming the load after "+checkpoint.getProperty("done","?")+" records.");
+			}
+			catch (Exception e)
+			{
+				e.printStackTrace();
+				e.printStackTrace(System.out);
+				System.exit(0);
+			}
+		}
+
 		try
 		{
 			workload.init(props);
@@ -685,25 +1040,343 @@ public class Client
 		
 		warningthread.interrupt();
 
+		//serve live metrics while running, if asked to
+		LiveMetrics livemetrics=null;
+		if (props.getProperty(LiveMetrics.METRICS_PORT_PROPERTY)!=null)
+		{
+			try
+			{
+				long interval=(long)(Double.parseDouble(props.getProperty(STATUS_INTERVAL_PROPERTY,STATUS_INTERVAL_PROPERTY_DEFAULT))*1000);
+				livemetrics=new LiveMetrics(props.getProperty(LiveMetrics.METRICS_BIND_PROPERTY),Integer.parseInt(props.getProperty(LiveMetrics.METRICS_PORT_PROPERTY)),interval);
+				livemetrics.start();
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+				e.printStackTrace(System.out);
+				System.exit(0);
+			}
+		}
+
+		//accept changes to the run while it is in progress, if asked to
+		ControlServer controlserver=null;
+		if (props.getProperty(ControlServer.CONTROL_PORT_PROPERTY)!=null)
+		{
+			try
+			{
+				controlserver=new ControlServer(Integer.parseInt(props.getProperty(ControlServer.CONTROL_PORT_PROPERTY)),workload);
+				controlserver.start();
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+				e.printStackTrace(System.out);
+				System.exit(0);
+			}
+		}
+
+		//from here on, stop gracefully when asked to shut down
+		shutdownhook=new ShutdownHook();
+		Runtime.getRuntime().addShutdownHook(shutdownhook);
+
 		//run the workload
 
 		System.err.println("Starting test.");
 
-		int opcount;
+		String runplan=props.getProperty(RUN_PLAN_PROPERTY);
+		if (props.getProperty(ThroughputSearch.SLO_PROPERTY)!=null)
+		{
+			ThroughputSearch search=null;
+			try
+			{
+				search=new ThroughputSearch(props,workload,label,status);
+			}
+			catch (IllegalArgumentException e)
+			{
+				e.printStackTrace();
+				e.printStackTrace(System.out);
+				exit(0);
+			}
+
+			search.run();
+
+			try
+			{
+				exportMeasurements(props, search.getOpCount(), search.getRunTime(), search);
+			} catch (IOException e)
+			{
+				System.err.println("Could not export measurements, error: " + e.getMessage());
+				e.printStackTrace();
+				exit(-1);
+			}
+		}
+		else if (runplan==null)
+		{
+			if (coordinator!=null)
+			{
+				try
+				{
+					coordinator.awaitStart();
+				}
+				catch (IOException e)
+				{
+					e.printStackTrace();
+					e.printStackTrace(System.out);
+					exit(0);
+				}
+			}
+
+			PhaseResult result=runPhase(props,workload,dotransactions,label,status);
+
+			if (coordinator!=null)
+			{
+				try
+				{
+					coordinator.sendResults(result._runtime,result._opsdone,Measurements.getMeasurements());
+				}
+				catch (IOException e)
+				{
+					System.err.println("Could not send measurements to the coordinator, error: " + e.getMessage());
+					e.printStackTrace();
+				}
+			}
+
+			try
+			{
+				exportMeasurements(props, result._opsdone, result._runtime);
+			} catch (IOException e)
+			{
+				System.err.println("Could not export measurements, error: " + e.getMessage());
+				e.printStackTrace();
+				exit(-1);
+			}
+		}
+		else
+		{
+			for (String phase : runplan.split(","))
+			{
+				if (isStopping())
+				{
+					break;
+				}
+
+				phase=phase.trim();
+				Properties phaseprops=getPhaseProperties(props,phase);
+				boolean phasetransactions=phaseprops.getProperty(PHASE_TYPE_PROPERTY,phase.equals("load")?"load":"t").compareTo("load")!=0;
+
+				//each phase gets its own measurements
+				Measurements.setProperties(phaseprops);
+				Measurements.resetMeasurements();
+				RecordLogs.setProperties(phaseprops);
+				RecordLogs.resetRecordLogs();
+
+				System.err.println("Starting phase "+phase+".");
+
+				PhaseResult result=runPhase(phaseprops,workload,phasetransactions,label+" "+phase,status);
+
+				if (Boolean.parseBoolean(phaseprops.getProperty(PHASE_EXPORT_PROPERTY,PHASE_EXPORT_PROPERTY_DEFAULT)))
+				{
+					if (props.getProperty("exportfile")!=null)
+					{
+						phaseprops.setProperty("exportfile",props.getProperty("exportfile")+"."+phase);
+					}
+					else
+					{
+						System.out.println("[PHASE] "+phase);
+					}
+
+					try
+					{
+						exportMeasurements(phaseprops, result._opsdone, result._runtime);
+					} catch (IOException e)
+					{
+						System.err.println("Could not export measurements, error: " + e.getMessage());
+						e.printStackTrace();
+						exit(-1);
+					}
+				}
+			}
+		}
+
+		if (livemetrics!=null)
+		{
+			livemetrics.shutdown();
+		}
+
+		if (controlserver!=null)
+		{
+			controlserver.shutdown();
+		}
+
+		try
+		{
+			workload.cleanup();
+		}
+		catch (WorkloadException e)
+		{
+			e.printStackTrace();
+			e.printStackTrace(System.out);
+			exit(0);
+		}
+
+		exit(0);
+	}
+
+	/**
+	 * The number of operations (transactions or inserts) a phase should do in total.
+	 */
+	public static long getOpCount(Properties props, boolean dotransactions)
+	{
 		if (dotransactions)
 		{
-			opcount=Integer.parseInt(props.getProperty(OPERATION_COUNT_PROPERTY,"0"));
+			return Long.parseLong(props.getProperty(OPERATION_COUNT_PROPERTY,"0"));
 		}
 		else
 		{
 			if (props.containsKey(INSERT_COUNT_PROPERTY))
 			{
-				opcount=Integer.parseInt(props.getProperty(INSERT_COUNT_PROPERTY,"0"));
+				return Long.parseLong(props.getProperty(INSERT_COUNT_PROPERTY,"0"));
 			}
 			else
 			{
-				opcount=Integer.parseInt(props.getProperty(RECORD_COUNT_PROPERTY,"0"));
+				return Long.parseLong(props.getProperty(RECORD_COUNT_PROPERTY,"0"));
+			}
+		}
+	}
+
+	/**
+	 * The properties for one phase of a run plan: the base properties, overridden by any
+	 * "phase.<name>.<property>" properties for that phase.
+	 */
+	@SuppressWarnings("unchecked")
+	static Properties getPhaseProperties(Properties props, String phase)
+	{
+		Properties phaseprops=new Properties();
+		String prefix="phase."+phase+".";
+
+		for (Enumeration e=props.propertyNames(); e.hasMoreElements(); )
+		{
+			String prop=(String)e.nextElement();
+			phaseprops.setProperty(prop,props.getProperty(prop));
+		}
+
+		for (Enumeration e=props.propertyNames(); e.hasMoreElements(); )
+		{
+			String prop=(String)e.nextElement();
+			if (prop.startsWith(prefix))
+			{
+				phaseprops.setProperty(prop.substring(prefix.length()),props.getProperty(prop));
+			}
+		}
+
+		return phaseprops;
+	}
+
+	/**
+	 * Run one load or transaction phase of the workload to completion, using the client threads, target and DB
+	 * given by props. The workload must already have been initialized.
+	 *
+	 * @return the run time of the phase and the number of operations done
+	 */
+	static PhaseResult runPhase(Properties props, Workload workload, boolean dotransactions, String label, boolean status)
+	{
+		//get number of threads, target and db
+		int threadcount=Integer.parseInt(props.getProperty("threadcount","1"));
+		String dbname=props.getProperty("db","com.yahoo.ycsb.BasicDB");
+		int target=Integer.parseInt(props.getProperty("target","0"));
+		
+		//a rate profile or an arrival process replaces the per-thread target with a token bucket shared by all threads
+		TokenBucket bucket=null;
+		try
+		{
+			RateProfile profile=RateProfile.newRateProfile(props);
+			String arrivals=props.getProperty(ArrivalProcess.ARRIVAL_PROCESS_PROPERTY);
+			if ( (profile==null) && (arrivals!=null) )
+			{
+				//a trace of inter-arrival times sets its own rate
+				if ( (target<=0) && (arrivals.compareTo("trace")!=0) )
+				{
+					throw new IllegalArgumentException("Arrival process \""+arrivals+"\" requires a target throughput");
+				}
+				profile=new ConstantRateProfile(Math.max(1,target));
+			}
+			if (profile!=null)
+			{
+				int bucketsize=Integer.parseInt(props.getProperty(RateProfile.BUCKET_SIZE_PROPERTY,RateProfile.BUCKET_SIZE_PROPERTY_DEFAULT));
+				bucket=new TokenBucket(profile,ArrivalProcess.newArrivalProcess(props),bucketsize,Boolean.parseBoolean(props.getProperty(OPEN_LOOP_PROPERTY,OPEN_LOOP_PROPERTY_DEFAULT)));
+			}
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			e.printStackTrace(System.out);
+			exit(0);
+		}
+
+		//compute the target throughput
+		double targetperthreadperms=-1;
+		if (bucket!=null)
+		{
+			//throttled by the bucket
+		}
+		else if (target>0)
+		{
+			double targetperthread=((double)target)/((double)threadcount);
+			targetperthreadperms=targetperthread/1000.0;
+		}	 
+		else if (Boolean.parseBoolean(props.getProperty(OPEN_LOOP_PROPERTY,OPEN_LOOP_PROPERTY_DEFAULT)))
+		{
+			System.out.println("Open-loop operation requires a target throughput; running closed-loop until one is set.");
+		}
+
+		long opcount=getOpCount(props,dotransactions);
+		long maxexecutiontime=(long)(Double.parseDouble(props.getProperty(MAX_EXECUTION_TIME_PROPERTY,MAX_EXECUTION_TIME_PROPERTY_DEFAULT))*1000);
+
+		boolean async=Boolean.parseBoolean(props.getProperty(ASYNC_PROPERTY,ASYNC_PROPERTY_DEFAULT));
+		int outstanding=Integer.parseInt(props.getProperty(OUTSTANDING_PROPERTY,OUTSTANDING_PROPERTY_DEFAULT));
+
+		boolean virtual=useVirtualThreads(props);
+
+		DBConnectionPool pool=null;
+		if (props.getProperty(CONNECTION_COUNT_PROPERTY)!=null)
+		{
+			int connectioncount=Integer.parseInt(props.getProperty(CONNECTION_COUNT_PROPERTY));
+			Vector<DB> connections=new Vector<DB>();
+			for (int i=0; i<connectioncount; i++)
+			{
+				DB db=null;
+				try
+				{
+					db=DBFactory.newDB(dbname,props);
+				}
+				catch (UnknownDBException e)
+				{
+				}
+				if (db==null)
+				{
+					System.out.println("Unknown DB "+dbname);
+					exit(0);
+				}
+				connections.add(db);
+			}
+
+			try
+			{
+				pool=new DBConnectionPool(connections,Long.parseLong(props.getProperty(CONNECTION_TIMEOUT_PROPERTY,CONNECTION_TIMEOUT_PROPERTY_DEFAULT)),
+						props.getProperty(DBConnectionPool.DISPATCH_PROPERTY,DBConnectionPool.DISPATCH_PROPERTY_DEFAULT));
+				pool.init();
 			}
+			catch (Exception e)
+			{
+				e.printStackTrace();
+				e.printStackTrace(System.out);
+				exit(0);
+			}
+		}
+		else if (props.getProperty(DBConnectionPool.DISPATCH_PROPERTY)!=null)
+		{
+			System.out.println("The \""+DBConnectionPool.DISPATCH_PROPERTY+"\" property requires \""+CONNECTION_COUNT_PROPERTY+"\".");
+			exit(0);
 		}
 
 		Vector<Thread> threads=new Vector<Thread>();
@@ -713,15 +1386,30 @@ public class Client
 			DB db=null;
 			try
 			{
-				db=DBFactory.newDB(dbname,props);
+				if (pool!=null)
+				{
+					db=new PooledDB(pool);
+				}
+				else if (async)
+				{
+					db=new AsyncDriverDB(DBFactory.newAsyncDB(dbname,props,outstanding),outstanding);
+				}
+				else
+				{
+					db=DBFactory.newDB(dbname,props);
+				}
 			}
 			catch (UnknownDBException e)
 			{
 				System.out.println("Unknown DB "+dbname);
-				System.exit(0);
+				exit(0);
 			}
 
-			Thread t=new ClientThread(db,dotransactions,workload,threadid,threadcount,props,opcount/threadcount,targetperthreadperms);
+			//spread the remainder over the first threads, so that exactly opcount operations are done
+			long threadopcount=opcount/threadcount+((threadid<opcount%threadcount)?1:0);
+
+			ClientThread t=new ClientThread(db,dotransactions,workload,threadid,threadcount,props,threadopcount,targetperthreadperms);
+			t.setTokenBucket(bucket);
 
 			threads.add(t);
 			//t.start();
@@ -736,57 +1424,124 @@ public class Client
 			{
 				standardstatus=true;
 			}	
-			statusthread=new StatusThread(threads,label,standardstatus);
+			long sleeptime=(long)(Double.parseDouble(props.getProperty(STATUS_INTERVAL_PROPERTY,STATUS_INTERVAL_PROPERTY_DEFAULT))*1000);
+			statusthread=new StatusThread(threads,label,standardstatus,sleeptime);
 			statusthread.start();
 		}
 
-		long st=System.currentTimeMillis();
+		TerminatorThread terminator=null;
+		if (maxexecutiontime>0)
+		{
+			terminator=new TerminatorThread(threads,maxexecutiontime);
+		}
+
+		//break the client's own overhead down into stages, if asked to
+		if (Boolean.parseBoolean(props.getProperty(OVERHEAD_PROPERTY,OVERHEAD_PROPERTY_DEFAULT)))
+		{
+			StageTimer.enable();
+		}
+		else
+		{
+			StageTimer.disable();
+		}
+
+		//watch for the client itself becoming the bottleneck
+		ClientMonitor monitor=null;
+		if (Boolean.parseBoolean(props.getProperty(ClientMonitor.CLIENT_MONITOR_PROPERTY,ClientMonitor.CLIENT_MONITOR_PROPERTY_DEFAULT)))
+		{
+			monitor=new ClientMonitor(props);
+			Measurements.getMeasurements().setClientMonitor(monitor);
+			monitor.start();
+		}
+
+		//save checkpoints of a load, so that it can be resumed if interrupted
+		CheckpointThread checkpointer=null;
+		if ( (!dotransactions) && (props.getProperty(CHECKPOINT_FILE_PROPERTY)!=null) )
+		{
+			checkpointer=new CheckpointThread(threads,workload,props.getProperty(CHECKPOINT_FILE_PROPERTY),
+					(long)(Double.parseDouble(props.getProperty(CHECKPOINT_INTERVAL_PROPERTY,CHECKPOINT_INTERVAL_PROPERTY_DEFAULT))*1000));
+			if (!checkpointer.save())
+			{
+				System.out.println("The workload cannot checkpoint this load phase; continuing without checkpoints.");
+				checkpointer=null;
+			}
+		}
+
+		runningthreads=threads;
+		if (isStopping())
+		{
+			requestStop();
+		}
+
+		long st=System.nanoTime();
 
 		for (Thread t : threads)
 		{
-			t.start();
+			((ClientThread)t).startSession(virtual);
+		}
+
+		if (terminator!=null)
+		{
+			terminator.start();
+		}
+		if (checkpointer!=null)
+		{
+			checkpointer.start();
 		}
 
 		for (Thread t : threads)
 		{
 			try
 			{
-				t.join(); // 等待直到指定的线程死亡
+				((ClientThread)t).getRunner().join(); // 等待直到指定的线程死亡
 			}
 			catch (InterruptedException e)
 			{
 			}
 		}
 
-		long en=System.currentTimeMillis();
+		long en=System.nanoTime();
 
-		if (status)
+		runningthreads=null;
+		if (terminator!=null)
 		{
-			System.err.println(statusthread.getPriority()+"----------------");
-			statusthread.interrupt();
+			terminator.interrupt();
 		}
-
-		try
+		if (monitor!=null)
 		{
-			workload.cleanup();
+			monitor.shutdown();
 		}
-		catch (WorkloadException e)
+		if (checkpointer!=null)
 		{
-			e.printStackTrace();
-			e.printStackTrace(System.out);
-			System.exit(0);
+			checkpointer.interrupt();
+			checkpointer.save();
 		}
 
-		try
+		if (pool!=null)
 		{
-			exportMeasurements(props, opcount, en - st);
-		} catch (IOException e)
+			try
+			{
+				pool.cleanup();
+			}
+			catch (DBException e)
+			{
+				e.printStackTrace();
+				e.printStackTrace(System.out);
+			}
+		}
+
+		if (status)
 		{
-			System.err.println("Could not export measurements, error: " + e.getMessage());
-			e.printStackTrace();
-			System.exit(-1);
+			System.err.println(statusthread.getPriority()+"----------------");
+			statusthread.interrupt();
 		}
 
-		System.exit(0);
+		PhaseResult result=new PhaseResult();
+		result._runtime=(en-st)/1000000;
+		for (Thread t : threads)
+		{
+			result._opsdone+=((ClientThread)t).getOpsDone();
+		}
+		return result;
 	}
 }
@@ -0,0 +1,404 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+import com.yahoo.ycsb.measurements.ClientMonitor;
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.StageTimer;
+import com.yahoo.ycsb.rate.TokenBucket;
+
+/**
+ * A thread for executing transactions or data inserts to the database.
+ * 
+ * @author cooperb
+ *
+ */
+class ClientThread extends Thread
+{
+	static Random random=new Random();
+
+	DB _db;
+	boolean _dotransactions;
+	Workload _workload;
+	long _opcount;
+	double _target;
+
+	//written only by this session, read by the status thread
+	volatile long _opsdone;
+	volatile boolean _stop;
+
+	//may be changed from outside while the session runs
+	volatile double _newtarget;
+	volatile boolean _active=true;
+
+	//the throttling schedule: operations done since _schedulestart are spread out at the target rate
+	long _schedulestart;
+	long _scheduleops;
+	int _threadid;
+	int _threadcount;
+	volatile Object _workloadstate;
+	Properties _props;
+	boolean _openloop;
+	Thread _runner=this;
+	TokenBucket _bucket;
+
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param db the DB implementation to use
+	 * @param dotransactions true to do transactions, false to insert data
+	 * @param workload the workload to use
+	 * @param threadid the id of this thread 
+	 * @param threadcount the total number of threads 
+	 * @param props the properties defining the experiment
+	 * @param opcount the number of operations (transactions or inserts) to do
+	 * @param targetperthreadperms target number of operations per thread per ms
+	 */
+	public ClientThread(DB db, boolean dotransactions, Workload workload, int threadid, int threadcount, Properties props, long opcount, double targetperthreadperms)
+	{
+		//TODO: consider removing threadcount and threadid
+		_db=db;
+		_dotransactions=dotransactions;
+		_workload=workload;
+		_opcount=opcount;
+		_opsdone=0;
+		_stop=false;
+		_target=targetperthreadperms;
+		_newtarget=targetperthreadperms;
+		_threadid=threadid;
+		_threadcount=threadcount;
+		_props=props;
+		_openloop=Boolean.parseBoolean(props.getProperty(Client.OPEN_LOOP_PROPERTY,Client.OPEN_LOOP_PROPERTY_DEFAULT));
+		//System.out.println("Interval = "+interval);
+	}
+
+	public long getOpsDone()
+	{
+		return _opsdone;
+	}
+
+	/**
+	 * Stop this session after the operation in progress, if any, has finished.
+	 */
+	public void requestStop()
+	{
+		_stop=true;
+		if (_bucket!=null)
+		{
+			_bucket.stop();
+		}
+		LockSupport.unpark(_runner);
+	}
+
+	/**
+	 * Change the target of this session, in operations per ms; 0 or less means no limit. Only used when
+	 * the session is not throttled by a shared token bucket.
+	 */
+	public void setTarget(double targetperthreadperms)
+	{
+		_newtarget=targetperthreadperms;
+		LockSupport.unpark(_runner);
+	}
+
+	/**
+	 * Pause or resume this session. A paused session issues no operations until it is resumed.
+	 */
+	public void setActive(boolean active)
+	{
+		_active=active;
+		LockSupport.unpark(_runner);
+	}
+
+	/**
+	 * Before each operation, apply changes made with setTarget() and setActive(). A paused session waits
+	 * here. After a change, the throttling schedule starts over from now, so that the session neither
+	 * tries to catch up on the time it was paused nor carries over the old rate.
+	 */
+	void applyControl()
+	{
+		if ( (_active) && (_newtarget==_target) )
+		{
+			return;
+		}
+
+		while ( (!_active) && (!isStopping()) )
+		{
+			LockSupport.park(this);
+		}
+
+		_target=_newtarget;
+		_schedulestart=System.nanoTime();
+		_scheduleops=_opsdone;
+	}
+
+	/**
+	 * Whether this session should stop issuing operations.
+	 */
+	boolean isStopping()
+	{
+		return _stop || Client.isStopping();
+	}
+
+	/**
+	 * Throttle this session with a token bucket shared by all sessions, instead of with its own share of the target.
+	 */
+	public void setTokenBucket(TokenBucket bucket)
+	{
+		_bucket=bucket;
+	}
+
+	/**
+	 * The thread that executes this client session. Normally that is this thread itself, but a
+	 * session may instead be run as a Runnable by another thread, such as a virtual thread.
+	 */
+	public Thread getRunner()
+	{
+		return _runner;
+	}
+
+	/**
+	 * Start executing this client session, either on this (platform) thread or on a new virtual thread.
+	 */
+	public void startSession(boolean virtual)
+	{
+		if (virtual)
+		{
+			_runner=Client.newVirtualThread(this);
+		}
+		_runner.start();
+	}
+
+	/**
+	 * In open-loop mode, operation n is scheduled to start at st+n/target regardless of how long the
+	 * previous operations took. Wait until the next operation is due, and publish its intended start time
+	 * so that DBWrapper can measure response time from the schedule rather than from when we actually got
+	 * around to issuing it. If we are behind schedule (e.g. because the store stalled), don't wait at all;
+	 * the time spent behind schedule shows up in the response time instead of silently disappearing.
+	 * Without a target (yet, or any more) there is no schedule, and the operation is issued right away.
+	 */
+	void waitForIntendedStart()
+	{
+		if (_target<=0)
+		{
+			Measurements.getMeasurements().setIntendedStartTime(-1);
+			return;
+		}
+
+		long intended=scheduledStart();
+
+		sleepUntil(intended);
+
+		Measurements.getMeasurements().setIntendedStartTime(intended);
+	}
+
+	/**
+	 * Wait for a token from the shared token bucket before issuing the next operation, and publish the
+	 * profile segment it falls in (and, when running open-loop, its intended start time).
+	 */
+	void waitForToken()
+	{
+		long intended=_bucket.acquire();
+
+		sleepUntil(intended);
+		_bucket.issued();
+
+		Measurements measurements=Measurements.getMeasurements();
+		if (_bucket.isOpenLoop())
+		{
+			measurements.setIntendedStartTime(intended);
+		}
+		measurements.setSegment(_bucket.getSegment(intended));
+	}
+
+	/**
+	 * The time (System.nanoTime()) at which the next operation is due, if operations are issued at the
+	 * target rate.
+	 */
+	long scheduledStart()
+	{
+		return _schedulestart+(long)(((double)(_opsdone-_scheduleops))/_target*1000000.0);
+	}
+
+	/**
+	 * The state of the workload for this session, or null if the session has not started yet.
+	 */
+	Object getWorkloadState()
+	{
+		return _workloadstate;
+	}
+
+	/**
+	 * Sleep until System.nanoTime() reaches deadline. Returns immediately if it already has, and early
+	 * if the session is asked to stop or its target changes. How late the thread wakes up is reported
+	 * to the ClientMonitor.
+	 */
+	void sleepUntil(long deadline)
+	{
+		long now;
+		boolean slept=false;
+		while ( ((now=System.nanoTime())<deadline) && (!isStopping()) && (_newtarget==_target) )
+		{
+			LockSupport.parkNanos(deadline-now);
+			slept=true;
+		}
+		if ( (slept) && (now>=deadline) )
+		{
+			ClientMonitor.schedulingLag(now-deadline);
+		}
+	}
+
+	public void run()
+	{
+		try
+		{
+			_db.init();
+		}
+		catch (DBException e)
+		{
+			e.printStackTrace();
+			e.printStackTrace(System.out);
+			return;
+		}
+
+		try
+		{
+			_workloadstate=_workload.initThread(_props,_threadid,_threadcount);
+		}
+		catch (WorkloadException e)
+		{
+			e.printStackTrace();
+			e.printStackTrace(System.out);
+			return;
+		}
+
+		//spread the thread operations out so they don't all hit the DB at the same time
+		try
+		{
+		   //GH issue 4 - throws exception if _target>1 because random.nextInt argument must be >0
+		   //and the sleep() doesn't make sense for granularities < 1 ms anyway
+		   if ( (_target>0) && (_target<=1.0) ) 
+		   {
+		      sleep(random.nextInt((int)(1.0/_target)));
+		   }
+		}
+		catch (InterruptedException e)
+		{
+		   //do nothing
+		}
+		
+		try
+		{
+			if (_dotransactions)
+			{
+				_schedulestart=System.nanoTime();
+				_scheduleops=0;
+
+				while ( ((_opcount==0) || (_opsdone<_opcount)) && (!isStopping()) )
+				{
+					applyControl();
+
+					if (_bucket!=null)
+					{
+						waitForToken();
+					}
+					else if (_openloop)
+					{
+						waitForIntendedStart();
+					}
+
+					long ot=StageTimer.start();
+					if ( (isStopping()) || (!_workload.doTransaction(_db,_workloadstate)) )
+					{
+						break;
+					}
+					StageTimer.stop(StageTimer.OPERATION,ot);
+
+					_opsdone++;
+
+					//throttle the operations
+					if ( (_target>0) && (!_openloop) )
+					{
+						//this is more accurate than other throttling approaches we have tried,
+						//like sleeping for (1/target throughput)-operation latency,
+						//because it smooths timing inaccuracies (from oversleeping) over many operations
+						sleepUntil(scheduledStart());
+					}
+				}
+			}
+			else
+			{
+				_schedulestart=System.nanoTime();
+				_scheduleops=0;
+
+				while ( ((_opcount==0) || (_opsdone<_opcount)) && (!isStopping()) )
+				{
+					applyControl();
+
+					if (_bucket!=null)
+					{
+						waitForToken();
+					}
+					else if (_openloop)
+					{
+						waitForIntendedStart();
+					}
+
+					long ot=StageTimer.start();
+					if ( (isStopping()) || (!_workload.doInsert(_db,_workloadstate)) )
+					{
+						break;
+					}
+					StageTimer.stop(StageTimer.OPERATION,ot);
+
+					_opsdone++;
+
+					//throttle the operations
+					if ( (_target>0) && (!_openloop) )
+					{
+						//this is more accurate than other throttling approaches we have tried,
+						//like sleeping for (1/target throughput)-operation latency,
+						//because it smooths timing inaccuracies (from oversleeping) over many operations
+						sleepUntil(scheduledStart());
+					}
+				}
+			}
+		}
+		catch (Exception e)
+		{
+			//end this session only; the others carry on, and the run still reports what was done
+			e.printStackTrace();
+			e.printStackTrace(System.out);
+		}
+
+		try
+		{
+			_db.cleanup();
+		}
+		catch (DBException e)
+		{
+			e.printStackTrace();
+			e.printStackTrace(System.out);
+			return;
+		}
+	}
+}
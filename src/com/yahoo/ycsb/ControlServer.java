@@ -0,0 +1,240 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Properties;
+import java.util.Vector;
+
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.rate.ConstantRateProfile;
+import com.yahoo.ycsb.rate.TokenBucket;
+
+/**
+ * A control channel for changing a run while it is in progress, without restarting and re-warming it.
+ * Listens on a local port for lines of one or more space-separated name=value settings, e.g.
+ * <pre>
+ * echo "readproportion=0.5 updateproportion=0.5" | nc localhost 6100
+ * </pre>
+ * The settings of one line are applied together, and answered with "OK" or "ERROR message". Each applied
+ * line is stamped into the measurements as an event, so the change can be lined up with its effect.
+ * Understood settings are
+ * <UL>
+ * <LI>target: the total target throughput in ops/sec (0 for no limit),
+ * <LI>activethreads: the number of client threads that issue operations; the others pause,
+ * <LI>anything else, such as the operation proportions, the request distribution or the QoS parameter
+ * bounds, is passed to the workload's reconfigure().
+ * </UL>
+ */
+class ControlServer extends Thread
+{
+	/**
+	 * The local port to listen for control commands on. If not set, there is no control channel.
+	 */
+	public static final String CONTROL_PORT_PROPERTY="control.port";
+
+	ServerSocket _server;
+	Workload _workload;
+
+	ControlServer(int port, Workload workload) throws IOException
+	{
+		super("ControlServer");
+		setDaemon(true);
+		_server=new ServerSocket(port,50,InetAddress.getByName(null));
+		_workload=workload;
+	}
+
+	public void run()
+	{
+		while (true)
+		{
+			try
+			{
+				Socket socket=_server.accept();
+				try
+				{
+					BufferedReader in=new BufferedReader(new InputStreamReader(socket.getInputStream()));
+					PrintWriter out=new PrintWriter(socket.getOutputStream(),true);
+					String line;
+					while ((line=in.readLine())!=null)
+					{
+						line=line.trim();
+						if (line.length()>0)
+						{
+							out.println(apply(line));
+						}
+					}
+				}
+				finally
+				{
+					socket.close();
+				}
+			}
+			catch (IOException e)
+			{
+				if (_server.isClosed())
+				{
+					return;
+				}
+				e.printStackTrace();
+			}
+		}
+	}
+
+	public void shutdown()
+	{
+		try
+		{
+			_server.close();
+		}
+		catch (IOException e)
+		{
+		}
+	}
+
+	/**
+	 * Apply one line of settings.
+	 *
+	 * @return the reply to send back
+	 */
+	synchronized String apply(String line)
+	{
+		Vector<Thread> threads=Client.runningthreads;
+		String target=null;
+		String activethreads=null;
+		Properties workloadprops=new Properties();
+
+		for (String setting : line.split("\\s+"))
+		{
+			int eq=setting.indexOf('=');
+			if (eq<=0)
+			{
+				return "ERROR not a name=value setting: "+setting;
+			}
+			String name=setting.substring(0,eq);
+			String value=setting.substring(eq+1);
+			if (name.compareTo("target")==0)
+			{
+				target=value;
+			}
+			else if (name.compareTo("activethreads")==0)
+			{
+				activethreads=value;
+			}
+			else
+			{
+				workloadprops.setProperty(name,value);
+			}
+		}
+
+		if ( ((target!=null) || (activethreads!=null)) && (threads==null) )
+		{
+			return "ERROR no phase is running";
+		}
+
+		try
+		{
+			if (workloadprops.size()>0)
+			{
+				_workload.reconfigure(workloadprops);
+			}
+
+			if (activethreads!=null)
+			{
+				//keep the total target the same, spread over the threads that are active now
+				double total=getTotalTarget(threads);
+				int active=Integer.parseInt(activethreads);
+				for (int i=0; i<threads.size(); i++)
+				{
+					((ClientThread)threads.get(i)).setActive(i<active);
+				}
+				if (total>0)
+				{
+					setTotalTarget(threads,total);
+				}
+			}
+
+			if (target!=null)
+			{
+				setTotalTarget(threads,Double.parseDouble(target));
+			}
+		}
+		catch (Exception e)
+		{
+			return "ERROR "+e.getMessage();
+		}
+
+		Measurements.getMeasurements().stamp(line);
+		System.err.println("Control: "+line);
+		return "OK";
+	}
+
+	/**
+	 * The total target of the active threads, in ops/sec, or 0 if they are not throttled.
+	 */
+	static double getTotalTarget(Vector<Thread> threads)
+	{
+		double total=0;
+		for (Thread t : threads)
+		{
+			ClientThread ct=(ClientThread)t;
+			if ( (ct._active) && (ct._newtarget>0) )
+			{
+				total+=ct._newtarget*1000.0;
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Set the total target, in ops/sec: either the rate of the shared token bucket, or an equal share for
+	 * each active thread.
+	 */
+	static void setTotalTarget(Vector<Thread> threads, double target)
+	{
+		TokenBucket bucket=((ClientThread)threads.firstElement())._bucket;
+		if (bucket!=null)
+		{
+			if (target<=0)
+			{
+				throw new IllegalArgumentException("a rate profile needs a target above 0");
+			}
+			bucket.setProfile(new ConstantRateProfile(target));
+			return;
+		}
+
+		int active=0;
+		for (Thread t : threads)
+		{
+			if (((ClientThread)t)._active)
+			{
+				active++;
+			}
+		}
+		for (Thread t : threads)
+		{
+			((ClientThread)t).setTarget(((target>0) && (active>0)) ? target/active/1000.0 : -1);
+		}
+	}
+}
@@ -0,0 +1,377 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.Vector;
+
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.OneMeasurement;
+import com.yahoo.ycsb.rate.RateProfile;
+import com.yahoo.ycsb.recordlogs.RecordLogs;
+
+/**
+ * Coordinates a run of several Client processes, on this machine or on others, as if they were one client.
+ * Workers are Clients started with "-p coordinator=host:port"; the coordinator can also launch them itself
+ * on the local machine. The coordinator
+ * <UL>
+ * <LI>waits for all workers to connect,
+ * <LI>gives each a disjoint share of the records to insert (insertstart/insertcount), or of the operations
+ * to do (operationcount), and a share of the target throughput, or of the rates of a rate profile,
+ * arrival trace or tenant class target (through the "ratescale" property),
+ * <LI>starts them all at once, after every worker has loaded its workload,
+ * <LI>merges their full latency histograms into one aggregate report.
+ * </UL>
+ * Merging the histograms gives correct aggregate percentiles, which averaging each client's percentiles does not.
+ * Only the (default) histogram measurement type can be merged.
+ */
+public class Coordinator
+{
+	/**
+	 * The property that tells a Client to act as a worker of the coordinator at the given host:port.
+	 */
+	public static final String COORDINATOR_PROPERTY="coordinator";
+
+	/**
+	 * The index of a worker, as assigned by the coordinator.
+	 */
+	public static final String WORKER_ID_PROPERTY="workerid";
+
+	/**
+	 * The number of workers of the coordinator, as assigned to each of them.
+	 */
+	public static final String WORKER_COUNT_PROPERTY="workercount";
+
+	static final String DO_TRANSACTIONS="coordinator.dotransactions";
+
+	static final String READY="READY";
+
+	static final String START="START";
+
+	/**
+	 * The classes that the coordinator and its workers send each other: properties, messages, counts and
+	 * measurements. Any other class in the stream is rejected before it is deserialized.
+	 */
+	static final String SERIAL_FILTER="maxdepth=20;"+
+			"java.lang.String;java.lang.Number;java.lang.Long;java.lang.Integer;java.lang.Object;"+
+			"java.util.Properties;java.util.Hashtable;java.util.HashMap;java.util.Map$Entry;java.util.Vector;"+
+			"java.util.concurrent.ConcurrentHashMap;java.util.concurrent.ConcurrentHashMap$Segment;"+
+			"java.util.concurrent.atomic.AtomicInteger;java.util.concurrent.atomic.AtomicLongArray;"+
+			"java.util.concurrent.atomic.LongAdder;java.util.concurrent.atomic.LongAdder$SerializationProxy;"+
+			"java.util.concurrent.locks.AbstractOwnableSynchronizer;java.util.concurrent.locks.AbstractQueuedSynchronizer;"+
+			"java.util.concurrent.locks.ReentrantLock;java.util.concurrent.locks.ReentrantLock$Sync;"+
+			"java.util.concurrent.locks.ReentrantLock$NonfairSync;"+
+			"com.yahoo.ycsb.measurements.*;!*";
+
+	public static void usageMessage()
+	{
+		System.out.println("Usage: java com.yahoo.ycsb.Coordinator [options] [-- client options]");
+		System.out.println("Options:");
+		System.out.println("  -workers n: wait for n workers (default: 1)");
+		System.out.println("  -port n: listen for workers on port n (default: 6000)");
+		System.out.println("  -spawn: launch the workers as local processes, passing them the client options;");
+		System.out.println("          each worker's standard output goes to worker<n>.out");
+		System.out.println("  -p name=value: set a property for the aggregate report, such as \"exportfile\"");
+		System.out.println("                 and \"exporter\"");
+		System.out.println("");
+		System.out.println("Without -spawn, start each worker as a normal client with the same options, plus");
+		System.out.println("  -p "+COORDINATOR_PROPERTY+"=<coordinator host>:<port>");
+	}
+
+	public static void main(String[] args)
+	{
+		int workercount=1;
+		int port=6000;
+		boolean spawn=false;
+		Properties props=new Properties();
+		Vector<String> clientargs=new Vector<String>();
+
+		int argindex=0;
+		while (argindex<args.length)
+		{
+			if (args[argindex].compareTo("-workers")==0)
+			{
+				argindex++;
+				if (argindex>=args.length)
+				{
+					usageMessage();
+					System.exit(0);
+				}
+				workercount=Integer.parseInt(args[argindex]);
+				argindex++;
+			}
+			else if (args[argindex].compareTo("-port")==0)
+			{
+				argindex++;
+				if (argindex>=args.length)
+				{
+					usageMessage();
+					System.exit(0);
+				}
+				port=Integer.parseInt(args[argindex]);
+				argindex++;
+			}
+			else if (args[argindex].compareTo("-spawn")==0)
+			{
+				spawn=true;
+				argindex++;
+			}
+			else if (args[argindex].compareTo("-p")==0)
+			{
+				argindex++;
+				if ( (argindex>=args.length) || (args[argindex].indexOf('=')<0) )
+				{
+					usageMessage();
+					System.exit(0);
+				}
+				int eq=args[argindex].indexOf('=');
+				props.setProperty(args[argindex].substring(0,eq),args[argindex].substring(eq+1));
+				argindex++;
+			}
+			else if (args[argindex].compareTo("--")==0)
+			{
+				for (argindex++; argindex<args.length; argindex++)
+				{
+					clientargs.add(args[argindex]);
+				}
+			}
+			else
+			{
+				System.out.println("Unknown option "+args[argindex]);
+				usageMessage();
+				System.exit(0);
+			}
+		}
+
+		Measurements.setProperties(props);
+		RecordLogs.setProperties(props);
+
+		try
+		{
+			ServerSocket server=new ServerSocket(port);
+
+			Vector<Process> processes=new Vector<Process>();
+			if (spawn)
+			{
+				for (int i=0; i<workercount; i++)
+				{
+					processes.add(spawnWorker(i,clientargs,"localhost:"+server.getLocalPort()));
+				}
+			}
+
+			System.err.println("Waiting for "+workercount+" workers on port "+server.getLocalPort()+"...");
+
+			Vector<Socket> sockets=new Vector<Socket>();
+			Vector<ObjectOutputStream> outs=new Vector<ObjectOutputStream>();
+			Vector<ObjectInputStream> ins=new Vector<ObjectInputStream>();
+			Properties[] registrations=new Properties[workercount];
+
+			for (int i=0; i<workercount; i++)
+			{
+				Socket socket=server.accept();
+				ObjectOutputStream out=new ObjectOutputStream(socket.getOutputStream());
+				out.flush();
+				ObjectInputStream in=newInputStream(socket.getInputStream());
+				sockets.add(socket);
+				outs.add(out);
+				ins.add(in);
+				registrations[i]=(Properties)in.readObject();
+				System.err.println("Worker "+i+" connected from "+socket.getInetAddress().getHostAddress());
+			}
+			server.close();
+
+			//hand out the work
+			Properties[] assignments=assign(registrations);
+			for (int i=0; i<workercount; i++)
+			{
+				outs.get(i).writeObject(assignments[i]);
+				outs.get(i).flush();
+			}
+
+			//barrier: start everyone once everyone has loaded its workload
+			for (int i=0; i<workercount; i++)
+			{
+				if (!READY.equals(ins.get(i).readObject()))
+				{
+					throw new IOException("Unexpected message from worker "+i);
+				}
+			}
+			System.err.println("All workers ready, starting.");
+			for (int i=0; i<workercount; i++)
+			{
+				outs.get(i).writeObject(START);
+				outs.get(i).flush();
+			}
+
+			//collect and merge the results
+			long runtime=0;
+			long opcount=0;
+			Measurements merged=Measurements.getMeasurements();
+			for (int i=0; i<workercount; i++)
+			{
+				long workerruntime=((Long)ins.get(i).readObject()).longValue();
+				long workeropcount=((Long)ins.get(i).readObject()).longValue();
+				@SuppressWarnings("unchecked")
+				HashMap<String,OneMeasurement> data=(HashMap<String,OneMeasurement>)ins.get(i).readObject();
+				@SuppressWarnings("unchecked")
+				HashMap<String,Long> counters=(HashMap<String,Long>)ins.get(i).readObject();
+				@SuppressWarnings("unchecked")
+				Vector<String> events=(Vector<String>)ins.get(i).readObject();
+				@SuppressWarnings("unchecked")
+				Vector<Long> eventtimes=(Vector<Long>)ins.get(i).readObject();
+				sockets.get(i).close();
+
+				System.err.println("Worker "+i+": "+workeropcount+" operations in "+workerruntime+" ms");
+
+				//all workers started together, so the run lasted as long as the slowest one
+				runtime=Math.max(runtime,workerruntime);
+				opcount+=workeropcount;
+				merged.merge(data);
+				merged.mergeCounters(counters);
+				merged.mergeEvents("worker "+i+": ",events,eventtimes);
+			}
+
+			for (Process p : processes)
+			{
+				p.waitFor();
+			}
+
+			Client.exportMeasurements(props,opcount,runtime);
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			e.printStackTrace(System.out);
+			System.exit(-1);
+		}
+
+		System.exit(0);
+	}
+
+	/**
+	 * A stream to read the messages of the other side of a coordinated run from, which only accepts the
+	 * classes in SERIAL_FILTER.
+	 */
+	static ObjectInputStream newInputStream(InputStream in) throws IOException
+	{
+		ObjectInputStream ret=new ObjectInputStream(in);
+		ret.setObjectInputFilter(ObjectInputFilter.Config.createFilter(SERIAL_FILTER));
+		return ret;
+	}
+
+	/**
+	 * Launch a worker Client process on this machine, using the same JVM and classpath as the coordinator.
+	 */
+	static Process spawnWorker(int i, Vector<String> clientargs, String address) throws IOException
+	{
+		Vector<String> command=new Vector<String>();
+		command.add(System.getProperty("java.home")+File.separator+"bin"+File.separator+"java");
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(Client.class.getName());
+		command.addAll(clientargs);
+		command.add("-p");
+		command.add(COORDINATOR_PROPERTY+"="+address);
+
+		ProcessBuilder pb=new ProcessBuilder(command);
+		pb.redirectOutput(new File("worker"+i+".out"));
+		pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+		return pb.start();
+	}
+
+	/**
+	 * Divide the work described by the workers' properties among them. The first worker's properties are used
+	 * for the totals; all workers are expected to run with the same options.
+	 *
+	 * @return for each worker, the properties to override in its configuration
+	 */
+	static Properties[] assign(Properties[] registrations)
+	{
+		int workercount=registrations.length;
+		Properties p=registrations[0];
+		boolean dotransactions=Boolean.parseBoolean(p.getProperty(DO_TRANSACTIONS));
+
+		Properties[] assignments=new Properties[workercount];
+		for (int i=0; i<workercount; i++)
+		{
+			assignments[i]=new Properties();
+			assignments[i].setProperty(WORKER_ID_PROPERTY,Integer.toString(i));
+			assignments[i].setProperty(WORKER_COUNT_PROPERTY,Integer.toString(workercount));
+		}
+
+		if (dotransactions)
+		{
+			long opcount=Long.parseLong(p.getProperty(Client.OPERATION_COUNT_PROPERTY,"0"));
+			if (opcount>0)
+			{
+				for (int i=0; i<workercount; i++)
+				{
+					assignments[i].setProperty(Client.OPERATION_COUNT_PROPERTY,Long.toString(share(opcount,i,workercount)));
+				}
+			}
+		}
+		else
+		{
+			//give each worker a disjoint, contiguous range of the records to insert
+			long insertstart=Long.parseLong(p.getProperty(Workload.INSERT_START_PROPERTY,Workload.INSERT_START_PROPERTY_DEFAULT));
+			long insertcount=Client.getOpCount(p,false);
+			for (int i=0; i<workercount; i++)
+			{
+				long count=share(insertcount,i,workercount);
+				assignments[i].setProperty(Workload.INSERT_START_PROPERTY,Long.toString(insertstart));
+				assignments[i].setProperty(Client.INSERT_COUNT_PROPERTY,Long.toString(count));
+				insertstart+=count;
+			}
+		}
+
+		int target=Integer.parseInt(p.getProperty("target","0"));
+		if (target>0)
+		{
+			for (int i=0; i<workercount; i++)
+			{
+				//a target of 0 would mean unlimited
+				assignments[i].setProperty("target",Long.toString(Math.max(1,share(target,i,workercount))));
+			}
+		}
+
+		//rates that cannot be divided up like the target are scaled by each worker instead
+		for (int i=0; i<workercount; i++)
+		{
+			assignments[i].setProperty(RateProfile.RATE_SCALE_PROPERTY,Double.toString(1.0/workercount));
+		}
+
+		return assignments;
+	}
+
+	/**
+	 * Worker i's share of total, when total is divided as evenly as possible among workercount workers.
+	 */
+	static long share(long total, int i, int workercount)
+	{
+		return total/workercount+((i<total%workercount)?1:0);
+	}
+}
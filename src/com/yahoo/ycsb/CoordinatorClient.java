@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.Socket;
+import java.util.Enumeration;
+import java.util.Properties;
+
+import com.yahoo.ycsb.measurements.Measurements;
+
+/**
+ * The worker side of a coordinated run: the connection from one Client process to the Coordinator.
+ * The worker registers its properties and receives its share of the work (key range, operation
+ * count and target), waits for the common start signal, and finally sends back its full
+ * measurements so that the coordinator can merge them.
+ */
+class CoordinatorClient
+{
+	Socket _socket;
+	ObjectOutputStream _out;
+	ObjectInputStream _in;
+
+	/**
+	 * Connect to the coordinator.
+	 *
+	 * @param address host:port of the coordinator
+	 */
+	CoordinatorClient(String address) throws IOException
+	{
+		int colon=address.lastIndexOf(':');
+		if (colon<0)
+		{
+			throw new IOException("Coordinator address \""+address+"\" is not of the form host:port");
+		}
+		_socket=new Socket(address.substring(0,colon),Integer.parseInt(address.substring(colon+1)));
+		_out=new ObjectOutputStream(_socket.getOutputStream());
+		_out.flush();
+		_in=Coordinator.newInputStream(_socket.getInputStream());
+	}
+
+	/**
+	 * Send our properties to the coordinator, and apply the assignment it sends back to them.
+	 */
+	void register(Properties props, boolean dotransactions) throws IOException
+	{
+		Properties registration=new Properties();
+		for (Enumeration<?> e=props.propertyNames(); e.hasMoreElements(); )
+		{
+			String prop=(String)e.nextElement();
+			registration.setProperty(prop,props.getProperty(prop));
+		}
+		registration.setProperty(Coordinator.DO_TRANSACTIONS,Boolean.toString(dotransactions));
+
+		_out.writeObject(registration);
+		_out.flush();
+
+		Properties assignment=(Properties)receive();
+		for (Enumeration<?> e=assignment.propertyNames(); e.hasMoreElements(); )
+		{
+			String prop=(String)e.nextElement();
+			props.setProperty(prop,assignment.getProperty(prop));
+		}
+	}
+
+	/**
+	 * Tell the coordinator we are ready to run, and wait until all workers are.
+	 */
+	void awaitStart() throws IOException
+	{
+		_out.writeObject(Coordinator.READY);
+		_out.flush();
+
+		if (!Coordinator.START.equals(receive()))
+		{
+			throw new IOException("Unexpected message from coordinator");
+		}
+	}
+
+	/**
+	 * Send the results of the run to the coordinator and disconnect.
+	 */
+	void sendResults(long runtime, long opcount, Measurements measurements) throws IOException
+	{
+		_out.writeObject(Long.valueOf(runtime));
+		_out.writeObject(Long.valueOf(opcount));
+		_out.writeObject(measurements.getMeasurementData());
+		_out.writeObject(measurements.getCounters());
+		_out.writeObject(measurements.getEvents());
+		_out.writeObject(measurements.getEventTimes());
+		_out.flush();
+		_socket.close();
+	}
+
+	Object receive() throws IOException
+	{
+		try
+		{
+			return _in.readObject();
+		}
+		catch (ClassNotFoundException e)
+		{
+			throw new IOException(e);
+		}
+	}
+}
@@ -43,6 +43,11 @@ import java.util.Vector;
  */
 public abstract class DB
 {
+	/**
+	 * The code returned for an operation that the DB does not implement.
+	 */
+	public static final int NOT_SUPPORTED=-2;
+
 	/**
 	 * Properties for configuring this DB.
 	 */
@@ -126,6 +131,44 @@ public abstract class DB
 	 */
 	public abstract int insert(String table, String key, HashMap<String,String> values);
 
+	/**
+	 * Insert several records in the database at once, e.g. in one request. DBs that can write a batch
+	 * faster than record by record should override this; by default the records are inserted one at a time.
+	 *
+	 * @param table The name of the table
+	 * @param keys The record keys of the records to insert.
+	 * @param values For each record, a HashMap of field/value pairs to insert in it
+	 * @return Zero on success, a non-zero error code on error.  See this class's description for a discussion of error codes.
+	 */
+	public int insertBatch(String table, Vector<String> keys, Vector<HashMap<String,String>> values)
+	{
+		for (int i=0; i<keys.size(); i++)
+		{
+			int res=insert(table,keys.get(i),values.get(i));
+			if (res!=0)
+			{
+				return res;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Insert a record that expires: the database deletes it by itself ttl seconds after it is written.
+	 * DBs that can expire records should override this. By default it fails with NOT_SUPPORTED, so that a
+	 * workload that relies on expiry does not silently run without it.
+	 *
+	 * @param table The name of the table
+	 * @param key The record key of the record to insert.
+	 * @param values A HashMap of field/value pairs to insert in the record
+	 * @param ttl The number of seconds after which the record expires
+	 * @return Zero on success, a non-zero error code on error.  See this class's description for a discussion of error codes.
+	 */
+	public int insertWithTTL(String table, String key, HashMap<String,String> values, int ttl)
+	{
+		return NOT_SUPPORTED;
+	}
+
 	/**
 	 * Delete a record from the database. 
 	 *
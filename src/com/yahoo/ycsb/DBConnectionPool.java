@@ -0,0 +1,255 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.util.PriorityQueue;
+import java.util.Vector;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.cassandra.db.SchedulerParameter;
+
+import com.yahoo.ycsb.measurements.Measurements;
+
+/**
+ * A fixed set of DB instances (connections) shared by a larger number of client sessions. A session
+ * checks out a connection for the duration of one operation and returns it afterwards, so no more
+ * than the pool size operations are ever outstanding against the database, however many sessions
+ * there are.
+ *
+ * Sessions waiting for a connection form a client-side queue of operations, which the connections drain
+ * in the order given by the "dispatch" property:
+ * <UL>
+ * <LI>fifo: in the order the operations were generated (the default),
+ * <LI>edf: earliest deadline first, the deadline of a read being the time it was generated plus the
+ * tardiness_deadline of its SchedulerParameter,
+ * <LI>weighted: like edf, but the time to the deadline is divided by the penalty weight of the operation
+ * (QoS_preference*query_weight), so operations that cost more when late are dispatched earlier.
+ * </UL>
+ * Operations without scheduler parameters have their deadline when they are generated.
+ *
+ * The time a session waits for a connection is measured as POOL-WAIT, separately from the latency of
+ * the operation itself. If a checkout times out, POOL-WAIT gets an error return code and the operation
+ * fails without reaching the database.
+ */
+class DBConnectionPool
+{
+	/**
+	 * The return code of an operation that could not get a connection in time.
+	 */
+	static final int CHECKOUT_TIMEOUT=-1;
+
+	public static final String DISPATCH_PROPERTY="dispatch";
+
+	public static final String DISPATCH_PROPERTY_DEFAULT="fifo";
+
+	static final int FIFO=0;
+	static final int EDF=1;
+	static final int WEIGHTED=2;
+
+	/**
+	 * A session waiting for a connection.
+	 */
+	static class Waiter implements Comparable<Waiter>
+	{
+		long _priority;
+		long _seq;
+		DB _db;
+		Condition _assigned;
+
+		public int compareTo(Waiter other)
+		{
+			if (_priority!=other._priority)
+			{
+				return (_priority<other._priority) ? -1 : 1;
+			}
+			return (_seq<other._seq) ? -1 : ((_seq==other._seq)?0:1);
+		}
+	}
+
+	Vector<DB> _dbs;
+	Vector<DB> _idle;
+	long _timeout;
+	int _dispatch;
+
+	ReentrantLock _lock=new ReentrantLock();
+	PriorityQueue<Waiter> _waiters=new PriorityQueue<Waiter>();
+	long _seq;
+
+	/**
+	 * @param dbs the DB instances to share; each is used by at most one session at a time
+	 * @param timeout how long to wait for a connection, in milliseconds, or 0 to wait as long as it takes
+	 * @param dispatch the order in which waiting operations get connections: "fifo", "edf" or "weighted"
+	 */
+	DBConnectionPool(Vector<DB> dbs, long timeout, String dispatch)
+	{
+		_dbs=dbs;
+		_idle=new Vector<DB>(dbs);
+		_timeout=timeout;
+
+		if (dispatch.compareTo("fifo")==0)
+		{
+			_dispatch=FIFO;
+		}
+		else if (dispatch.compareTo("edf")==0)
+		{
+			_dispatch=EDF;
+		}
+		else if (dispatch.compareTo("weighted")==0)
+		{
+			_dispatch=WEIGHTED;
+		}
+		else
+		{
+			throw new IllegalArgumentException("Unknown dispatch order \""+dispatch+"\"");
+		}
+	}
+
+	/**
+	 * Initialize all connections. Called once, before any session starts.
+	 */
+	void init() throws DBException
+	{
+		for (DB db : _dbs)
+		{
+			db.init();
+		}
+	}
+
+	/**
+	 * Cleanup all connections. Called once, after all sessions have finished.
+	 */
+	void cleanup() throws DBException
+	{
+		for (DB db : _dbs)
+		{
+			db.cleanup();
+		}
+	}
+
+	/**
+	 * The time (System.nanoTime()) by which an operation generated at the given time should be dispatched,
+	 * according to the dispatch order.
+	 *
+	 * @param parameters the scheduler parameters of the operation, or null if it has none
+	 */
+	long priority(long generated, SchedulerParameter parameters)
+	{
+		if ( (_dispatch==FIFO) || (parameters==null) )
+		{
+			return generated;
+		}
+
+		double slack=parameters.tardiness_deadline*1000000.0;
+		if (_dispatch==WEIGHTED)
+		{
+			slack/=Math.max(parameters.QoS_preference*parameters.query_weight,0.001);
+		}
+		return generated+(long)slack;
+	}
+
+	/**
+	 * Take an idle connection, waiting for one to be returned if they are all in use. Waiting sessions get
+	 * connections in the order of their priorities, lowest first.
+	 *
+	 * @param priority the priority of the operation, as returned by priority()
+	 * @return the connection, or null if none became idle within the timeout
+	 */
+	DB checkout(long priority)
+	{
+		long st=System.nanoTime();
+		DB db=null;
+
+		_lock.lock();
+		try
+		{
+			if ( (_waiters.isEmpty()) && (!_idle.isEmpty()) )
+			{
+				db=_idle.remove(_idle.size()-1);
+			}
+			else
+			{
+				Waiter w=new Waiter();
+				w._priority=priority;
+				w._seq=_seq++;
+				w._assigned=_lock.newCondition();
+				_waiters.add(w);
+
+				while (w._db==null)
+				{
+					try
+					{
+						if (_timeout<=0)
+						{
+							w._assigned.await();
+						}
+						else
+						{
+							long remaining=st+_timeout*1000000-System.nanoTime();
+							if (remaining<=0)
+							{
+								_waiters.remove(w);
+								break;
+							}
+							w._assigned.awaitNanos(remaining);
+						}
+					}
+					catch (InterruptedException e)
+					{
+						//do nothing
+					}
+				}
+				db=w._db;
+			}
+		}
+		finally
+		{
+			_lock.unlock();
+		}
+
+		Measurements measurements=Measurements.getMeasurements();
+		measurements.measure("POOL-WAIT",(int)((System.nanoTime()-st)/1000));
+		measurements.reportReturnCode("POOL-WAIT",(db!=null)?0:CHECKOUT_TIMEOUT);
+		return db;
+	}
+
+	/**
+	 * Return a connection taken with checkout(), handing it to the first waiting session, if any.
+	 */
+	void checkin(DB db)
+	{
+		_lock.lock();
+		try
+		{
+			Waiter w=_waiters.poll();
+			if (w!=null)
+			{
+				w._db=db;
+				w._assigned.signal();
+			}
+			else
+			{
+				_idle.add(db);
+			}
+		}
+		finally
+		{
+			_lock.unlock();
+		}
+	}
+}
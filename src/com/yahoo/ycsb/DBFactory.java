@@ -18,6 +18,7 @@
 package com.yahoo.ycsb;
 
 import java.util.Properties;
+import java.util.Vector;
 
 /**
  * Creates a DB layer by dynamically classloading the specified DB class.
@@ -48,5 +49,47 @@ public class DBFactory
 
 	 return new DBWrapper(ret);
       }
+
+      /**
+       * Create an asynchronous DB layer that allows up to outstanding operations in flight. If dbname is
+       * an AsyncDB, one instance of it is used; otherwise outstanding instances of the synchronous DB
+       * are wrapped in an AsyncDBAdapter.
+       */
+	public static AsyncDB newAsyncDB(String dbname, Properties properties, int outstanding) throws UnknownDBException
+      {
+	 ClassLoader classLoader = DBFactory.class.getClassLoader();
+
+	 AsyncDB ret=null;
+
+	 try 
+	 {
+	    Class<?> dbclass = classLoader.loadClass(dbname);
+
+	    if (AsyncDB.class.isAssignableFrom(dbclass))
+	    {
+	       ret=(AsyncDB)dbclass.getDeclaredConstructor().newInstance();
+	    }
+	    else
+	    {
+	       Vector<DB> dbs=new Vector<DB>();
+	       for (int i=0; i<outstanding; i++)
+	       {
+		  DB db=(DB)dbclass.getDeclaredConstructor().newInstance();
+		  db.setProperties(properties);
+		  dbs.add(db);
+	       }
+	       ret=new AsyncDBAdapter(dbs);
+	    }
+	 }
+	 catch (Exception e) 
+	 {  
+	    e.printStackTrace();
+	    throw new UnknownDBException(e);
+	 }
+	 
+	 ret.setProperties(properties);
+
+	 return new AsyncDBWrapper(ret);
+      }
       
 }
@@ -18,11 +18,13 @@
 package com.yahoo.ycsb;
 
 import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.Vector;
 
 import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.StageTimer;
 import com.yahoo.ycsb.penalty.Penalty;
 import com.yahoo.ycsb.recordlogs.RecordLogs;
 
@@ -31,6 +33,12 @@ import com.yahoo.ycsb.recordlogs.RecordLogs;
  */
 public class DBWrapper extends DB
 {
+	/**
+	 * The counters of successfully inserted records and their size.
+	 */
+	public static final String INSERTED_ROWS="INSERTED-ROWS";
+	public static final String INSERTED_BYTES="INSERTED-BYTES";
+
 	DB _db;
 	Measurements _measurements;
 	
@@ -90,24 +98,26 @@ public class DBWrapper extends DB
 	 */
 	public int read(String table, String key, Set<String> fields, HashMap<String,String> result)
 	{
-		long st=System.currentTimeMillis();
+		long st=System.nanoTime();
 		int res=_db.read(table,key,fields,result);
-		long en=System.currentTimeMillis();
-	    _measurements.measure("READ",(int)(en-st));
-	    _measurements.reportReturnCode("READ",res);
+		long en=System.nanoTime();
+		measured("READ",st,en,res);
 		
 	    /*******chen add *****/
+		long pt=StageTimer.start();
 		String paraString = result.get("scheduler");
 		Penalty penalty = new Penalty(paraString);
 		
-		penalty.client_issue_time = st;
-		penalty.client_finished_time = en;
-		penalty.client_latency = en-st;
+		//the penalty bookkeeping is in wall clock milliseconds, like the server-reported times
+		penalty.client_finished_time = System.currentTimeMillis();
+		penalty.client_latency = (en-st)/1000000;
+		penalty.client_issue_time = penalty.client_finished_time-penalty.client_latency;
 		
 		penaltyresult(penalty, res);
 		
 		
 		_recordlogs.recordlog("READ record", "key="+key +", "+ penalty.toprint());
+		StageTimer.stop(StageTimer.PENALTY,pt);
 		
 		/***************/
 		
@@ -115,15 +125,57 @@ public class DBWrapper extends DB
 		return res;
 	}
 	
+	/**
+	 * Record the service time of an operation (actual start to end) and, if the calling
+	 * thread is following an open-loop schedule, its response time (intended start to end)
+	 * under the name "INTENDED-"+operation. If the operation was issued in a segment of a target
+	 * throughput profile, both are also recorded under operation+" "+segment. Times are
+	 * System.nanoTime() values; latencies are recorded in microseconds.
+	 */
+	void measure(String operation, long st, long en)
+	{
+		measure(_measurements,operation,st,en,_measurements.getIntendedStartTime(),_measurements.getSegment());
+	}
+
+	/**
+	 * Measure an operation and count its return code.
+	 */
+	void measured(String operation, long st, long en, int res)
+	{
+		long mt=StageTimer.start();
+		measure(operation,st,en);
+		_measurements.reportReturnCode(operation,res);
+		StageTimer.stop(StageTimer.MEASUREMENT,mt);
+	}
+
+	static void measure(Measurements measurements, String operation, long st, long en, long intended, String segment)
+	{
+		measurements.measure(operation,(int)((en-st)/1000));
+		if (segment!=null)
+		{
+			measurements.measure(operation+" "+segment,(int)((en-st)/1000));
+		}
+
+		if (intended>=0)
+		{
+			measurements.measure("INTENDED-"+operation,(int)((en-intended)/1000));
+			if (segment!=null)
+			{
+				measurements.measure("INTENDED-"+operation+" "+segment,(int)((en-intended)/1000));
+			}
+		}
+	}
+
 	public void penaltyresult(Penalty penalty, int res)
 	{
-	    _measurements.measure("Total Penalty", (int)penalty.getTotalPenalty());
+	    //penalties are weighted milliseconds; record them in the same unit as latencies (microseconds)
+	    _measurements.measure("Total Penalty", (int)(penalty.getTotalPenalty()*1000));
         _measurements.reportReturnCode("Total Penalty", res);
         
-        _measurements.measure("QoS Penalty", (int)penalty.getQoSPenalty());
+        _measurements.measure("QoS Penalty", (int)(penalty.getQoSPenalty()*1000));
         _measurements.reportReturnCode("QoS Penalty", res);
         
-        _measurements.measure("QoD Penalty", (int)penalty.getQoDPenalty());
+        _measurements.measure("QoD Penalty", (int)(penalty.getQoDPenalty()*1000));
         _measurements.reportReturnCode("QoD Penalty", res);
 	}
 	
@@ -140,11 +192,10 @@ public class DBWrapper extends DB
 	 */
 	public int scan(String table, String startkey, int recordcount, Set<String> fields, Vector<HashMap<String,String>> result)
 	{
-		long st=System.currentTimeMillis();
+		long st=System.nanoTime();
 		int res=_db.scan(table,startkey,recordcount,fields,result);
-		long en=System.currentTimeMillis();
-		_measurements.measure("SCAN",(int)(en-st));
-		_measurements.reportReturnCode("SCAN",res);
+		long en=System.nanoTime();
+		measured("SCAN",st,en,res);
 		return res;
 	}
 	
@@ -159,11 +210,10 @@ public class DBWrapper extends DB
 	 */
 	public int update(String table, String key, HashMap<String,String> values)
 	{
-		long st=System.currentTimeMillis();
+		long st=System.nanoTime();
 		int res=_db.update(table,key,values);
-		long en=System.currentTimeMillis();
-		_measurements.measure("UPDATE",(int)(en-st));
-		_measurements.reportReturnCode("UPDATE",res);
+		long en=System.nanoTime();
+		measured("UPDATE",st,en,res);
 		return res;
 	}
 
@@ -178,14 +228,96 @@ public class DBWrapper extends DB
 	 */
 	public int insert(String table, String key, HashMap<String,String> values)
 	{
-		long st=System.currentTimeMillis();
+		long st=System.nanoTime();
 		int res=_db.insert(table,key,values);
-		long en=System.currentTimeMillis();
-		_measurements.measure("INSERT",(int)(en-st));
-		_measurements.reportReturnCode("INSERT",res);
+		long en=System.nanoTime();
+		measured("INSERT",st,en,res);
+		if (res==0)
+		{
+			inserted(_measurements,1,size(key,values));
+		}
+		return res;
+	}
+
+	/**
+	 * Insert several records in the database at once. The batch is measured as one INSERT-BATCH operation.
+	 *
+	 * @param table The name of the table
+	 * @param keys The record keys of the records to insert.
+	 * @param values For each record, a HashMap of field/value pairs to insert in it
+	 * @return Zero on success, a non-zero error code on error
+	 */
+	public int insertBatch(String table, Vector<String> keys, Vector<HashMap<String,String>> values)
+	{
+		long st=System.nanoTime();
+		int res=_db.insertBatch(table,keys,values);
+		long en=System.nanoTime();
+		measured("INSERT-BATCH",st,en,res);
+		if (res==0)
+		{
+			inserted(_measurements,keys.size(),size(keys,values));
+		}
 		return res;
 	}
 
+	/**
+	 * Insert a record that expires after ttl seconds. It is measured as an INSERT-TTL operation.
+	 *
+	 * @param table The name of the table
+	 * @param key The record key of the record to insert.
+	 * @param values A HashMap of field/value pairs to insert in the record
+	 * @param ttl The number of seconds after which the record expires
+	 * @return Zero on success, a non-zero error code on error
+	 */
+	public int insertWithTTL(String table, String key, HashMap<String,String> values, int ttl)
+	{
+		long st=System.nanoTime();
+		int res=_db.insertWithTTL(table,key,values,ttl);
+		long en=System.nanoTime();
+		measured("INSERT-TTL",st,en,res);
+		if (res==0)
+		{
+			inserted(_measurements,1,size(key,values));
+		}
+		return res;
+	}
+
+	/**
+	 * Count inserted records, and their size, for the INSERTED rows/sec and bytes/sec. Also used by
+	 * AsyncDBWrapper.
+	 */
+	static void inserted(Measurements measurements, long rows, long bytes)
+	{
+		measurements.count(INSERTED_ROWS,rows);
+		measurements.count(INSERTED_BYTES,bytes);
+	}
+
+	/**
+	 * The size of a record as counted for INSERTED bytes: the characters of its key, field names and values.
+	 */
+	static long size(String key, HashMap<String,String> values)
+	{
+		long bytes=key.length();
+		for (Map.Entry<String,String> e : values.entrySet())
+		{
+			bytes+=e.getKey().length()+e.getValue().length();
+		}
+		return bytes;
+	}
+
+	/**
+	 * The total size of a batch of records, as counted for INSERTED bytes.
+	 */
+	static long size(Vector<String> keys, Vector<HashMap<String,String>> values)
+	{
+		long bytes=0;
+		for (int i=0; i<keys.size(); i++)
+		{
+			bytes+=size(keys.get(i),values.get(i));
+		}
+		return bytes;
+	}
+
 	/**
 	 * Delete a record from the database. 
 	 *
@@ -195,11 +327,10 @@ public class DBWrapper extends DB
 	 */
 	public int delete(String table, String key)
 	{
-		long st=System.currentTimeMillis();
+		long st=System.nanoTime();
 		int res=_db.delete(table,key);
-		long en=System.currentTimeMillis();
-		_measurements.measure("DELETE",(int)(en-st));
-		_measurements.reportReturnCode("DELETE",res);
+		long en=System.nanoTime();
+		measured("DELETE",st,en,res);
 		return res;
 	}
 }
@@ -0,0 +1,60 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.util.HashMap;
+import java.util.Set;
+import java.util.Vector;
+
+/**
+ * A DB that does nothing and succeeds at once, to measure the overhead of the client itself. Reads return
+ * the same scheduler parameters as BasicDB, so that the penalty bookkeeping is exercised as well.
+ */
+public class NoopDB extends DB
+{
+	public int read(String table, String key, Set<String> fields, HashMap<String,String> result)
+	{
+		result.put("scheduler", "20,100,1.0,1.0,true,-1,-1,-1,-1,-1,-1,-1,-1");
+		return 0;
+	}
+
+	public int scan(String table, String startkey, int recordcount, Set<String> fields, Vector<HashMap<String,String>> result)
+	{
+		return 0;
+	}
+
+	public int update(String table, String key, HashMap<String,String> values)
+	{
+		return 0;
+	}
+
+	public int insert(String table, String key, HashMap<String,String> values)
+	{
+		return 0;
+	}
+
+	public int insertWithTTL(String table, String key, HashMap<String,String> values, int ttl)
+	{
+		return 0;
+	}
+
+	public int delete(String table, String key)
+	{
+		return 0;
+	}
+}
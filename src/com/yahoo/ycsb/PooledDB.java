@@ -0,0 +1,186 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+
+import org.apache.cassandra.db.SchedulerParameter;
+
+import com.yahoo.ycsb.measurements.Measurements;
+
+/**
+ * The DB given to one client session when sessions share a DBConnectionPool. Each operation runs
+ * on a connection checked out from the pool, and fails if none can be checked out in time. The pool
+ * is initialized and cleaned up by Client, so init() and cleanup() do nothing here.
+ *
+ * Reads carry their scheduler parameters, which the pool may use to order the waiting operations. For
+ * them, the penalty as seen by the client is measured as "Client QoS Penalty": the weighted time by
+ * which the read completed after its tardiness deadline, counted from when it was issued to the pool.
+ * Unlike the penalties reported by the server, this includes the time spent waiting in the client.
+ */
+class PooledDB extends DB
+{
+	DBConnectionPool _pool;
+
+	PooledDB(DBConnectionPool pool)
+	{
+		_pool=pool;
+	}
+
+	public Properties getProperties()
+	{
+		return _pool._dbs.firstElement().getProperties();
+	}
+
+	public int read(String table, String key, Set<String> fields, HashMap<String,String> result)
+	{
+		long st=System.nanoTime();
+		String para=result.get("para");
+		SchedulerParameter parameters=(para!=null) ? new SchedulerParameter(para) : null;
+
+		DB db=_pool.checkout(_pool.priority(st,parameters));
+		if (db==null)
+		{
+			return DBConnectionPool.CHECKOUT_TIMEOUT;
+		}
+		try
+		{
+			int res=db.read(table,key,fields,result);
+
+			if (parameters!=null)
+			{
+				double late=Math.max(0,(System.nanoTime()-st)/1000000.0-parameters.tardiness_deadline);
+				double penalty=parameters.QoS_preference*parameters.query_weight*late;
+				Measurements measurements=Measurements.getMeasurements();
+				measurements.measure("Client QoS Penalty",(int)(penalty*1000));
+				measurements.reportReturnCode("Client QoS Penalty",res);
+			}
+
+			return res;
+		}
+		finally
+		{
+			_pool.checkin(db);
+		}
+	}
+
+	public int scan(String table, String startkey, int recordcount, Set<String> fields, Vector<HashMap<String,String>> result)
+	{
+		DB db=_pool.checkout(_pool.priority(System.nanoTime(),null));
+		if (db==null)
+		{
+			return DBConnectionPool.CHECKOUT_TIMEOUT;
+		}
+		try
+		{
+			return db.scan(table,startkey,recordcount,fields,result);
+		}
+		finally
+		{
+			_pool.checkin(db);
+		}
+	}
+
+	public int update(String table, String key, HashMap<String,String> values)
+	{
+		DB db=_pool.checkout(_pool.priority(System.nanoTime(),null));
+		if (db==null)
+		{
+			return DBConnectionPool.CHECKOUT_TIMEOUT;
+		}
+		try
+		{
+			return db.update(table,key,values);
+		}
+		finally
+		{
+			_pool.checkin(db);
+		}
+	}
+
+	public int insert(String table, String key, HashMap<String,String> values)
+	{
+		DB db=_pool.checkout(_pool.priority(System.nanoTime(),null));
+		if (db==null)
+		{
+			return DBConnectionPool.CHECKOUT_TIMEOUT;
+		}
+		try
+		{
+			return db.insert(table,key,values);
+		}
+		finally
+		{
+			_pool.checkin(db);
+		}
+	}
+
+	public int insertBatch(String table, Vector<String> keys, Vector<HashMap<String,String>> values)
+	{
+		DB db=_pool.checkout(_pool.priority(System.nanoTime(),null));
+		if (db==null)
+		{
+			return DBConnectionPool.CHECKOUT_TIMEOUT;
+		}
+		try
+		{
+			return db.insertBatch(table,keys,values);
+		}
+		finally
+		{
+			_pool.checkin(db);
+		}
+	}
+
+	public int insertWithTTL(String table, String key, HashMap<String,String> values, int ttl)
+	{
+		DB db=_pool.checkout(_pool.priority(System.nanoTime(),null));
+		if (db==null)
+		{
+			return DBConnectionPool.CHECKOUT_TIMEOUT;
+		}
+		try
+		{
+			return db.insertWithTTL(table,key,values,ttl);
+		}
+		finally
+		{
+			_pool.checkin(db);
+		}
+	}
+
+	public int delete(String table, String key)
+	{
+		DB db=_pool.checkout(_pool.priority(System.nanoTime(),null));
+		if (db==null)
+		{
+			return DBConnectionPool.CHECKOUT_TIMEOUT;
+		}
+		try
+		{
+			return db.delete(table,key);
+		}
+		finally
+		{
+			_pool.checkin(db);
+		}
+	}
+}
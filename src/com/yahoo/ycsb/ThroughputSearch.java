@@ -0,0 +1,370 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.Vector;
+
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.OneMeasurement;
+import com.yahoo.ycsb.measurements.OneMeasurementHistogram;
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+import com.yahoo.ycsb.recordlogs.RecordLogs;
+
+/**
+ * Searches for the highest target throughput at which the transaction phase still meets a latency SLO.
+ * Each probe runs the workload at one target for a fixed window, with fresh measurements. A probe passes if
+ * every SLO constraint holds on at least one measured operation, the error rate of the constrained
+ * operations is low enough, and the client actually achieved (nearly) the target. The target is doubled until a probe fails, and the interval between
+ * the highest passing and the lowest failing target is then bisected until it is narrow enough.
+ */
+class ThroughputSearch
+{
+	/**
+	 * The SLO to search under: a comma-separated list of operation:percentile:milliseconds constraints,
+	 * e.g. "READ:99:10,UPDATE:95:20". Setting this property turns on the search.
+	 */
+	public static final String SLO_PROPERTY="search.slo";
+
+	/**
+	 * The highest fraction of the constrained operations that may fail.
+	 */
+	public static final String MAX_ERROR_RATE_PROPERTY="search.maxerrorrate";
+
+	public static final String MAX_ERROR_RATE_PROPERTY_DEFAULT="0.01";
+
+	/**
+	 * The lowest fraction of the target throughput a probe must achieve to pass.
+	 */
+	public static final String MIN_ACHIEVED_PROPERTY="search.minachieved";
+
+	public static final String MIN_ACHIEVED_PROPERTY_DEFAULT="0.95";
+
+	/**
+	 * The target throughput (ops/sec) of the first probe.
+	 */
+	public static final String START_PROPERTY="search.start";
+
+	public static final String START_PROPERTY_DEFAULT="100";
+
+	/**
+	 * The length of each probe, in seconds.
+	 */
+	public static final String WINDOW_PROPERTY="search.window";
+
+	public static final String WINDOW_PROPERTY_DEFAULT="30";
+
+	/**
+	 * Stop when the highest passing and lowest failing targets are within this fraction of each other.
+	 */
+	public static final String PRECISION_PROPERTY="search.precision";
+
+	public static final String PRECISION_PROPERTY_DEFAULT="0.05";
+
+	/**
+	 * The largest number of probes to run.
+	 */
+	public static final String MAX_PROBES_PROPERTY="search.maxprobes";
+
+	public static final String MAX_PROBES_PROPERTY_DEFAULT="20";
+
+	/**
+	 * One latency constraint of the SLO.
+	 */
+	static class Constraint
+	{
+		String _operation;
+		double _percentile;
+		double _latency;
+
+		Constraint(String spec)
+		{
+			String[] fields=spec.trim().split(":");
+			if (fields.length!=3)
+			{
+				throw new IllegalArgumentException("SLO constraint \""+spec+"\" is not of the form operation:percentile:milliseconds");
+			}
+			_operation=fields[0];
+			_percentile=Double.parseDouble(fields[1]);
+			_latency=Double.parseDouble(fields[2]);
+		}
+
+		String getName()
+		{
+			return _operation+" p"+format(_percentile);
+		}
+	}
+
+	/**
+	 * The outcome of one probe.
+	 */
+	static class Probe
+	{
+		int _target;
+		long _opcount;
+		long _runtime;
+		double _throughput;
+		double[] _latencies;
+		double _errorrate;
+		boolean _pass;
+		HashMap<String,OneMeasurement> _data;
+	}
+
+	Properties _props;
+	Workload _workload;
+	String _label;
+	boolean _status;
+
+	Vector<Constraint> _slo=new Vector<Constraint>();
+	double _maxerrorrate;
+	double _minachieved;
+	double _window;
+	double _precision;
+	int _maxprobes;
+
+	Vector<Probe> _probes=new Vector<Probe>();
+	Probe _best=null;
+
+	ThroughputSearch(Properties props, Workload workload, String label, boolean status)
+	{
+		_props=props;
+		_workload=workload;
+		_label=label;
+		_status=status;
+
+		for (String spec : props.getProperty(SLO_PROPERTY).split(","))
+		{
+			Constraint c=new Constraint(spec);
+			if (!workload.doesOperation(operationOf(c._operation)))
+			{
+				throw new IllegalArgumentException("The SLO constrains "+c._operation+", which the workload does not do");
+			}
+			_slo.add(c);
+		}
+		_maxerrorrate=Double.parseDouble(props.getProperty(MAX_ERROR_RATE_PROPERTY,MAX_ERROR_RATE_PROPERTY_DEFAULT));
+		_minachieved=Double.parseDouble(props.getProperty(MIN_ACHIEVED_PROPERTY,MIN_ACHIEVED_PROPERTY_DEFAULT));
+		_window=Double.parseDouble(props.getProperty(WINDOW_PROPERTY,WINDOW_PROPERTY_DEFAULT));
+		_precision=Double.parseDouble(props.getProperty(PRECISION_PROPERTY,PRECISION_PROPERTY_DEFAULT));
+		_maxprobes=Integer.parseInt(props.getProperty(MAX_PROBES_PROPERTY,MAX_PROBES_PROPERTY_DEFAULT));
+
+		if (props.getProperty("measurementtype","histogram").compareTo("histogram")!=0)
+		{
+			throw new IllegalArgumentException("The throughput search requires measurementtype=histogram");
+		}
+	}
+
+	/**
+	 * Run probes until the maximum sustainable throughput is known to within the precision, or the
+	 * probes run out. Afterwards, the current Measurements are those of the best passing probe.
+	 */
+	void run()
+	{
+		int target=Integer.parseInt(_props.getProperty(START_PROPERTY,START_PROPERTY_DEFAULT));
+		int passing=0;
+		int failing=-1;
+
+		for (int i=0; (i<_maxprobes) && (!Client.isStopping()); i++)
+		{
+			Probe probe=probe(target);
+			_probes.add(probe);
+
+			if (probe._pass)
+			{
+				passing=target;
+				_best=probe;
+			}
+			else
+			{
+				failing=target;
+			}
+
+			if (failing<0)
+			{
+				target*=2;
+			}
+			else
+			{
+				if (failing-passing<=Math.max(1,_precision*failing))
+				{
+					break;
+				}
+				target=(passing+failing)/2;
+			}
+		}
+
+		Measurements.setProperties(_props);
+		Measurements.resetMeasurements();
+		if (_best!=null)
+		{
+			Measurements.getMeasurements().merge(_best._data);
+		}
+	}
+
+	/**
+	 * Run the workload at the given target for one window, and judge the result.
+	 */
+	Probe probe(int target)
+	{
+		Probe probe=new Probe();
+		probe._target=target;
+		long opcount=(long)Math.max(1,target*_window);
+
+		Properties probeprops=new Properties();
+		probeprops.putAll(_props);
+		probeprops.setProperty("target",Integer.toString(target));
+		probeprops.setProperty(Client.OPERATION_COUNT_PROPERTY,Long.toString(opcount));
+		//a target the store cannot sustain would otherwise take longer than the window to reach its operation count
+		probeprops.setProperty(Client.MAX_EXECUTION_TIME_PROPERTY,Double.toString(_window));
+
+		Measurements.setProperties(probeprops);
+		Measurements.resetMeasurements();
+		RecordLogs.setProperties(probeprops);
+		RecordLogs.resetRecordLogs();
+
+		System.err.println("Probing "+target+" ops/sec...");
+
+		Client.PhaseResult result=Client.runPhase(probeprops,_workload,true,_label+" "+target,_status);
+		probe._runtime=result._runtime;
+		probe._opcount=result._opsdone;
+		probe._throughput=1000.0*((double)probe._opcount)/((double)Math.max(1,probe._runtime));
+		probe._pass=probe._throughput>=_minachieved*target;
+
+		HashMap<String,OneMeasurement> data=Measurements.getMeasurements().getMeasurementData();
+		probe._data=data;
+		long operations=0;
+		long errors=0;
+		probe._latencies=new double[_slo.size()];
+		for (int i=0; i<_slo.size(); i++)
+		{
+			Constraint c=_slo.get(i);
+			OneMeasurementHistogram h=(OneMeasurementHistogram)data.get(c._operation);
+			if ( (h==null) || (h.getOperations()==0) )
+			{
+				//without samples the constraint cannot be checked, e.g. because the probe stalled
+				probe._latencies[i]=-1;
+				probe._pass=false;
+				continue;
+			}
+			probe._latencies[i]=h.getPercentile(c._percentile)/1000.0;
+			if (probe._latencies[i]>c._latency)
+			{
+				probe._pass=false;
+			}
+			operations+=h.getOperations();
+			errors+=h.getErrors();
+		}
+		probe._errorrate=(operations==0) ? 0 : ((double)errors)/((double)operations);
+		if (probe._errorrate>_maxerrorrate)
+		{
+			probe._pass=false;
+		}
+
+		System.err.println("Probe at "+target+" ops/sec: "+(probe._pass?"pass":"fail"));
+
+		return probe;
+	}
+
+	/**
+	 * The total number of operations done by all probes.
+	 */
+	long getOpCount()
+	{
+		long opcount=0;
+		for (Probe probe : _probes)
+		{
+			opcount+=probe._opcount;
+		}
+		return opcount;
+	}
+
+	/**
+	 * The total run time of all probes, in milliseconds.
+	 */
+	long getRunTime()
+	{
+		long runtime=0;
+		for (Probe probe : _probes)
+		{
+			runtime+=probe._runtime;
+		}
+		return runtime;
+	}
+
+	/**
+	 * Write the trajectory of the search, one probe after the other, and its result.
+	 */
+	void exportResults(MeasurementsExporter exporter) throws IOException
+	{
+		for (int i=0; i<_probes.size(); i++)
+		{
+			Probe probe=_probes.get(i);
+			String metric="SEARCH probe "+i;
+			exporter.write(metric,"Target(ops/sec)",probe._target);
+			exporter.write(metric,"Throughput(ops/sec)",probe._throughput);
+			for (int j=0; j<_slo.size(); j++)
+			{
+				exporter.write(metric,_slo.get(j).getName()+"(ms)",probe._latencies[j]);
+			}
+			exporter.write(metric,"ErrorRate",probe._errorrate);
+			exporter.write(metric,"Pass",probe._pass?1:0);
+		}
+
+		exporter.write("SEARCH","Probes",_probes.size());
+		if (_best!=null)
+		{
+			exporter.write("SEARCH","MaxSustainableTarget(ops/sec)",_best._target);
+			exporter.write("SEARCH","MaxSustainableThroughput(ops/sec)",_best._throughput);
+		}
+		else
+		{
+			exporter.write("SEARCH","MaxSustainableTarget(ops/sec)",0);
+		}
+	}
+
+	/**
+	 * The operation a measurement name is taken for, e.g. READ for INTENDED-READ or for the INTENDED-READ
+	 * of a profile segment, keeping the tenant class if there is one (READ@gold).
+	 */
+	static String operationOf(String metric)
+	{
+		String tenantclass="";
+		int at=metric.lastIndexOf('@');
+		if (at>=0)
+		{
+			tenantclass=metric.substring(at);
+			metric=metric.substring(0,at);
+		}
+		if (metric.startsWith("INTENDED-"))
+		{
+			metric=metric.substring("INTENDED-".length());
+			int space=metric.indexOf(' ');
+			if (space>=0)
+			{
+				metric=metric.substring(0,space);
+			}
+		}
+		return metric+tenantclass;
+	}
+
+	static String format(double d)
+	{
+		return (d==Math.floor(d)) ? Long.toString((long)d) : Double.toString(d);
+	}
+}
@@ -42,10 +42,19 @@ public class Utils
        * Generate a random ASCII string of a given length.
        */
       public static String ASCIIString(int length)
+      {
+        return ASCIIString(new byte[length], random);
+      }
+
+      /**
+       * Generate a random ASCII string as long as the given buffer, using the buffer to build it in.
+       * Lets a thread with its own buffer and Random avoid allocating anything but the string itself.
+       */
+      public static String ASCIIString(byte[] buf, Random random)
       {
 	 int interval='~'-' '+1;
+	 int length=buf.length;
 	
-        byte []buf = new byte[length];
         random.nextBytes(buf);
         for (int i = 0; i < length; i++) {
           if (buf[i] < 0) {
@@ -64,6 +64,53 @@ public abstract class Workload
 	 return null;
       }
       
+      /**
+       * Change the configuration of the scenario while the run is in progress, e.g. from a control channel.
+       * Only the given properties change; the others keep their current values. Called from a thread other
+       * than the client threads, concurrently with doInsert() and doTransaction().
+       * 
+       * @throws WorkloadException if the workload cannot make the change, in which case nothing is changed
+       */
+      public void reconfigure(Properties p) throws WorkloadException
+      {
+	 throw new WorkloadException(getClass().getName()+" cannot be reconfigured while running");
+      }
+
+      /**
+       * Return what has to be saved to resume the load phase later from where it is now, or null if the
+       * workload cannot be resumed. Called periodically during the load phase, from a thread other than the
+       * client threads and concurrently with doInsert(). Inserts reported as done by a checkpoint must not be
+       * repeated after resuming from it.
+       * 
+       * @param threadstates the objects returned by initThread(), indexed by thread id; null for threads that
+       *        have not been initialized yet
+       */
+      public Properties checkpoint(Object[] threadstates)
+      {
+	 return null;
+      }
+
+      /**
+       * Continue an interrupted load phase from a checkpoint returned by checkpoint(). Called before init(),
+       * which should then set the workload up to do only the inserts that were not done yet.
+       * 
+       * @throws WorkloadException if the workload cannot resume from the checkpoint
+       */
+      public void resume(Properties checkpoint) throws WorkloadException
+      {
+	 throw new WorkloadException(getClass().getName()+" cannot resume a load phase");
+      }
+
+      /**
+       * Whether the transaction phase can issue operations measured under the given name, such as "READ".
+       * Called after init(). Used to reject a throughput search SLO on operations that never happen; by
+       * default any name is assumed possible.
+       */
+      public boolean doesOperation(String operation)
+      {
+	 return true;
+      }
+
       /**
        * Cleanup the scenario. Called once, in the main client thread, after all operations have completed.
        */
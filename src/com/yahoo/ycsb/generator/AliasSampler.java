@@ -0,0 +1,157 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.generator;
+
+import java.util.Vector;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Chooses from a discrete set of weighted values in constant time, whatever the number of values, with
+ * Walker's alias method: each value gets an equally likely slot, which holds the value with some probability
+ * and otherwise its alias, a value that has weight to spare. Randomness comes from ThreadLocalRandom, so
+ * threads sharing a sampler do not contend.
+ *
+ * Add all the values before sharing the sampler between threads; adding a value rebuilds the table.
+ */
+public class AliasSampler<T>
+{
+	Vector<T> _values=new Vector<T>();
+	Vector<Double> _weights=new Vector<Double>();
+
+	Object[] _slots=new Object[0];
+	Object[] _aliases=new Object[0];
+	double[] _probabilities=new double[0];
+
+	/**
+	 * Add a value, chosen in proportion to the given weight.
+	 */
+	public void addValue(double weight, T value)
+	{
+		_values.add(value);
+		_weights.add(weight);
+		build();
+	}
+
+	/**
+	 * The number of values added.
+	 */
+	public int size()
+	{
+		return _values.size();
+	}
+
+	/**
+	 * Whether the given value was added with a positive weight.
+	 */
+	public boolean contains(T value)
+	{
+		for (int i=0; i<_values.size(); i++)
+		{
+			if ( (_values.get(i).equals(value)) && (_weights.get(i)>0) )
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Choose a value. There must be at least one value with a positive weight.
+	 */
+	@SuppressWarnings("unchecked")
+	public T next()
+	{
+		ThreadLocalRandom random=ThreadLocalRandom.current();
+		int slot=random.nextInt(_slots.length);
+		if (random.nextDouble()<_probabilities[slot])
+		{
+			return (T)_slots[slot];
+		}
+		return (T)_aliases[slot];
+	}
+
+	/**
+	 * Build the table (Vose's version of the alias method, which is exact up to rounding).
+	 */
+	void build()
+	{
+		int n=_values.size();
+		double sum=0;
+		for (int i=0; i<n; i++)
+		{
+			sum+=_weights.get(i);
+		}
+
+		Object[] slots=new Object[n];
+		Object[] aliases=new Object[n];
+		double[] probabilities=new double[n];
+
+		//each slot holds a weight of 1 in these units
+		double[] scaled=new double[n];
+		int[] small=new int[n];
+		int[] large=new int[n];
+		int smallcount=0;
+		int largecount=0;
+		for (int i=0; i<n; i++)
+		{
+			slots[i]=_values.get(i);
+			aliases[i]=_values.get(i);
+			scaled[i]=(sum>0) ? _weights.get(i)*n/sum : 0;
+			if (scaled[i]<1)
+			{
+				small[smallcount++]=i;
+			}
+			else
+			{
+				large[largecount++]=i;
+			}
+		}
+
+		//fill each underfull slot with weight from an overfull one
+		while ( (smallcount>0) && (largecount>0) )
+		{
+			int s=small[--smallcount];
+			int l=large[--largecount];
+			probabilities[s]=scaled[s];
+			aliases[s]=_values.get(l);
+			scaled[l]-=1-scaled[s];
+			if (scaled[l]<1)
+			{
+				small[smallcount++]=l;
+			}
+			else
+			{
+				large[largecount++]=l;
+			}
+		}
+
+		//what is left is full, up to rounding
+		while (largecount>0)
+		{
+			probabilities[large[--largecount]]=1;
+		}
+		while (smallcount>0)
+		{
+			probabilities[small[--smallcount]]=1;
+		}
+
+		_slots=slots;
+		_aliases=aliases;
+		_probabilities=probabilities;
+	}
+}
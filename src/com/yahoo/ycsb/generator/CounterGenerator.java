@@ -23,6 +23,7 @@ package com.yahoo.ycsb.generator;
 public class CounterGenerator extends IntegerGenerator
 {
 	int counter;
+	int step=1;
 
 	/**
 	 * Create a counter that starts at countstart
@@ -32,6 +33,16 @@ public class CounterGenerator extends IntegerGenerator
 		counter=countstart;
 		setLastInt(countstart-1);
 	}
+
+	/**
+	 * Create a counter that starts at countstart and counts in steps of step, e.g. to give each of step
+	 * clients every step-th number.
+	 */
+	public CounterGenerator(int countstart, int step)
+	{
+		this(countstart);
+		this.step=step;
+	}
 	
 	/**
 	 * If the generator returns numeric (integer) values, return the next value as an int. Default is to return -1, which
@@ -40,7 +51,7 @@ public class CounterGenerator extends IntegerGenerator
 	public synchronized int nextInt() 
 	{
 		int lastint=counter;
-		counter++;
+		counter+=step;
 		setLastInt(lastint);
 		return lastint;
 	}
@@ -17,36 +17,20 @@
 
 package com.yahoo.ycsb.generator;
 
-import java.util.Vector;
-import java.util.Random;
-
 import com.yahoo.ycsb.WorkloadException;
 
 /**
- * Generates a distribution by choosing from a discrete set of values.
+ * Generates a distribution by choosing from a discrete set of values. Choosing takes constant time; see
+ * AliasSampler.
  */
 public class DiscreteGenerator extends Generator
 {
-	class Pair
-	{
-		public double _weight;
-		public String _value;
-
-		Pair(double weight, String value)
-		{
-			_weight=weight;
-			_value=value;
-		}
-	}
-
-	Vector<Pair> _values;
-	Random _random;
+	AliasSampler<String> _sampler;
 	String _lastvalue;
 
 	public DiscreteGenerator()
 	{
-		_values=new Vector<Pair>();
-		_random=new Random();
+		_sampler=new AliasSampler<String>();
 		_lastvalue=null;
 	}
 
@@ -55,31 +39,15 @@ public class DiscreteGenerator extends Generator
 	 */
 	public String nextString()
 	{
-		double sum=0;
-
-		for (Pair p : _values)
+		if (_sampler.size()==0)
 		{
-			sum+=p._weight;
-		}
+			//should never get here.
+			System.out.println("oops. should not get here.");
 
-		double val=_random.nextDouble();
-
-		for (Pair p : _values)
-		{
-			if (val<p._weight/sum)
-			{
-				return p._value;
-			}
-
-			val-=p._weight/sum;
+			System.exit(0);
 		}
 
-		//should never get here.
-		System.out.println("oops. should not get here.");
-
-		System.exit(0);
-
-		return null;
+		return _sampler.next();
 	}
 
 	/**
@@ -109,7 +77,7 @@ public class DiscreteGenerator extends Generator
 
 	public void addValue(double weight, String value)
 	{
-		_values.add(new Pair(weight,value));
+		_sampler.addValue(weight,value);
 	}
 
 }
@@ -0,0 +1,106 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.generator;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.yahoo.ycsb.Utils;
+import com.yahoo.ycsb.measurements.Measurements;
+
+/**
+ * A zipfian distribution whose popular items change over time, to see how fast caches and schedulers adapt
+ * to a new hot set. Time is divided into epochs of a given length, counted from the construction of the
+ * generator; each new epoch is stamped in the measurements as the event "hotspot epoch &lt;n&gt;", so that it
+ * can be lined up with the time series.
+ * <UL>
+ * <LI>JUMP: the popular items are scattered across the itemspace, as for @ScrambledZipfianGenerator, and
+ * move to other, unrelated items at the start of every epoch.
+ * <LI>SLIDE: the popular items are next to each other, the most popular first, and move along the itemspace
+ * continuously, by the given number of items per epoch, so that the hot set of one moment overlaps the next.
+ * </UL>
+ */
+public class ShiftingHotspotGenerator extends IntegerGenerator
+{
+	public enum Mode
+	{
+		JUMP, SLIDE
+	}
+
+	ZipfianGenerator gen;
+	long _min,_itemcount;
+	Mode _mode;
+	long _period;
+	double _shift;
+	long _start;
+
+	/**
+	 * The latest epoch stamped in the measurements.
+	 */
+	AtomicLong _epoch=new AtomicLong();
+
+	/**
+	 * Create a generator for items between min and max (inclusive).
+	 * @param period The length of an epoch, in nanoseconds.
+	 * @param shift For SLIDE, the number of items the hot set moves by in an epoch.
+	 * @param start The time (System.nanoTime()) at which epoch 0 starts.
+	 */
+	public ShiftingHotspotGenerator(long min, long max, Mode mode, long period, long shift, long start)
+	{
+		_min=min;
+		_itemcount=max-min+1;
+		_mode=mode;
+		_period=period;
+		_shift=shift;
+		_start=start;
+		gen=new ZipfianGenerator(0,ScrambledZipfianGenerator.ITEM_COUNT,ZipfianGenerator.ZIPFIAN_CONSTANT,ScrambledZipfianGenerator.ZETAN);
+	}
+
+	@Override
+	public int nextInt()
+	{
+		return (int)nextLong();
+	}
+
+	public long nextLong()
+	{
+		long elapsed=Math.max(0,System.nanoTime()-_start);
+		long epoch=elapsed/_period;
+		long current=_epoch.get();
+		if ( (epoch>current) && (_epoch.compareAndSet(current,epoch)) )
+		{
+			Measurements.getMeasurements().stamp("hotspot epoch "+epoch);
+		}
+
+		long rank=gen.nextLong();
+		long ret;
+		if (_mode==Mode.JUMP)
+		{
+			//the ranks are below 2^40, so the epoch goes in the upper bytes. adding a hashed offset instead would
+			//not do, as FNV maps the top ranks to keys spaced evenly enough for an offset to land them on each other
+			ret=Utils.FNVhash64(rank+(epoch<<40))%_itemcount;
+		}
+		else
+		{
+			long offset=(long)(_shift*elapsed/_period);
+			ret=(rank%_itemcount+offset%_itemcount)%_itemcount;
+		}
+		ret+=_min;
+		setLastInt((int)ret);
+		return ret;
+	}
+}
@@ -0,0 +1,323 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
+/**
+ * Samples how busy the client itself is while a run is in progress, so that a throughput plateau caused
+ * by the client can be told apart from one caused by the store. At every interval it takes
+ * <UL>
+ * <LI>the CPU time used by the process, as a percentage of all processors,
+ * <LI>the time spent in garbage collection, and the number of collections, from the GC MXBeans,
+ * <LI>the rate at which the client's threads allocate memory,
+ * <LI>the scheduling lag: how much later than intended the throttled client threads woke up.
+ * </UL>
+ * An interval in which any of these crosses its threshold is reported as saturated, with a warning on
+ * stderr. The scheduling lags are also measured individually, as SCHEDULING-LAG; the summary is exported
+ * as "CLIENT" measurements.
+ *
+ * Allocation is only counted for platform threads, and only if the JVM supports thread allocation
+ * accounting; sessions run on virtual threads are not included.
+ */
+public class ClientMonitor extends Thread
+{
+	/**
+	 * Whether to monitor the client. On by default.
+	 */
+	public static final String CLIENT_MONITOR_PROPERTY="clientmonitor";
+
+	public static final String CLIENT_MONITOR_PROPERTY_DEFAULT="true";
+
+	/**
+	 * The sampling interval, in seconds.
+	 */
+	public static final String INTERVAL_PROPERTY="clientmonitor.interval";
+
+	public static final String INTERVAL_PROPERTY_DEFAULT="1";
+
+	/**
+	 * The CPU use, in percent of all processors, above which the client is considered saturated.
+	 */
+	public static final String CPU_THRESHOLD_PROPERTY="clientmonitor.cpu";
+
+	public static final String CPU_THRESHOLD_PROPERTY_DEFAULT="90";
+
+	/**
+	 * The percentage of time spent in garbage collection above which the client is considered saturated.
+	 */
+	public static final String GC_THRESHOLD_PROPERTY="clientmonitor.gc";
+
+	public static final String GC_THRESHOLD_PROPERTY_DEFAULT="10";
+
+	/**
+	 * The average scheduling lag, in milliseconds, above which the client is considered saturated.
+	 */
+	public static final String LAG_THRESHOLD_PROPERTY="clientmonitor.lag";
+
+	public static final String LAG_THRESHOLD_PROPERTY_DEFAULT="1";
+
+	static final LongAdder lagtotal=new LongAdder();
+	static final LongAdder lagcount=new LongAdder();
+
+	/**
+	 * Record that a throttled client thread woke up the given number of nanoseconds after it intended to.
+	 */
+	public static void schedulingLag(long lag)
+	{
+		Measurements.getMeasurements().measure("SCHEDULING-LAG",(int)(lag/1000));
+		lagtotal.add(lag);
+		lagcount.increment();
+	}
+
+	long _interval;
+	double _cputhreshold;
+	double _gcthreshold;
+	double _lagthreshold;
+
+	int _processors;
+	com.sun.management.OperatingSystemMXBean _os;
+	ThreadMXBean _threads;
+	boolean _allocation;
+
+	//what we saw at the previous sample
+	long _last;
+	long _lastcpu;
+	long _lastgccount;
+	long _lastgctime;
+	long _lastlagtotal;
+	long _lastlagcount;
+	HashMap<Long,Long> _lastallocated=new HashMap<Long,Long>();
+
+	//the summary of the whole run
+	long _start;
+	long _startcpu;
+	long _gccount;
+	long _gctime;
+	long _allocated;
+	double _maxcpu;
+	double _maxgc;
+	double _maxallocationrate;
+	double _maxlag;
+	int _intervals;
+	int _saturated;
+
+	public ClientMonitor(Properties props)
+	{
+		super("ClientMonitor");
+		setDaemon(true);
+
+		_interval=(long)(Double.parseDouble(props.getProperty(INTERVAL_PROPERTY,INTERVAL_PROPERTY_DEFAULT))*1000);
+		_cputhreshold=Double.parseDouble(props.getProperty(CPU_THRESHOLD_PROPERTY,CPU_THRESHOLD_PROPERTY_DEFAULT));
+		_gcthreshold=Double.parseDouble(props.getProperty(GC_THRESHOLD_PROPERTY,GC_THRESHOLD_PROPERTY_DEFAULT));
+		_lagthreshold=Double.parseDouble(props.getProperty(LAG_THRESHOLD_PROPERTY,LAG_THRESHOLD_PROPERTY_DEFAULT));
+
+		_processors=Runtime.getRuntime().availableProcessors();
+		if (ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean)
+		{
+			_os=(com.sun.management.OperatingSystemMXBean)ManagementFactory.getOperatingSystemMXBean();
+		}
+		_threads=ManagementFactory.getThreadMXBean();
+		if ( (_threads instanceof com.sun.management.ThreadMXBean) && (((com.sun.management.ThreadMXBean)_threads).isThreadAllocatedMemorySupported()) )
+		{
+			((com.sun.management.ThreadMXBean)_threads).setThreadAllocatedMemoryEnabled(true);
+			_allocation=true;
+		}
+
+		_start=System.nanoTime();
+		_last=_start;
+		_startcpu=cpuTime();
+		_lastcpu=_startcpu;
+		_lastgccount=gcCount();
+		_lastgctime=gcTime();
+		_lastlagtotal=lagtotal.sum();
+		_lastlagcount=lagcount.sum();
+		allocated();
+	}
+
+	public void run()
+	{
+		while (true)
+		{
+			try
+			{
+				sleep(_interval);
+			}
+			catch (InterruptedException e)
+			{
+				return;
+			}
+			sample();
+		}
+	}
+
+	/**
+	 * Stop monitoring, taking a last sample of the time since the previous one.
+	 */
+	public void shutdown()
+	{
+		interrupt();
+		try
+		{
+			join();
+		}
+		catch (InterruptedException e)
+		{
+		}
+		sample();
+	}
+
+	/**
+	 * The CPU time used by the process so far, in nanoseconds, or -1 if the JVM doesn't tell.
+	 */
+	long cpuTime()
+	{
+		return (_os!=null) ? _os.getProcessCpuTime() : -1;
+	}
+
+	static long gcCount()
+	{
+		long count=0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+		{
+			count+=Math.max(0,gc.getCollectionCount());
+		}
+		return count;
+	}
+
+	static long gcTime()
+	{
+		long time=0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+		{
+			time+=Math.max(0,gc.getCollectionTime());
+		}
+		return time;
+	}
+
+	/**
+	 * The bytes allocated by the live threads since the previous call.
+	 */
+	long allocated()
+	{
+		if (!_allocation)
+		{
+			return 0;
+		}
+
+		long[] ids=_threads.getAllThreadIds();
+		long[] bytes=((com.sun.management.ThreadMXBean)_threads).getThreadAllocatedBytes(ids);
+
+		long total=0;
+		HashMap<Long,Long> allocated=new HashMap<Long,Long>();
+		for (int i=0; i<ids.length; i++)
+		{
+			if (bytes[i]<0)
+			{
+				continue;
+			}
+			Long last=_lastallocated.get(ids[i]);
+			total+=bytes[i]-((last!=null)?last.longValue():0);
+			allocated.put(ids[i],bytes[i]);
+		}
+		_lastallocated=allocated;
+		return total;
+	}
+
+	/**
+	 * Take a sample of the time since the previous one, and warn if the client looks saturated.
+	 */
+	synchronized void sample()
+	{
+		long now=System.nanoTime();
+		long elapsed=now-_last;
+		if (elapsed<=0)
+		{
+			return;
+		}
+		_last=now;
+
+		long cpu=cpuTime();
+		double cpupercent=(cpu<0) ? 0 : 100.0*(cpu-_lastcpu)/((double)elapsed*_processors);
+		_lastcpu=cpu;
+
+		long gccount=gcCount();
+		long gctime=gcTime();
+		double gcpercent=100.0*(gctime-_lastgctime)/(elapsed/1000000.0);
+		_gccount+=gccount-_lastgccount;
+		_gctime+=gctime-_lastgctime;
+		_lastgccount=gccount;
+		_lastgctime=gctime;
+
+		long allocated=allocated();
+		double allocationrate=allocated/(1024.0*1024.0)/(elapsed/1000000000.0);
+		_allocated+=allocated;
+
+		long lags=lagcount.sum()-_lastlagcount;
+		double lag=(lags==0) ? 0 : (lagtotal.sum()-_lastlagtotal)/1000000.0/lags;
+		_lastlagtotal=lagtotal.sum();
+		_lastlagcount+=lags;
+
+		_maxcpu=Math.max(_maxcpu,cpupercent);
+		_maxgc=Math.max(_maxgc,gcpercent);
+		_maxallocationrate=Math.max(_maxallocationrate,allocationrate);
+		_maxlag=Math.max(_maxlag,lag);
+		_intervals++;
+
+		if ( (cpupercent>=_cputhreshold) || (gcpercent>=_gcthreshold) || (lag>=_lagthreshold) )
+		{
+			_saturated++;
+			System.err.println("WARNING: the client may be saturated: CPU "+Math.round(cpupercent)+"%, GC "+Math.round(gcpercent)+"% of the time, "
+					+"scheduling lag "+String.format("%.2f",lag)+" ms; latencies and throughput may reflect the client rather than the store");
+		}
+	}
+
+	/**
+	 * Write the summary of the run so far. The maximums are those of the busiest interval.
+	 */
+	public synchronized void export(MeasurementsExporter exporter) throws IOException
+	{
+		double seconds=(_last-_start)/1000000000.0;
+
+		if (_os!=null)
+		{
+			exporter.write("CLIENT","CPU(%)",(seconds<=0) ? 0 : 100.0*(_lastcpu-_startcpu)/(seconds*1000000000.0*_processors));
+			exporter.write("CLIENT","MaxCPU(%)",_maxcpu);
+		}
+		exporter.write("CLIENT","GCCount",_gccount);
+		exporter.write("CLIENT","GCTime(ms)",_gctime);
+		exporter.write("CLIENT","AverageGCPause(ms)",(_gccount==0) ? 0 : ((double)_gctime)/_gccount);
+		exporter.write("CLIENT","MaxGCTime(%)",_maxgc);
+		if (_allocation)
+		{
+			exporter.write("CLIENT","AllocationRate(MB/sec)",(seconds<=0) ? 0 : _allocated/(1024.0*1024.0)/seconds);
+			exporter.write("CLIENT","MaxAllocationRate(MB/sec)",_maxallocationrate);
+		}
+		exporter.write("CLIENT","MaxAverageSchedulingLag(ms)",_maxlag);
+		exporter.write("CLIENT","Intervals",_intervals);
+		exporter.write("CLIENT","SaturatedIntervals",_saturated);
+	}
+}
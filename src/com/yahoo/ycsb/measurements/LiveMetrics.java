@@ -0,0 +1,246 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Vector;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.yahoo.ycsb.measurements.exporter.JSONMeasurementsExporter;
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+import com.yahoo.ycsb.measurements.exporter.TextMeasurementsExporter;
+
+/**
+ * Serves live measurements over HTTP while the run is in progress. At every interval, the histograms of
+ * the current Measurements are compared to those at the previous interval, giving per-metric throughput,
+ * average latency, percentiles and error counts for the last window, next to the totals so far. Penalties
+ * are measurements too, so their window aggregates are included. Only histogram measurements are shown.
+ *
+ * GET /metrics returns the last window as JSON, in the format of JSONMeasurementsExporter; GET
+ * /metrics?format=text returns it in the format of TextMeasurementsExporter. Serving a request only reads
+ * the last published window, and computing a window does not block the client threads.
+ *
+ * The metrics are only served to the local machine, unless another address to listen on is set.
+ */
+public class LiveMetrics extends Thread
+{
+	/**
+	 * The port to serve live metrics on. If not set, live metrics are off.
+	 */
+	public static final String METRICS_PORT_PROPERTY="metrics.port";
+
+	/**
+	 * The address to serve live metrics on, such as 0.0.0.0 for all interfaces. If not set, only the loopback
+	 * address is served.
+	 */
+	public static final String METRICS_BIND_PROPERTY="metrics.bind";
+
+	/**
+	 * The statistics of one metric over one window.
+	 */
+	static class Window
+	{
+		String _name;
+		String _unit;
+		long _operations;
+		double _throughput;
+		double _average;
+		int _p50;
+		int _p95;
+		int _p99;
+		long _errors;
+		long _totaloperations;
+		long _totalerrors;
+	}
+
+	long _interval;
+	HttpServer _server;
+
+	long _start;
+
+	/**
+	 * The last complete window, replaced as a whole at every interval.
+	 */
+	volatile Vector<Window> _windows=new Vector<Window>();
+	volatile long _windowend;
+
+	//what we saw at the previous interval
+	Measurements _measurements;
+	HashMap<String,long[]> _counts=new HashMap<String,long[]>();
+	HashMap<String,long[]> _totals=new HashMap<String,long[]>();
+	long _last;
+
+	/**
+	 * @param bind the address to serve the metrics on, or null for the loopback address
+	 * @param port the port to serve the metrics on
+	 * @param interval the length of a window, in milliseconds
+	 */
+	public LiveMetrics(String bind, int port, long interval) throws IOException
+	{
+		super("LiveMetrics");
+		setDaemon(true);
+		_interval=interval;
+
+		InetAddress address=(bind==null) ? InetAddress.getLoopbackAddress() : InetAddress.getByName(bind);
+		_server=HttpServer.create(new InetSocketAddress(address,port),0);
+		_server.createContext("/metrics",new MetricsHandler());
+	}
+
+	public void run()
+	{
+		_start=System.currentTimeMillis();
+		_last=_start;
+		_server.start();
+
+		while (true)
+		{
+			try
+			{
+				sleep(_interval);
+			}
+			catch (InterruptedException e)
+			{
+				return;
+			}
+			update();
+		}
+	}
+
+	/**
+	 * Stop serving metrics.
+	 */
+	public void shutdown()
+	{
+		interrupt();
+		_server.stop(0);
+	}
+
+	/**
+	 * Compute and publish the window since the previous call.
+	 */
+	void update()
+	{
+		long now=System.currentTimeMillis();
+		double seconds=(now-_last)/1000.0;
+		_last=now;
+
+		//a new phase starts with new measurements; its first window starts from zero
+		Measurements measurements=Measurements.getMeasurements();
+		if (measurements!=_measurements)
+		{
+			_measurements=measurements;
+			_counts.clear();
+			_totals.clear();
+		}
+
+		Vector<Window> windows=new Vector<Window>();
+		for (Map.Entry<String,OneMeasurement> e : measurements.getMeasurementData().entrySet())
+		{
+			if (!(e.getValue() instanceof OneMeasurementHistogram))
+			{
+				continue;
+			}
+			OneMeasurementHistogram h=(OneMeasurementHistogram)e.getValue();
+
+			long[] counts=h.getCounts();
+			long[] totals=new long[] {h.operations.sum(),h.totallatency.sum(),h.getErrors()};
+			long[] lastcounts=_counts.get(e.getKey());
+			long[] lasttotals=_totals.get(e.getKey());
+			_counts.put(e.getKey(),counts);
+			_totals.put(e.getKey(),totals);
+
+			long[] delta=counts.clone();
+			if (lastcounts!=null)
+			{
+				for (int i=0; i<delta.length; i++)
+				{
+					delta[i]-=lastcounts[i];
+				}
+			}
+
+			Window w=new Window();
+			w._name=e.getKey();
+			w._unit=h._unit;
+			w._operations=totals[0]-((lasttotals!=null)?lasttotals[0]:0);
+			w._throughput=w._operations/seconds;
+			w._average=(w._operations==0) ? 0 : ((double)(totals[1]-((lasttotals!=null)?lasttotals[1]:0)))/w._operations;
+			w._p50=h.percentile(delta,50);
+			w._p95=h.percentile(delta,95);
+			w._p99=h.percentile(delta,99);
+			w._errors=totals[2]-((lasttotals!=null)?lasttotals[2]:0);
+			w._totaloperations=totals[0];
+			w._totalerrors=totals[2];
+			windows.add(w);
+		}
+
+		_windows=windows;
+		_windowend=now;
+	}
+
+	/**
+	 * Write the last window.
+	 */
+	public void export(MeasurementsExporter exporter) throws IOException
+	{
+		Vector<Window> windows=_windows;
+
+		exporter.write("LIVE","Time(ms)",_windowend-_start);
+		exporter.write("LIVE","Interval(ms)",_interval);
+		for (Window w : windows)
+		{
+			exporter.write(w._name,"Operations",w._operations);
+			exporter.write(w._name,"Throughput(ops/sec)",w._throughput);
+			exporter.write(w._name,"Average("+w._unit+")",w._average);
+			exporter.write(w._name,"50thPercentile("+w._unit+")",w._p50);
+			exporter.write(w._name,"95thPercentile("+w._unit+")",w._p95);
+			exporter.write(w._name,"99thPercentile("+w._unit+")",w._p99);
+			exporter.write(w._name,"Errors",w._errors);
+			exporter.write(w._name,"TotalOperations",w._totaloperations);
+			exporter.write(w._name,"TotalErrors",w._totalerrors);
+		}
+	}
+
+	class MetricsHandler implements HttpHandler
+	{
+		public void handle(HttpExchange exchange) throws IOException
+		{
+			String query=exchange.getRequestURI().getQuery();
+			boolean text=(query!=null) && (query.indexOf("format=text")>=0);
+
+			ByteArrayOutputStream buffer=new ByteArrayOutputStream();
+			MeasurementsExporter exporter=text ? new TextMeasurementsExporter(buffer) : new JSONMeasurementsExporter(buffer);
+			export(exporter);
+			exporter.close();
+
+			byte[] body=buffer.toByteArray();
+			exchange.getResponseHeaders().set("Content-Type",text?"text/plain":"application/json");
+			exchange.sendResponseHeaders(200,body.length);
+			OutputStream out=exchange.getResponseBody();
+			out.write(body);
+			out.close();
+		}
+	}
+}
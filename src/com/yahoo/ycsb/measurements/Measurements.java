@@ -19,7 +19,12 @@ package com.yahoo.ycsb.measurements;
 
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
+import java.util.TreeSet;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
 
@@ -35,7 +40,7 @@ public class Measurements
 
 	private static final String MEASUREMENT_TYPE_DEFAULT = "histogram";
 
-	static Measurements singleton=null;
+	static volatile Measurements singleton=null;
 	
 	static Properties measurementproperties=null;
 	
@@ -47,18 +52,150 @@ public class Measurements
       /**
        * Return the singleton Measurements object.
        */
-	public synchronized static Measurements getMeasurements()
+	public static Measurements getMeasurements()
 	{
-		if (singleton==null)
+		//called for every operation, so only lock if the singleton has to be created
+		Measurements m=singleton;
+		if (m==null)
 		{
-			singleton=new Measurements(measurementproperties);
+			synchronized(Measurements.class)
+			{
+				m=singleton;
+				if (m==null)
+				{
+					m=new Measurements(measurementproperties);
+					singleton=m;
+				}
+			}
 		}
-		return singleton;
+		return m;
+	}
+
+	/**
+	 * Discard the current measurements. The next call to getMeasurements() returns a new, empty
+	 * Measurements object, constructed with the properties most recently passed to setProperties().
+	 */
+	public synchronized static void resetMeasurements()
+	{
+		singleton=null;
+	}
+
+	/**
+	 * What a thread knows about the operation it is currently issuing.
+	 */
+	static class IssueState
+	{
+		/**
+		 * The time (System.nanoTime()) at which the operation was scheduled to start, according to the
+		 * open-loop schedule, or -1 if the thread is not running open-loop.
+		 */
+		long intendedstarttime=-1;
+
+		/**
+		 * The segment of the target throughput profile the operation was issued in, or null.
+		 */
+		String segment=null;
+
+		/**
+		 * The tenant class the operation was issued for, or null.
+		 */
+		String tenantclass=null;
+	}
+
+	static ThreadLocal<IssueState> issuestate=new ThreadLocal<IssueState>()
+	{
+		protected IssueState initialValue()
+		{
+			return new IssueState();
+		}
+	};
+
+	/**
+	 * Set the intended start time of the operations the calling thread is about to issue.
+	 * Use -1 to indicate that there is no schedule (closed-loop operation).
+	 */
+	public void setIntendedStartTime(long time)
+	{
+		issuestate.get().intendedstarttime=time;
 	}
 
-	HashMap<String,OneMeasurement> data;
+	/**
+	 * Return the intended start time set by the calling thread, or -1 if none was set.
+	 */
+	public long getIntendedStartTime()
+	{
+		return issuestate.get().intendedstarttime;
+	}
+
+	/**
+	 * Set the segment of the target throughput profile that the operations the calling thread is about to
+	 * issue belong to, so their latencies can be reported per segment as well. Use null for none.
+	 */
+	public void setSegment(String segment)
+	{
+		issuestate.get().segment=segment;
+	}
+
+	/**
+	 * Return the segment set by the calling thread, or null if none was set.
+	 */
+	public String getSegment()
+	{
+		return issuestate.get().segment;
+	}
+
+	/**
+	 * The counter of the operations done for a tenant class is this followed by the name of the class.
+	 */
+	public static final String CLASS_OPERATIONS="OPERATIONS@";
+
+	/**
+	 * Whether any thread has ever set a tenant class, so that threads need not look theirs up until then.
+	 */
+	static volatile boolean tenantclasses=false;
+
+	/**
+	 * Set the tenant class that the operations the calling thread is about to issue are done for. From then
+	 * on, every value it reports, such as a latency or a penalty, is also reported under the name of the
+	 * metric followed by "@" and the name of the class. Use null for none.
+	 */
+	public void setTenantClass(String tenantclass)
+	{
+		if (tenantclass!=null)
+		{
+			tenantclasses=true;
+		}
+		issuestate.get().tenantclass=tenantclass;
+	}
+
+	/**
+	 * Return the tenant class set by the calling thread, or null if none was set.
+	 */
+	public String getTenantClass()
+	{
+		return tenantclasses ? issuestate.get().tenantclass : null;
+	}
+
+	ConcurrentHashMap<String,OneMeasurement> data;
+
+	/**
+	 * Totals that are not latencies, such as the number of bytes inserted.
+	 */
+	ConcurrentHashMap<String,LongAdder> counters=new ConcurrentHashMap<String,LongAdder>();
 	boolean histogram=true;
 
+	/**
+	 * Events that happened during the run, such as configuration changes, with the time they happened at.
+	 */
+	Vector<String> events;
+	Vector<Long> eventtimes;
+	long starttime;
+
+	/**
+	 * The monitor of the client itself during these measurements, if any.
+	 */
+	volatile ClientMonitor clientmonitor;
+
 	private Properties _props;
 	
       /**
@@ -66,7 +203,10 @@ public class Measurements
        */
 	public Measurements(Properties props)
 	{
-		data=new HashMap<String,OneMeasurement>();
+		data=new ConcurrentHashMap<String,OneMeasurement>();
+		events=new Vector<String>();
+		eventtimes=new Vector<Long>();
+		starttime=System.currentTimeMillis();
 		
 		_props=props;
 		
@@ -80,9 +220,16 @@ public class Measurements
 		}
 	}
 	
-	OneMeasurement constructOneMeasurement(String name)
+	/**
+	 * @param unit the unit of a metric that is not a latency, or null for a latency
+	 */
+	OneMeasurement constructOneMeasurement(String name, String unit)
 	{
-		if (histogram)
+		if ( (histogram) && (unit!=null) )
+		{
+			return new OneMeasurementHistogram(name,_props,unit);
+		}
+		else if (histogram)
 		{
 			return new OneMeasurementHistogram(name,_props);
 		}
@@ -94,23 +241,20 @@ public class Measurements
 
       /**
        * Report a single value of a single metric. E.g. for read latency, operation="READ" and latency is the measured value.
+       * Latencies are reported in microseconds.
        */
-	public synchronized void measure(String operation, int latency)
+	public void measure(String operation, int latency)
 	{
-		if (!data.containsKey(operation))
+		try
 		{
-			synchronized(this)
+			getOneMeasurement(operation).measure(latency);
+
+			String tenantclass=getTenantClass();
+			if (tenantclass!=null)
 			{
-				if (!data.containsKey(operation))
-				{
-					data.put(operation,constructOneMeasurement(operation));
-				}
+				getOneMeasurement(operation+"@"+tenantclass).measure(latency);
 			}
 		}
-		try
-		{
-			data.get(operation).measure(latency);
-		}
 		catch (java.lang.ArrayIndexOutOfBoundsException e)
 		{
 			System.out.println("ERROR: java.lang.ArrayIndexOutOfBoundsException - ignoring and continuing");
@@ -119,24 +263,128 @@ public class Measurements
 		}
 	}
 
+      /**
+       * Report a single value of a metric that is not a latency, such as a number of versions, in the given unit.
+       * With histograms, the metric gets one bucket per unit; time series average it as they do latencies.
+       */
+	public void measure(String metric, int value, String unit)
+	{
+		getOneMeasurement(metric,unit).measure(value);
+
+		String tenantclass=getTenantClass();
+		if (tenantclass!=null)
+		{
+			getOneMeasurement(metric+"@"+tenantclass,unit).measure(value);
+		}
+	}
+
       /**
        * Report a return code for a single DB operaiton.
        */
 	public void reportReturnCode(String operation, int code)
 	{
-		if (!data.containsKey(operation))
+		getOneMeasurement(operation).reportReturnCode(code);
+
+		String tenantclass=getTenantClass();
+		if (tenantclass!=null)
+		{
+			getOneMeasurement(operation+"@"+tenantclass).reportReturnCode(code);
+		}
+	}
+
+	/**
+	 * Return the measurement of the given metric, creating it if this is its first use.
+	 * Does not lock unless the measurement has to be created.
+	 */
+	OneMeasurement getOneMeasurement(String operation)
+	{
+		return getOneMeasurement(operation,null);
+	}
+
+	/**
+	 * Return the measurement of the given metric, creating it in the given unit (null for a latency) if this
+	 * is its first use.
+	 */
+	OneMeasurement getOneMeasurement(String operation, String unit)
+	{
+		OneMeasurement m=data.get(operation);
+		if (m==null)
 		{
 			synchronized(this)
 			{
-				if (!data.containsKey(operation))
+				m=data.get(operation);
+				if (m==null)
 				{
-					data.put(operation,constructOneMeasurement(operation));
+					m=constructOneMeasurement(operation,unit);
+					data.put(operation,m);
 				}
 			}
 		}
-		data.get(operation).reportReturnCode(code);
+		return m;
 	}
 	
+  /**
+   * Add amount to the named counter.
+   */
+  public void count(String counter, long amount)
+  {
+    LongAdder c=counters.get(counter);
+    if (c==null)
+    {
+      LongAdder created=new LongAdder();
+      c=counters.putIfAbsent(counter,created);
+      if (c==null)
+      {
+        c=created;
+      }
+    }
+    c.add(amount);
+  }
+
+  /**
+   * Return the total of the named counter, or 0 if nothing was counted.
+   */
+  public long getCount(String counter)
+  {
+    LongAdder c=counters.get(counter);
+    return (c!=null) ? c.sum() : 0;
+  }
+
+  /**
+   * Return the tenant classes that operations were counted for, in order of their names.
+   */
+  public Vector<String> getTenantClasses()
+  {
+    TreeSet<String> classes=new TreeSet<String>();
+    for (String counter : counters.keySet())
+    {
+      if (counter.startsWith(CLASS_OPERATIONS))
+      {
+        classes.add(counter.substring(CLASS_OPERATIONS.length()));
+      }
+    }
+    return new Vector<String>(classes);
+  }
+
+  /**
+   * Record that something happened at this point of the run, such as a change to the target throughput,
+   * so that it can be lined up with the measurements. Events are exported as "[EVENT], event, time",
+   * with the time in milliseconds since these measurements were started.
+   */
+  public synchronized void stamp(String event)
+  {
+    eventtimes.add(System.currentTimeMillis()-starttime);
+    events.add(event);
+  }
+
+  /**
+   * Include the summary of the given client monitor when these measurements are exported.
+   */
+  public void setClientMonitor(ClientMonitor monitor)
+  {
+    clientmonitor=monitor;
+  }
+
   /**
    * Export the current measurements to a suitable format.
    * 
@@ -149,8 +397,100 @@ public class Measurements
     {
       measurement.exportMeasurements(exporter);
     }
+
+    for (int i=0; i<events.size(); i++)
+    {
+      exporter.write("EVENT", events.get(i), eventtimes.get(i).longValue());
+    }
+
+    if (clientmonitor!=null)
+    {
+      clientmonitor.export(exporter);
+    }
   }
 	
+  /**
+   * Return a copy of the individual measurements, e.g. to send them to a coordinator for merging.
+   */
+  public synchronized HashMap<String,OneMeasurement> getMeasurementData()
+  {
+    return new HashMap<String,OneMeasurement>(data);
+  }
+
+  /**
+   * Return a copy of the counters, e.g. to send them to a coordinator for merging.
+   */
+  public HashMap<String,Long> getCounters()
+  {
+    HashMap<String,Long> ret=new HashMap<String,Long>();
+    for (Map.Entry<String,LongAdder> e : counters.entrySet())
+    {
+      ret.put(e.getKey(),e.getValue().sum());
+    }
+    return ret;
+  }
+
+  /**
+   * Add the counters of another client (as returned by its getCounters()) to these.
+   */
+  public void mergeCounters(HashMap<String,Long> other)
+  {
+    for (Map.Entry<String,Long> e : other.entrySet())
+    {
+      count(e.getKey(),e.getValue().longValue());
+    }
+  }
+
+  /**
+   * Return a copy of the events, e.g. to send them to a coordinator for merging.
+   */
+  public synchronized Vector<String> getEvents()
+  {
+    return new Vector<String>(events);
+  }
+
+  /**
+   * Return a copy of the times of the events, in milliseconds since these measurements were started.
+   */
+  public synchronized Vector<Long> getEventTimes()
+  {
+    return new Vector<Long>(eventtimes);
+  }
+
+  /**
+   * Add the events of another client (as returned by its getEvents() and getEventTimes()) to these, each
+   * preceded by the given label. Their times stay those since the other client's measurements were started.
+   */
+  public synchronized void mergeEvents(String label, Vector<String> otherevents, Vector<Long> othertimes)
+  {
+    for (int i=0; i<otherevents.size(); i++)
+    {
+      events.add(label+otherevents.get(i));
+      eventtimes.add(othertimes.get(i));
+    }
+  }
+
+  /**
+   * Merge measurements taken by another client (as returned by its getMeasurementData()) into these.
+   * The merged objects are taken over, so they should not be used by the caller afterwards.
+   *
+   * @throws IllegalArgumentException if the measurements are of a kind that cannot be merged
+   */
+  public synchronized void merge(HashMap<String,OneMeasurement> other)
+  {
+    for (String operation : other.keySet())
+    {
+      if (!data.containsKey(operation))
+      {
+        data.put(operation,other.get(operation));
+      }
+      else
+      {
+        data.get(operation).merge(other.get(operation));
+      }
+    }
+  }
+
       /**
        * Return a one line summary of the measurements.
        */
@@ -18,13 +18,16 @@
 package com.yahoo.ycsb.measurements;
 
 import java.io.IOException;
+import java.io.Serializable;
 
 import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
 
 /**
  * A single measured metric (such as READ LATENCY)
  */
-public abstract class OneMeasurement {
+public abstract class OneMeasurement implements Serializable {
+
+	private static final long serialVersionUID = 1L;
 
 	String _name;
 	
@@ -41,10 +44,24 @@ public abstract class OneMeasurement {
 
 	public abstract void reportReturnCode(int code);
 
+	/**
+	 * Record one value; for latencies, the value is in microseconds.
+	 */
 	public abstract void measure(int latency);
 
 	public abstract String getSummary();
 
+	/**
+	 * Add the measurements of another client for the same metric to this one, as if they had all been
+	 * taken here. Only measurements that keep their full distribution can be merged.
+	 *
+	 * @throws IllegalArgumentException if other is not compatible with this measurement
+	 */
+	public void merge(OneMeasurement other)
+	{
+		throw new IllegalArgumentException(getClass().getName()+" measurements cannot be merged");
+	}
+
   /**
    * Export the current measurements to a suitable format.
    * 
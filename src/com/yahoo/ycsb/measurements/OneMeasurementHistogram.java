@@ -19,133 +19,344 @@ package com.yahoo.ycsb.measurements;
 
 import java.io.IOException;
 import java.text.DecimalFormat;
-import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
 
 import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
 
 
 /**
  * Take measurements and maintain a histogram of a given metric, such as READ LATENCY.
+ * Measuring does not take a lock, so client threads don't contend with each other or with
+ * threads reading the measurements while the run is in progress.
+ * <p>
+ * The buckets are log-linear: one bucket width apart up to 2*subbuckets widths, then subbuckets buckets
+ * for every doubling of the value. This keeps the percentiles within 1/subbuckets of the exact ones while
+ * a histogram covering a second at 10 us takes a couple of thousand buckets rather than a hundred thousand.
  * 
  * @author cooperb
  *
  */
 public class OneMeasurementHistogram extends OneMeasurement
 {
+	/**
+	 * The range covered by the histogram, in milliseconds. Latencies beyond this are only counted as overflow.
+	 */
 	public static final String BUCKETS="histogram.buckets";
 	public static final String BUCKETS_DEFAULT="1000";
 
+	/**
+	 * The width of one histogram bucket, in microseconds. This is the resolution of the reported percentiles.
+	 */
+	public static final String BUCKET_WIDTH="histogram.bucketwidth";
+	public static final String BUCKET_WIDTH_DEFAULT="10";
+
+	/**
+	 * The number of buckets for every doubling of the value, rounded up to a power of 2. The reported
+	 * percentiles are within 1/subbuckets of the exact ones.
+	 */
+	public static final String SUB_BUCKETS="histogram.subbuckets";
+	public static final String SUB_BUCKETS_DEFAULT="256";
+
+	private static final long serialVersionUID = 1L;
+
 	int _buckets;
-	int[] histogram;
-	int histogramoverflow;
-	int operations;
-	long totallatency;
+	int _bucketwidth;
+
+	//log2 of the number of buckets per doubling of the value
+	int _subbucketbits;
+
+	/**
+	 * The unit of the measured values: "us" for latencies.
+	 */
+	String _unit="us";
+	AtomicLongArray histogram;
+	LongAdder histogramoverflow;
+	LongAdder operations;
+	LongAdder totallatency;
 	
-	//keep a windowed version of these stats for printing status
-	int windowoperations;
-	long windowtotallatency;
+	//the totals at the last status summary, to report the stats of the window since then
+	long summaryoperations;
+	long summarytotallatency;
 	
-	int min;
-	int max;
-	HashMap<Integer,int[]> returncodes;
+	AtomicInteger min;
+	AtomicInteger max;
+	ConcurrentHashMap<Integer,LongAdder> returncodes;
 
 	public OneMeasurementHistogram(String name, Properties props)
+	{
+		this(name,props,Integer.parseInt(props.getProperty(BUCKET_WIDTH, BUCKET_WIDTH_DEFAULT)),"us");
+	}
+
+	/**
+	 * A histogram of a metric that is not a latency, such as a number of versions: buckets one unit wide
+	 * covering as many units as a latency histogram covers microseconds, and the values exported in the
+	 * given unit.
+	 */
+	public OneMeasurementHistogram(String name, Properties props, String unit)
+	{
+		this(name,props,1,unit);
+	}
+
+	OneMeasurementHistogram(String name, Properties props, int bucketwidth, String unit)
 	{
 		super(name);
-		_buckets=Integer.parseInt(props.getProperty(BUCKETS, BUCKETS_DEFAULT));
-		histogram=new int[_buckets];
-		histogramoverflow=0;
-		operations=0;
-		totallatency=0;
-		windowoperations=0;
-		windowtotallatency=0;
-		min=-1;
-		max=-1;
-		returncodes=new HashMap<Integer,int[]>();
+		_bucketwidth=bucketwidth;
+		_unit=unit;
+		int subbuckets=Integer.parseInt(props.getProperty(SUB_BUCKETS, SUB_BUCKETS_DEFAULT));
+		_subbucketbits=32-Integer.numberOfLeadingZeros(Math.max(1,subbuckets)-1);
+		long range=Long.parseLong(props.getProperty(BUCKETS, BUCKETS_DEFAULT))*1000/bucketwidth;
+		_buckets=bucket(Math.max(1,Math.min(range,Integer.MAX_VALUE))-1)+1;
+		histogram=new AtomicLongArray(_buckets);
+		histogramoverflow=new LongAdder();
+		operations=new LongAdder();
+		totallatency=new LongAdder();
+		summaryoperations=0;
+		summarytotallatency=0;
+		min=new AtomicInteger(-1);
+		max=new AtomicInteger(-1);
+		returncodes=new ConcurrentHashMap<Integer,LongAdder>();
+	}
+
+	/**
+	 * The bucket of a value, in bucket widths: the value itself below 2*subbuckets, beyond that one of
+	 * the subbuckets buckets of the doubling the value falls in.
+	 */
+	int bucket(long units)
+	{
+		int shift=(63-Long.numberOfLeadingZeros(units))-_subbucketbits;
+		if (shift<=0)
+		{
+			return (int)units;
+		}
+		return (int)((((long)shift)<<_subbucketbits)+(units>>>shift));
+	}
+
+	/**
+	 * The smallest value that falls in the given bucket (below the number of buckets), e.g. in microseconds.
+	 */
+	int bucketValue(int bucket)
+	{
+		int shift=(bucket>>>_subbucketbits)-1;
+		if (shift<=0)
+		{
+			return bucket*_bucketwidth;
+		}
+		return (int)(((long)(bucket-(shift<<_subbucketbits)))<<shift)*_bucketwidth;
 	}
 
 	/* (non-Javadoc)
 	 * @see com.yahoo.ycsb.OneMeasurement#reportReturnCode(int)
 	 */
-	public synchronized void reportReturnCode(int code)
+	public void reportReturnCode(int code)
 	{
 		Integer Icode=code;
-		if (!returncodes.containsKey(Icode))
+		LongAdder count=returncodes.get(Icode);
+		if (count==null)
 		{
-			int[] val=new int[1];
-			val[0]=0;
-			returncodes.put(Icode,val);
+			returncodes.putIfAbsent(Icode,new LongAdder());
+			count=returncodes.get(Icode);
 		}
-		returncodes.get(Icode)[0]++;
+		count.increment();
 	}
 
 
 	/* (non-Javadoc)
 	 * @see com.yahoo.ycsb.OneMeasurement#measure(int)
 	 */
-	public synchronized void measure(int latency)
+	public void measure(int latency)
 	{
-		if (latency>=_buckets)
+		int bucket=(latency<0) ? 0 : bucket(latency/_bucketwidth);
+		if (bucket>=_buckets)
 		{
-			histogramoverflow++;
+			histogramoverflow.increment();
 		}
 		else
 		{
-			histogram[latency]++;
+			histogram.incrementAndGet(bucket);
 		}
-		operations++;
-		totallatency+=latency;
-		windowoperations++;
-		windowtotallatency+=latency;
+		totallatency.add(latency);
+		operations.increment();
 
-		if ( (min<0) || (latency<min) )
+		int m;
+		while ( (((m=min.get())<0) || (latency<m)) && (!min.compareAndSet(m,latency)) )
 		{
-			min=latency;
 		}
-
-		if ( (max<0) || (latency>max) )
+		while ( (((m=max.get())<0) || (latency>m)) && (!max.compareAndSet(m,latency)) )
 		{
-			max=latency;
 		}
 	}
 
 
+  /**
+   * Add the full histogram of another client to this one. Both must have the same bucket layout.
+   */
+  @Override
+  public synchronized void merge(OneMeasurement other)
+  {
+    if (!(other instanceof OneMeasurementHistogram))
+    {
+      throw new IllegalArgumentException("Cannot merge "+other.getClass().getName()+" into a histogram");
+    }
+    OneMeasurementHistogram h=(OneMeasurementHistogram)other;
+    if ( (h._buckets!=_buckets) || (h._bucketwidth!=_bucketwidth) || (h._subbucketbits!=_subbucketbits) || (!h._unit.equals(_unit)) )
+    {
+      throw new IllegalArgumentException("Cannot merge histograms of "+getName()+" with different bucket layouts");
+    }
+
+    for (int i=0; i<_buckets; i++)
+    {
+      histogram.addAndGet(i,h.histogram.get(i));
+    }
+    histogramoverflow.add(h.histogramoverflow.sum());
+    operations.add(h.operations.sum());
+    totallatency.add(h.totallatency.sum());
+
+    if ( (min.get()<0) || ( (h.min.get()>=0) && (h.min.get()<min.get()) ) )
+    {
+      min.set(h.min.get());
+    }
+    if (h.max.get()>max.get())
+    {
+      max.set(h.max.get());
+    }
+
+    for (Map.Entry<Integer,LongAdder> e : h.returncodes.entrySet())
+    {
+      returncodes.putIfAbsent(e.getKey(),new LongAdder());
+      returncodes.get(e.getKey()).add(e.getValue().sum());
+    }
+  }
+
+  /**
+   * The number of operations measured.
+   */
+  public long getOperations()
+  {
+    return operations.sum();
+  }
+
+  /**
+   * The number of operations that returned a non-zero (error) return code.
+   */
+  public long getErrors()
+  {
+    long errors=0;
+    for (Map.Entry<Integer,LongAdder> e : returncodes.entrySet())
+    {
+      if (e.getKey().intValue()!=0)
+      {
+        errors+=e.getValue().sum();
+      }
+    }
+    return errors;
+  }
+
+  /**
+   * The given percentile (e.g. 99) of the measured latencies, in microseconds, at the resolution of the
+   * buckets. If it falls beyond the range of the histogram, the maximum latency is returned. Returns -1
+   * if nothing was measured.
+   */
+  public int getPercentile(double percentile)
+  {
+    return percentile(getCounts(),percentile);
+  }
+
+  /**
+   * The given percentile of bucket counts (as returned by getCounts(), or the difference of two such), at
+   * the resolution of the buckets; the maximum so far if it falls in the overflow, or -1 if counts are all 0.
+   */
+  int percentile(long[] counts, double percentile)
+  {
+    int i=percentileBucket(counts,percentile);
+    if (i<0)
+    {
+      return -1;
+    }
+    return (i<_buckets) ? bucketValue(i) : max.get();
+  }
+
+  /**
+   * A copy of the bucket counts, followed by the overflow count. The copy is not atomic: operations
+   * measured while it is taken may or may not be included.
+   */
+  long[] getCounts()
+  {
+    long[] counts=new long[_buckets+1];
+    for (int i=0; i<_buckets; i++)
+    {
+      counts[i]=histogram.get(i);
+    }
+    counts[_buckets]=histogramoverflow.sum();
+    return counts;
+  }
+
+  /**
+   * The index of the bucket of counts (as returned by getCounts()) that the given percentile falls in,
+   * which is counts.length-1 for the overflow, or -1 if counts are all 0.
+   */
+  static int percentileBucket(long[] counts, double percentile)
+  {
+    long total=0;
+    for (long c : counts)
+    {
+      total+=c;
+    }
+    if (total==0)
+    {
+      return -1;
+    }
+    long opcounter=0;
+    for (int i=0; i<counts.length; i++)
+    {
+      opcounter+=counts[i];
+      if (((double)opcounter)/((double)total)>=percentile/100.0)
+      {
+        return i;
+      }
+    }
+    return counts.length-1;
+  }
+
   @Override
   public void exportMeasurements(MeasurementsExporter exporter) throws IOException
   {
-    exporter.write(getName(), "Operations", operations);
+    long ops=operations.sum();
+    exporter.write(getName(), "Operations", ops);
 //    exporter.write(getName(), "AverageLatency(ms)", (((double)totallatency)/((double)operations)));
 //    exporter.write(getName(), "MinLatency(ms)", min);
 //    exporter.write(getName(), "MaxLatency(ms)", max);
     
-    exporter.write(getName(), "Average(ms)", (((double)totallatency)/((double)operations)));
-    exporter.write(getName(), "Min(ms)", min);
-    exporter.write(getName(), "Max(ms)", max);
+    exporter.write(getName(), "Average("+_unit+")", (((double)totallatency.sum())/((double)ops)));
+    exporter.write(getName(), "Min("+_unit+")", min.get());
+    exporter.write(getName(), "Max("+_unit+")", max.get());
     
-    int opcounter=0;
+    long opcounter=0;
     boolean done95th=false;
     for (int i=0; i<_buckets; i++)
     {
-      opcounter+=histogram[i];
-      if ( (!done95th) && (((double)opcounter)/((double)operations)>=0.95) )
+      opcounter+=histogram.get(i);
+      if ( (!done95th) && (((double)opcounter)/((double)ops)>=0.95) )
       {
 //        exporter.write(getName(), "95thPercentileLatency(ms)", i);
-        exporter.write(getName(), "95thPercentile(ms)", i);
+        exporter.write(getName(), "95thPercentile("+_unit+")", bucketValue(i));
         done95th=true;
       }
-      if (((double)opcounter)/((double)operations)>=0.99)
+      if (((double)opcounter)/((double)ops)>=0.99)
       {
 //        exporter.write(getName(), "99thPercentileLatency(ms)", i);
-        exporter.write(getName(), "99thPercentile(ms)", i);
+        exporter.write(getName(), "99thPercentile("+_unit+")", bucketValue(i));
         break;
       }
     }
 
-    for (Integer I : returncodes.keySet())
+    for (Map.Entry<Integer,LongAdder> e : returncodes.entrySet())
     {
-      int[] val=returncodes.get(I);
-      exporter.write(getName(), "Return="+I, val[0]);
+      exporter.write(getName(), "Return="+e.getKey(), e.getValue().sum());
     }     
 
     /*for (int i=0; i<_buckets; i++)
@@ -155,17 +366,25 @@ public class OneMeasurementHistogram extends OneMeasurement
     exporter.write(getName(), ">"+_buckets, histogramoverflow);*/
   }
 
+	/**
+	 * Return the average latency since the previous summary. Synchronized so that concurrent callers
+	 * each see a consistent window; measuring is not blocked.
+	 */
 	@Override
-	public String getSummary() {
+	public synchronized String getSummary() {
+		long ops=operations.sum();
+		long latency=totallatency.sum();
+		long windowoperations=ops-summaryoperations;
+		long windowtotallatency=latency-summarytotallatency;
 		if (windowoperations==0)
 		{
 			return "";
 		}
 		DecimalFormat d = new DecimalFormat("#.##");
 		double report=((double)windowtotallatency)/((double)windowoperations);
-		windowtotallatency=0;
-		windowoperations=0;
-		return "["+getName()+" AverageLatency(ms)="+d.format(report)+"]";
+		summaryoperations=ops;
+		summarytotallatency=latency;
+		return "["+getName()+" Average"+(_unit.equals("us")?"Latency":"")+"("+_unit+")="+d.format(report)+"]";
 	}
 
 }
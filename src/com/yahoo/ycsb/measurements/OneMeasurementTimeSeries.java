@@ -25,8 +25,10 @@ import java.util.Vector;
 
 import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
 
-class SeriesUnit
+class SeriesUnit implements java.io.Serializable
 {
+	private static final long serialVersionUID = 1L;
+
 	/**
 	 * @param time
 	 * @param average
@@ -50,6 +52,8 @@ public class OneMeasurementTimeSeries extends OneMeasurement
 	public static final String GRANULARITY="timeseries.granularity";
 	
 	public static final String GRANULARITY_DEFAULT="1000";
+
+	private static final long serialVersionUID = 1L;
 	
 	int _granularity;
 	Vector<SeriesUnit> _measurements;
@@ -57,7 +61,7 @@ public class OneMeasurementTimeSeries extends OneMeasurement
 	long start=-1;
 	long currentunit=-1;
 	int count=0;
-	int sum=0;
+	long sum=0;
 	int operations=0;
 	long totallatency=0;
 	
@@ -103,7 +107,7 @@ public class OneMeasurementTimeSeries extends OneMeasurement
 	}
 	
 	@Override
-	public void measure(int latency) 
+	public synchronized void measure(int latency) 
 	{
 		checkEndOfUnit(false);
 		
@@ -127,14 +131,14 @@ public class OneMeasurementTimeSeries extends OneMeasurement
 
 
   @Override
-  public void exportMeasurements(MeasurementsExporter exporter) throws IOException
+  public synchronized void exportMeasurements(MeasurementsExporter exporter) throws IOException
   {
     checkEndOfUnit(true);
 
     exporter.write(getName(), "Operations", operations);
-    exporter.write(getName(), "AverageLatency(ms)", (((double)totallatency)/((double)operations)));
-    exporter.write(getName(), "MinLatency(ms)", min);
-    exporter.write(getName(), "MaxLatency(ms)", max);
+    exporter.write(getName(), "AverageLatency(us)", (((double)totallatency)/((double)operations)));
+    exporter.write(getName(), "MinLatency(us)", min);
+    exporter.write(getName(), "MaxLatency(us)", max);
 
     //TODO: 95th and 99th percentile latency
 
@@ -151,7 +155,7 @@ public class OneMeasurementTimeSeries extends OneMeasurement
   }
 	
 	@Override
-	public void reportReturnCode(int code) {
+	public synchronized void reportReturnCode(int code) {
 		Integer Icode=code;
 		if (!returncodes.containsKey(Icode))
 		{
@@ -164,7 +168,7 @@ public class OneMeasurementTimeSeries extends OneMeasurement
 	}
 
 	@Override
-	public String getSummary() {
+	public synchronized String getSummary() {
 		if (windowoperations==0)
 		{
 			return "";
@@ -173,7 +177,7 @@ public class OneMeasurementTimeSeries extends OneMeasurement
 		double report=((double)windowtotallatency)/((double)windowoperations);
 		windowtotallatency=0;
 		windowoperations=0;
-		return "["+getName()+" AverageLatency(ms)="+d.format(report)+"]";
+		return "["+getName()+" AverageLatency(us)="+d.format(report)+"]";
 	}
 
 }
@@ -0,0 +1,174 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import java.io.IOException;
+import java.util.Vector;
+
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
+/**
+ * Accumulates, per client thread, the time spent in each stage of the client's own work on an operation,
+ * so that the overhead of the client can be broken down. Timing is off unless enabled, in which case
+ * start() and stop() cost a call to System.nanoTime() each; when off they only test a flag.
+ *
+ * Stages may be nested in OPERATION, which covers a whole call to the workload.
+ */
+public class StageTimer
+{
+	public static final int KEY_CHOICE=0;
+	public static final int VALUE_GENERATION=1;
+	public static final int TRACE_LOGGING=2;
+	public static final int MEASUREMENT=3;
+	public static final int PENALTY=4;
+	public static final int OPERATION=5;
+
+	public static final String[] STAGE_NAMES={"KeyChoice","ValueGeneration","TraceLogging","Measurement","PenaltyAndRecordLog","Operation"};
+
+	/**
+	 * The time spent, and the number of times, in each stage by one thread.
+	 */
+	public static class Times
+	{
+		public String _thread;
+		public long[] _time=new long[STAGE_NAMES.length];
+		public long[] _calls=new long[STAGE_NAMES.length];
+	}
+
+	static volatile boolean enabled=false;
+
+	static Vector<Times> alltimes=new Vector<Times>();
+
+	static class ThreadTimes extends ThreadLocal<Times>
+	{
+		protected Times initialValue()
+		{
+			Times t=new Times();
+			t._thread=Thread.currentThread().getName();
+			alltimes.add(t);
+			return t;
+		}
+	}
+
+	static volatile ThreadTimes times=new ThreadTimes();
+
+	/**
+	 * Start timing stages, discarding any times accumulated so far.
+	 */
+	public static void enable()
+	{
+		alltimes.clear();
+		times=new ThreadTimes();
+		enabled=true;
+	}
+
+	public static void disable()
+	{
+		enabled=false;
+	}
+
+	public static boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	/**
+	 * Return the times of every thread that timed a stage since timing was enabled. Only consistent once
+	 * those threads are done.
+	 */
+	public static Vector<Times> getTimes()
+	{
+		return new Vector<Times>(alltimes);
+	}
+
+	/**
+	 * Start timing a stage; pass the result to stop().
+	 */
+	public static long start()
+	{
+		return enabled ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Stop timing the given stage, started at the time returned by start().
+	 */
+	public static void stop(int stage, long start)
+	{
+		if ( (enabled) && (start!=0) )
+		{
+			Times t=times.get();
+			t._time[stage]+=System.nanoTime()-start;
+			t._calls[stage]++;
+		}
+	}
+
+	/**
+	 * Write the throughput of each thread that did operations, and the nanoseconds per operation spent in
+	 * each stage over all threads. "Other" is the time in operations not spent in any other stage, such as
+	 * choosing the operation and calling the DB. The throughput a single core could reach is estimated as
+	 * one second divided by the time per operation.
+	 *
+	 * @param runtime the length of the run, in milliseconds
+	 */
+	public static void export(MeasurementsExporter exporter, long runtime) throws IOException
+	{
+		long operations=0;
+		int threads=0;
+		long[] total=new long[STAGE_NAMES.length];
+		long[] calls=new long[STAGE_NAMES.length];
+
+		Vector<Times> all=getTimes();
+		for (int i=0; i<all.size(); i++)
+		{
+			Times t=all.get(i);
+			for (int s=0; s<STAGE_NAMES.length; s++)
+			{
+				total[s]+=t._time[s];
+				calls[s]+=t._calls[s];
+			}
+
+			if (t._calls[OPERATION]>0)
+			{
+				String name="OVERHEAD "+((t._thread.length()>0)?t._thread:("#"+i));
+				exporter.write(name,"Operations",t._calls[OPERATION]);
+				exporter.write(name,"Throughput(ops/sec)",(runtime<=0) ? 0 : 1000.0*t._calls[OPERATION]/runtime);
+				operations+=t._calls[OPERATION];
+				threads++;
+			}
+		}
+
+		if (operations==0)
+		{
+			return;
+		}
+
+		exporter.write("OVERHEAD","Operations",operations);
+		exporter.write("OVERHEAD","Throughput(ops/sec/thread)",(runtime<=0) ? 0 : 1000.0*operations/runtime/threads);
+		exporter.write("OVERHEAD","MaxThroughputPerCore(ops/sec)",(total[OPERATION]==0) ? 0 : 1000000000.0*operations/total[OPERATION]);
+
+		long other=total[OPERATION];
+		for (int s=0; s<OPERATION; s++)
+		{
+			exporter.write("OVERHEAD",STAGE_NAMES[s]+"(ns/op)",((double)total[s])/operations);
+			exporter.write("OVERHEAD",STAGE_NAMES[s]+"(calls/op)",((double)calls[s])/operations);
+			other-=total[s];
+		}
+		exporter.write("OVERHEAD","Other(ns/op)",((double)Math.max(0,other))/operations);
+		exporter.write("OVERHEAD","Operation(ns/op)",((double)total[OPERATION])/operations);
+	}
+}
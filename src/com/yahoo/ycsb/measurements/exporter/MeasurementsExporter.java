@@ -36,6 +36,20 @@ public interface MeasurementsExporter extends Closeable
    */
   public void write(String metric, String measurement, int i) throws IOException;
 
+  /**
+   * Write a measurement to the exported format.
+   * 
+   * @param metric Metric name, for example "READ LATENCY".
+   * @param measurement Measurement name, for example "Operations".
+   * @param l Measurement to write, such as a count that may exceed the range of an int.
+   *          Exporters that do not override this write it as a double.
+   * @throws IOException if writing failed
+   */
+  public default void write(String metric, String measurement, long l) throws IOException
+  {
+    write(metric,measurement,(double) l);
+  }
+
   /**
    * Write a measurement to the exported format.
    * 
@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.rate;
+
+import java.io.IOException;
+import java.util.Properties;
+
+/**
+ * How the operations issued at a given mean rate are spread out in time: the gaps between consecutive
+ * arrivals. The rate itself comes from a RateProfile; the arrival process decides whether the operations
+ * are evenly spaced, random (Poisson) or clustered in bursts.
+ */
+public abstract class ArrivalProcess
+{
+	/**
+	 * The arrival process: "uniform" (evenly spaced, the default), "poisson" (exponential inter-arrival times),
+	 * "mmpp" (a Markov-modulated Poisson process, for bursts) or "trace" (inter-arrival times read from a file).
+	 * If set, all client threads draw from one shared schedule, as with a rate profile.
+	 */
+	public static final String ARRIVAL_PROCESS_PROPERTY="arrivalprocess";
+
+	public static final String ARRIVAL_PROCESS_PROPERTY_DEFAULT="uniform";
+
+	/**
+	 * MMPP: a comma-separated list of relative rates, one per state. In each state, arrivals are Poisson at
+	 * the profile rate times the state's multiplier, the multipliers being scaled so that their mean over time
+	 * is 1 and the mean rate is the profile's.
+	 */
+	public static final String MMPP_RATES_PROPERTY="arrivalprocess.mmpp.rates";
+
+	public static final String MMPP_RATES_PROPERTY_DEFAULT="0.5,5";
+
+	/**
+	 * MMPP: a comma-separated list of the mean time spent in each state, in seconds. Times in a state are
+	 * exponentially distributed, and the next state is chosen uniformly from the others.
+	 */
+	public static final String MMPP_DURATIONS_PROPERTY="arrivalprocess.mmpp.durations";
+
+	public static final String MMPP_DURATIONS_PROPERTY_DEFAULT="9,1";
+
+	/**
+	 * Trace: a file of inter-arrival times in milliseconds, one per line. The file is replayed from the start
+	 * when it runs out.
+	 */
+	public static final String TRACE_FILE_PROPERTY="arrivalprocess.trace.file";
+
+	/**
+	 * The gap until the next arrival.
+	 *
+	 * @param time the time of the previous arrival, in ns since the start of the schedule
+	 * @param rate the mean rate at that time, in ops/sec; always above 0
+	 * @return the gap, in ns
+	 */
+	public abstract long nextInterArrival(long time, double rate);
+
+	/**
+	 * Create the arrival process described by props.
+	 */
+	public static ArrivalProcess newArrivalProcess(Properties props) throws IOException
+	{
+		String process=props.getProperty(ARRIVAL_PROCESS_PROPERTY,ARRIVAL_PROCESS_PROPERTY_DEFAULT);
+		if (process.compareTo("uniform")==0)
+		{
+			return new UniformArrivalProcess();
+		}
+		else if (process.compareTo("poisson")==0)
+		{
+			return new PoissonArrivalProcess();
+		}
+		else if (process.compareTo("mmpp")==0)
+		{
+			double[] rates=parseList(props.getProperty(MMPP_RATES_PROPERTY,MMPP_RATES_PROPERTY_DEFAULT));
+			double[] durations=parseList(props.getProperty(MMPP_DURATIONS_PROPERTY,MMPP_DURATIONS_PROPERTY_DEFAULT));
+			if ( (rates.length!=durations.length) || (rates.length<2) )
+			{
+				throw new IllegalArgumentException(MMPP_RATES_PROPERTY+" and "+MMPP_DURATIONS_PROPERTY+" must list the same number (at least 2) of states");
+			}
+			return new MMPPArrivalProcess(rates,durations);
+		}
+		else if (process.compareTo("trace")==0)
+		{
+			String file=props.getProperty(TRACE_FILE_PROPERTY);
+			if (file==null)
+			{
+				throw new IllegalArgumentException("Arrival process \"trace\" requires property \""+TRACE_FILE_PROPERTY+"\"");
+			}
+			return new TraceArrivalProcess(file,RateProfile.getRateScale(props));
+		}
+		else
+		{
+			throw new IllegalArgumentException("Unknown arrival process \""+process+"\"");
+		}
+	}
+
+	static double[] parseList(String list)
+	{
+		String[] values=list.split(",");
+		double[] ret=new double[values.length];
+		for (int i=0; i<values.length; i++)
+		{
+			ret[i]=Double.parseDouble(values[i].trim());
+		}
+		return ret;
+	}
+}
@@ -0,0 +1,63 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.rate;
+
+/**
+ * A target throughput that runs at a base rate, with periodic bursts at a higher rate. Bursts are
+ * reported as segment "burst", the time between them as "base".
+ */
+public class BurstRateProfile extends RateProfile
+{
+	double _base;
+	double _rate;
+	double _interval;
+	double _duration;
+
+	/**
+	 * @param base the rate between bursts, in ops/sec
+	 * @param rate the rate during a burst, in ops/sec
+	 * @param interval the time from the start of one burst to the start of the next, in seconds
+	 * @param duration the length of a burst, in seconds
+	 */
+	public BurstRateProfile(double base, double rate, double interval, double duration)
+	{
+		if ( (base<=0) && (rate<=0) )
+		{
+			throw new IllegalArgumentException("A burst rate profile needs a base or burst rate above 0");
+		}
+		_base=base;
+		_rate=rate;
+		_interval=interval;
+		_duration=duration;
+	}
+
+	boolean inBurst(double t)
+	{
+		return (t%_interval)<_duration;
+	}
+
+	public double getRate(double t)
+	{
+		return inBurst(t) ? _rate : _base;
+	}
+
+	public String getSegment(double t)
+	{
+		return inBurst(t) ? "burst" : "base";
+	}
+}
@@ -0,0 +1,43 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.rate;
+
+/**
+ * A target throughput that does not change.
+ */
+public class ConstantRateProfile extends RateProfile
+{
+	double _rate;
+
+	/**
+	 * @param rate the rate, in ops/sec; must be above 0, or no operation would ever be issued
+	 */
+	public ConstantRateProfile(double rate)
+	{
+		if (rate<=0)
+		{
+			throw new IllegalArgumentException("A constant rate profile needs a rate above 0, not "+rate);
+		}
+		_rate=rate;
+	}
+
+	public double getRate(double t)
+	{
+		return _rate;
+	}
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.rate;
+
+import java.util.Random;
+
+/**
+ * A Markov-modulated Poisson process: arrivals are Poisson, but their rate switches between states, e.g. a
+ * quiet state and a burst state. The time spent in each state is exponentially distributed.
+ */
+public class MMPPArrivalProcess extends ArrivalProcess
+{
+	double[] _rates;
+	double[] _durations;
+	Random _random=new Random();
+
+	int _state=0;
+	long _stateend=-1;
+
+	/**
+	 * @param rates the relative rate of each state. They are scaled so that the mean rate over time, in which
+	 * each state is visited equally often, is the rate asked for.
+	 * @param durations the mean time spent in each state, in seconds
+	 */
+	public MMPPArrivalProcess(double[] rates, double[] durations)
+	{
+		double weighted=0;
+		double total=0;
+		for (int i=0; i<rates.length; i++)
+		{
+			if ( (rates[i]<0) || (durations[i]<=0) )
+			{
+				throw new IllegalArgumentException("MMPP states need a rate of at least 0 and a duration above 0");
+			}
+			weighted+=rates[i]*durations[i];
+			total+=durations[i];
+		}
+		if (weighted<=0)
+		{
+			throw new IllegalArgumentException("MMPP states cannot all have a rate of 0");
+		}
+
+		_rates=new double[rates.length];
+		for (int i=0; i<rates.length; i++)
+		{
+			_rates[i]=rates[i]*total/weighted;
+		}
+		_durations=durations;
+	}
+
+	public long nextInterArrival(long time, double rate)
+	{
+		if (_stateend<0)
+		{
+			_stateend=time+PoissonArrivalProcess.exponential(_random,1.0/_durations[_state]);
+		}
+		while (time>=_stateend)
+		{
+			int next=_random.nextInt(_rates.length-1);
+			_state=(next>=_state) ? next+1 : next;
+			_stateend+=PoissonArrivalProcess.exponential(_random,1.0/_durations[_state]);
+		}
+
+		if (_rates[_state]<=0)
+		{
+			//no arrivals until the state ends
+			return Math.max(1,_stateend-time);
+		}
+		return PoissonArrivalProcess.exponential(_random,rate*_rates[_state]);
+	}
+}
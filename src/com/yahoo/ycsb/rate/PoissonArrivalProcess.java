@@ -0,0 +1,41 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.rate;
+
+import java.util.Random;
+
+/**
+ * Poisson arrivals: exponentially distributed inter-arrival times, as from many independent users.
+ */
+public class PoissonArrivalProcess extends ArrivalProcess
+{
+	Random _random=new Random();
+
+	public long nextInterArrival(long time, double rate)
+	{
+		return exponential(_random,rate);
+	}
+
+	/**
+	 * An exponentially distributed gap, in ns, for arrivals at the given rate in ops/sec.
+	 */
+	static long exponential(Random random, double rate)
+	{
+		return (long)(-Math.log(1.0-random.nextDouble())/rate*1000000000.0);
+	}
+}
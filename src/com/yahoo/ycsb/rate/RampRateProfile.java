@@ -0,0 +1,66 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.rate;
+
+/**
+ * A target throughput that changes linearly from one rate to another, and then holds the final rate.
+ * The ramp is reported in a number of equal segments, "ramp0", "ramp1", ..., followed by "hold".
+ */
+public class RampRateProfile extends RateProfile
+{
+	double _start;
+	double _end;
+	double _duration;
+	int _segments;
+
+	/**
+	 * @param start the rate at the start of the ramp, in ops/sec
+	 * @param end the rate at the end of the ramp, in ops/sec
+	 * @param duration the length of the ramp, in seconds
+	 * @param segments the number of segments to report the ramp in
+	 */
+	public RampRateProfile(double start, double end, double duration, int segments)
+	{
+		if (end<=0)
+		{
+			throw new IllegalArgumentException("A ramp must end at a rate above 0, as that rate is held, not "+end);
+		}
+		_start=start;
+		_end=end;
+		_duration=duration;
+		_segments=Math.max(1,segments);
+	}
+
+	public double getRate(double t)
+	{
+		if (t>=_duration)
+		{
+			return _end;
+		}
+		return _start+(_end-_start)*t/_duration;
+	}
+
+	public String getSegment(double t)
+	{
+		if (t>=_duration)
+		{
+			return "hold";
+		}
+		return "ramp"+(int)(t/_duration*_segments);
+	}
+}
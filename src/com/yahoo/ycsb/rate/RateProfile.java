@@ -0,0 +1,240 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.rate;
+
+import java.io.IOException;
+import java.util.Properties;
+
+/**
+ * A target throughput that varies over the course of a run. The run is divided into named segments
+ * (e.g. the steps of a step profile), and latencies are reported per segment as well as overall.
+ */
+public abstract class RateProfile
+{
+	/**
+	 * The shape of the target throughput: "constant" (the "target" property), "ramp", "step", "sine", "burst"
+	 * or "trace" (read from a CSV file). If set, all client threads draw from one shared token bucket that
+	 * follows the profile, instead of each thread running at target/threadcount.
+	 */
+	public static final String RATE_PROFILE_PROPERTY="rateprofile";
+
+	/**
+	 * Ramp: the target throughput (ops/sec) to start from.
+	 */
+	public static final String RAMP_START_PROPERTY="rateprofile.ramp.start";
+
+	public static final String RAMP_START_PROPERTY_DEFAULT="1";
+
+	/**
+	 * Ramp: the target throughput (ops/sec) to end at, and to hold after the ramp.
+	 */
+	public static final String RAMP_END_PROPERTY="rateprofile.ramp.end";
+
+	/**
+	 * Ramp: the length of the ramp, in seconds.
+	 */
+	public static final String RAMP_DURATION_PROPERTY="rateprofile.ramp.duration";
+
+	public static final String RAMP_DURATION_PROPERTY_DEFAULT="60";
+
+	/**
+	 * Ramp: the number of equal segments to report the ramp in.
+	 */
+	public static final String RAMP_SEGMENTS_PROPERTY="rateprofile.ramp.segments";
+
+	public static final String RAMP_SEGMENTS_PROPERTY_DEFAULT="10";
+
+	/**
+	 * Step: a comma-separated list of target throughputs (ops/sec), one per step. The last one is held.
+	 */
+	public static final String STEP_RATES_PROPERTY="rateprofile.step.rates";
+
+	/**
+	 * Step: the length of each step, in seconds.
+	 */
+	public static final String STEP_DURATION_PROPERTY="rateprofile.step.duration";
+
+	public static final String STEP_DURATION_PROPERTY_DEFAULT="60";
+
+	/**
+	 * Sine: the mean target throughput (ops/sec).
+	 */
+	public static final String SINE_MEAN_PROPERTY="rateprofile.sine.mean";
+
+	/**
+	 * Sine: the amplitude (ops/sec) of the variation around the mean.
+	 */
+	public static final String SINE_AMPLITUDE_PROPERTY="rateprofile.sine.amplitude";
+
+	/**
+	 * Sine: the period, in seconds.
+	 */
+	public static final String SINE_PERIOD_PROPERTY="rateprofile.sine.period";
+
+	public static final String SINE_PERIOD_PROPERTY_DEFAULT="60";
+
+	/**
+	 * Burst: the target throughput (ops/sec) between bursts.
+	 */
+	public static final String BURST_BASE_PROPERTY="rateprofile.burst.base";
+
+	/**
+	 * Burst: the target throughput (ops/sec) during a burst.
+	 */
+	public static final String BURST_RATE_PROPERTY="rateprofile.burst.rate";
+
+	/**
+	 * Burst: the time from the start of one burst to the start of the next, in seconds.
+	 */
+	public static final String BURST_INTERVAL_PROPERTY="rateprofile.burst.interval";
+
+	public static final String BURST_INTERVAL_PROPERTY_DEFAULT="60";
+
+	/**
+	 * Burst: the length of each burst, in seconds.
+	 */
+	public static final String BURST_DURATION_PROPERTY="rateprofile.burst.duration";
+
+	public static final String BURST_DURATION_PROPERTY_DEFAULT="10";
+
+	/**
+	 * Trace: a CSV file of "time,ops/sec[,segment name]" lines, with times in seconds from the start of
+	 * the run. Each rate holds until the time on the next line; the last one is held.
+	 */
+	public static final String TRACE_FILE_PROPERTY="rateprofile.trace.file";
+
+	/**
+	 * The number of operations that may be issued back to back when the clients fall behind the profile
+	 * (the capacity of the token bucket). Ignored when running open-loop.
+	 */
+	public static final String BUCKET_SIZE_PROPERTY="rateprofile.bucketsize";
+
+	public static final String BUCKET_SIZE_PROPERTY_DEFAULT="1";
+
+	/**
+	 * The share of the load this client generates, when several clients generate it together: the Coordinator
+	 * sets it for each of its workers. Every rate of a profile is multiplied by it, except that of the constant
+	 * profile, whose "target" is divided among the workers already.
+	 */
+	public static final String RATE_SCALE_PROPERTY="ratescale";
+
+	public static final String RATE_SCALE_PROPERTY_DEFAULT="1";
+
+	/**
+	 * The target throughput, in operations per second, t seconds after the start of the run.
+	 * May be 0 for idle periods, but a profile must not stay at 0 for good: the rate it holds at the end,
+	 * if any, must be above 0.
+	 */
+	public abstract double getRate(double t);
+
+	/**
+	 * The name of the segment of the profile that t seconds after the start of the run falls in, or null
+	 * if the profile is not divided into segments.
+	 */
+	public String getSegment(double t)
+	{
+		return null;
+	}
+
+	/**
+	 * Create the rate profile described by props, or return null if no profile is set.
+	 */
+	public static RateProfile newRateProfile(Properties props) throws IOException
+	{
+		String profile=props.getProperty(RATE_PROFILE_PROPERTY);
+		if (profile==null)
+		{
+			return null;
+		}
+		else if (profile.compareTo("constant")==0)
+		{
+			return new ConstantRateProfile(Double.parseDouble(getRequiredProperty(props,"target")));
+		}
+
+		double scale=getRateScale(props);
+		RateProfile ret=newShapedRateProfile(props,profile);
+		return (scale==1) ? ret : new ScaledRateProfile(ret,scale);
+	}
+
+	/**
+	 * The share of the load this client generates (see RATE_SCALE_PROPERTY).
+	 */
+	public static double getRateScale(Properties props)
+	{
+		return Double.parseDouble(props.getProperty(RATE_SCALE_PROPERTY,RATE_SCALE_PROPERTY_DEFAULT));
+	}
+
+	/**
+	 * Create a profile other than the constant one, with its rates as given.
+	 */
+	static RateProfile newShapedRateProfile(Properties props, String profile) throws IOException
+	{
+		if (profile.compareTo("ramp")==0)
+		{
+			double start=Double.parseDouble(props.getProperty(RAMP_START_PROPERTY,RAMP_START_PROPERTY_DEFAULT));
+			double end=Double.parseDouble(getRequiredProperty(props,RAMP_END_PROPERTY));
+			double duration=Double.parseDouble(props.getProperty(RAMP_DURATION_PROPERTY,RAMP_DURATION_PROPERTY_DEFAULT));
+			int segments=Integer.parseInt(props.getProperty(RAMP_SEGMENTS_PROPERTY,RAMP_SEGMENTS_PROPERTY_DEFAULT));
+			return new RampRateProfile(start,end,duration,segments);
+		}
+		else if (profile.compareTo("step")==0)
+		{
+			String[] ratestrings=getRequiredProperty(props,STEP_RATES_PROPERTY).split(",");
+			double[] rates=new double[ratestrings.length];
+			for (int i=0; i<rates.length; i++)
+			{
+				rates[i]=Double.parseDouble(ratestrings[i].trim());
+			}
+			double duration=Double.parseDouble(props.getProperty(STEP_DURATION_PROPERTY,STEP_DURATION_PROPERTY_DEFAULT));
+			return new StepRateProfile(rates,duration);
+		}
+		else if (profile.compareTo("sine")==0)
+		{
+			double mean=Double.parseDouble(getRequiredProperty(props,SINE_MEAN_PROPERTY));
+			double amplitude=Double.parseDouble(getRequiredProperty(props,SINE_AMPLITUDE_PROPERTY));
+			double period=Double.parseDouble(props.getProperty(SINE_PERIOD_PROPERTY,SINE_PERIOD_PROPERTY_DEFAULT));
+			return new SineRateProfile(mean,amplitude,period);
+		}
+		else if (profile.compareTo("burst")==0)
+		{
+			double base=Double.parseDouble(getRequiredProperty(props,BURST_BASE_PROPERTY));
+			double rate=Double.parseDouble(getRequiredProperty(props,BURST_RATE_PROPERTY));
+			double interval=Double.parseDouble(props.getProperty(BURST_INTERVAL_PROPERTY,BURST_INTERVAL_PROPERTY_DEFAULT));
+			double duration=Double.parseDouble(props.getProperty(BURST_DURATION_PROPERTY,BURST_DURATION_PROPERTY_DEFAULT));
+			return new BurstRateProfile(base,rate,interval,duration);
+		}
+		else if (profile.compareTo("trace")==0)
+		{
+			return new TraceRateProfile(getRequiredProperty(props,TRACE_FILE_PROPERTY));
+		}
+		else
+		{
+			throw new IllegalArgumentException("Unknown rate profile \""+profile+"\"");
+		}
+	}
+
+	static String getRequiredProperty(Properties props, String name)
+	{
+		String value=props.getProperty(name);
+		if (value==null)
+		{
+			throw new IllegalArgumentException("Rate profile \""+props.getProperty(RATE_PROFILE_PROPERTY)+"\" requires property \""+name+"\"");
+		}
+		return value;
+	}
+}
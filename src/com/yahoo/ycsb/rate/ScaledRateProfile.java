@@ -0,0 +1,48 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.rate;
+
+/**
+ * Another profile with all its rates multiplied by a factor, such as one worker's share of a profile that
+ * several workers follow together.
+ */
+public class ScaledRateProfile extends RateProfile
+{
+	RateProfile _profile;
+	double _scale;
+
+	public ScaledRateProfile(RateProfile profile, double scale)
+	{
+		if (scale<=0)
+		{
+			throw new IllegalArgumentException("A rate profile can only be scaled by a factor above 0, not "+scale);
+		}
+		_profile=profile;
+		_scale=scale;
+	}
+
+	public double getRate(double t)
+	{
+		return _profile.getRate(t)*_scale;
+	}
+
+	public String getSegment(double t)
+	{
+		return _profile.getSegment(t);
+	}
+}
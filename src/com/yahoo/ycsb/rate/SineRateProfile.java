@@ -0,0 +1,55 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.rate;
+
+/**
+ * A target throughput that follows a sine wave around a mean, like a diurnal load pattern. The half of
+ * each period above the mean is reported as segment "high", the other half as "low".
+ */
+public class SineRateProfile extends RateProfile
+{
+	double _mean;
+	double _amplitude;
+	double _period;
+
+	/**
+	 * @param mean the mean rate, in ops/sec
+	 * @param amplitude the largest difference from the mean, in ops/sec
+	 * @param period the period of the wave, in seconds
+	 */
+	public SineRateProfile(double mean, double amplitude, double period)
+	{
+		if (mean+Math.abs(amplitude)<=0)
+		{
+			throw new IllegalArgumentException("A sine rate profile must rise above 0");
+		}
+		_mean=mean;
+		_amplitude=amplitude;
+		_period=period;
+	}
+
+	public double getRate(double t)
+	{
+		return Math.max(0,_mean+_amplitude*Math.sin(2*Math.PI*t/_period));
+	}
+
+	public String getSegment(double t)
+	{
+		return (t%_period)<_period/2 ? "high" : "low";
+	}
+}
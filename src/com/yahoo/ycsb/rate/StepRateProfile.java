@@ -0,0 +1,57 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.rate;
+
+/**
+ * A target throughput that steps through a list of rates, holding each for the same time, and then holds
+ * the last one. Each step is reported as its own segment, "step0", "step1", ...
+ */
+public class StepRateProfile extends RateProfile
+{
+	double[] _rates;
+	double _duration;
+
+	/**
+	 * @param rates the rate of each step, in ops/sec
+	 * @param duration the length of each step, in seconds
+	 */
+	public StepRateProfile(double[] rates, double duration)
+	{
+		if ( (rates.length==0) || (rates[rates.length-1]<=0) )
+		{
+			throw new IllegalArgumentException("The last step must have a rate above 0, as that rate is held");
+		}
+		_rates=rates;
+		_duration=duration;
+	}
+
+	int step(double t)
+	{
+		return Math.min(_rates.length-1,(int)(t/_duration));
+	}
+
+	public double getRate(double t)
+	{
+		return _rates[step(t)];
+	}
+
+	public String getSegment(double t)
+	{
+		return "step"+step(t);
+	}
+}
@@ -0,0 +1,209 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.rate;
+
+import java.util.concurrent.locks.LockSupport;
+
+import com.yahoo.ycsb.measurements.Measurements;
+
+/**
+ * A token bucket, shared by all client threads, that hands out the times at which operations may be
+ * issued so that together the threads follow a RateProfile. Because the schedule is shared, a slow or
+ * stalled thread does not lower the overall throughput as long as other threads are free to issue
+ * operations, which is not the case when each thread runs at its own share of the target.
+ *
+ * Tokens are generated at the profile's current rate, spaced out by an ArrivalProcess. When the clients
+ * fall behind, at most "size" unused tokens accumulate, so at most that many operations are issued back
+ * to back to catch up. When running open-loop, the schedule is followed exactly: operations that are due
+ * are never dropped, and each operation's intended start time is its place in the schedule.
+ *
+ * The gaps between consecutive tokens are measured as INTERARRIVAL-INTENDED, and the gaps between the
+ * times operations were actually issued as INTERARRIVAL-ACTUAL (both in microseconds), to show whether
+ * the client kept to the arrival process or distorted it.
+ */
+public class TokenBucket
+{
+	/**
+	 * When the rate is 0, how far to move through the profile at a time looking for the next token, in ns.
+	 */
+	static final long IDLE_STEP=1000000;
+
+	/**
+	 * When the rate is 0, how far ahead of the present to look for the next token, in ns. Beyond that, the
+	 * thread waits, without holding the bucket, before it looks further.
+	 */
+	static final long IDLE_HORIZON=1000000000L;
+
+	volatile RateProfile _profile;
+	ArrivalProcess _arrivals;
+	int _size;
+	boolean _openloop;
+
+	long _start=-1;
+	long _next;
+	long _lasttoken=-1;
+	long _lastissue=-1;
+
+	volatile boolean _stopped;
+
+	/**
+	 * @param profile the target throughput to follow
+	 * @param arrivals how to space out the tokens
+	 * @param size the largest number of unused tokens that can accumulate
+	 * @param openloop whether to follow the schedule exactly, never dropping tokens
+	 */
+	public TokenBucket(RateProfile profile, ArrivalProcess arrivals, int size, boolean openloop)
+	{
+		_profile=profile;
+		_arrivals=arrivals;
+		_size=Math.max(1,size);
+		_openloop=openloop;
+	}
+
+	public boolean isOpenLoop()
+	{
+		return _openloop;
+	}
+
+	/**
+	 * Take the next token. The first token taken starts the profile.
+	 *
+	 * @return the time (System.nanoTime()) at which the token becomes available; the caller should wait
+	 *         until then before issuing its operation. Once the bucket is stopped, the present.
+	 */
+	public long acquire()
+	{
+		while (true)
+		{
+			long idleuntil;
+			synchronized (this)
+			{
+				long token=nextToken();
+				if (token>=0)
+				{
+					return token;
+				}
+				idleuntil=_next-IDLE_HORIZON;
+			}
+
+			//the profile is idle for a while: wait without holding the bucket, so that the profile can be
+			//changed, and give up if the bucket is stopped
+			long now;
+			while ( ((now=System.nanoTime())<idleuntil) && (!_stopped) )
+			{
+				LockSupport.parkNanos(this,Math.min(idleuntil-now,IDLE_HORIZON/10));
+			}
+			if (_stopped)
+			{
+				return System.nanoTime();
+			}
+		}
+	}
+
+	/**
+	 * Hand out the next token, or return -1 if the profile is idle up to IDLE_HORIZON from now.
+	 */
+	long nextToken()
+	{
+		long now=System.nanoTime();
+
+		if (_start<0)
+		{
+			_start=now;
+			_next=now;
+		}
+		else if (!_openloop)
+		{
+			//don't let the tokens we didn't use while we were behind pile up beyond the bucket size
+			double rate=_profile.getRate(seconds(now));
+			if (rate>0)
+			{
+				long earliest=now-(long)((_size-1)*1000000000.0/rate);
+				if (_next<earliest)
+				{
+					_next=earliest;
+				}
+			}
+		}
+
+		double rate;
+		long horizon=now+IDLE_HORIZON;
+		while ((rate=_profile.getRate(seconds(_next)))<=0)
+		{
+			if (_next>=horizon)
+			{
+				return -1;
+			}
+			_next+=IDLE_STEP;
+		}
+
+		long token=_next;
+		_next+=_arrivals.nextInterArrival(_next-_start,rate);
+
+		if (_lasttoken>=0)
+		{
+			Measurements.getMeasurements().measure("INTERARRIVAL-INTENDED",(int)((token-_lasttoken)/1000));
+		}
+		_lasttoken=token;
+
+		return token;
+	}
+
+	/**
+	 * Stop handing out tokens to wait for: threads waiting through an idle period return at once.
+	 */
+	public void stop()
+	{
+		_stopped=true;
+	}
+
+	/**
+	 * Tell the bucket that an operation is being issued now, after waiting for its token.
+	 */
+	public synchronized void issued()
+	{
+		long now=System.nanoTime();
+		if (_lastissue>=0)
+		{
+			Measurements.getMeasurements().measure("INTERARRIVAL-ACTUAL",(int)((now-_lastissue)/1000));
+		}
+		_lastissue=now;
+	}
+
+	/**
+	 * Follow a different profile from now on. Times in the new profile are counted from the start of the
+	 * old one.
+	 */
+	public synchronized void setProfile(RateProfile profile)
+	{
+		_profile=profile;
+	}
+
+	/**
+	 * The profile segment that the given time (System.nanoTime()) falls in, or null.
+	 */
+	public String getSegment(long time)
+	{
+		return _profile.getSegment(seconds(time));
+	}
+
+	double seconds(long time)
+	{
+		return (time-_start)/1000000000.0;
+	}
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.rate;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Vector;
+
+/**
+ * Inter-arrival times read from a file, e.g. recorded from a production request stream, in milliseconds,
+ * one per line. The rate of the profile is ignored. The file is replayed from the start when it runs out.
+ * A client generating only a share of the load stretches the gaps accordingly.
+ */
+public class TraceArrivalProcess extends ArrivalProcess
+{
+	long[] _gaps;
+	int _next=0;
+
+	public TraceArrivalProcess(String filename) throws IOException
+	{
+		this(filename,1);
+	}
+
+	/**
+	 * @param scale the share of the recorded load to generate, above 0
+	 */
+	public TraceArrivalProcess(String filename, double scale) throws IOException
+	{
+		if (scale<=0)
+		{
+			throw new IllegalArgumentException("An arrival trace can only be scaled by a factor above 0, not "+scale);
+		}
+
+		Vector<Long> gaps=new Vector<Long>();
+
+		BufferedReader reader=new BufferedReader(new FileReader(filename));
+		try
+		{
+			String line;
+			while ((line=reader.readLine())!=null)
+			{
+				line=line.trim();
+				if ( (line.length()==0) || (line.startsWith("#")) )
+				{
+					continue;
+				}
+				gaps.add((long)(Double.parseDouble(line)*1000000.0/scale));
+			}
+		}
+		finally
+		{
+			reader.close();
+		}
+
+		if (gaps.size()==0)
+		{
+			throw new IOException("Arrival trace "+filename+" is empty");
+		}
+
+		_gaps=new long[gaps.size()];
+		for (int i=0; i<_gaps.length; i++)
+		{
+			_gaps[i]=gaps.get(i);
+		}
+	}
+
+	public long nextInterArrival(long time, double rate)
+	{
+		long gap=_gaps[_next];
+		_next=(_next+1)%_gaps.length;
+		return gap;
+	}
+}
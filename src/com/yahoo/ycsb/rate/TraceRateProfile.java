@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.rate;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Vector;
+
+/**
+ * A target throughput read from a CSV file of "time,ops/sec[,segment name]" lines, e.g. recorded from a
+ * production system. Times are in seconds from the start of the run, in increasing order. Each rate holds
+ * until the time on the next line, and the last one is held until the end of the run. Lines starting with
+ * '#' are ignored. Each line is its own segment, named by its third column or else by its time.
+ */
+public class TraceRateProfile extends RateProfile
+{
+	double[] _times;
+	double[] _rates;
+	String[] _segments;
+
+	public TraceRateProfile(String filename) throws IOException
+	{
+		Vector<String[]> lines=new Vector<String[]>();
+
+		BufferedReader reader=new BufferedReader(new FileReader(filename));
+		try
+		{
+			String line;
+			while ((line=reader.readLine())!=null)
+			{
+				line=line.trim();
+				if ( (line.length()==0) || (line.startsWith("#")) )
+				{
+					continue;
+				}
+				lines.add(line.split(","));
+			}
+		}
+		finally
+		{
+			reader.close();
+		}
+
+		if (lines.size()==0)
+		{
+			throw new IOException("Rate profile trace "+filename+" is empty");
+		}
+
+		_times=new double[lines.size()];
+		_rates=new double[lines.size()];
+		_segments=new String[lines.size()];
+		for (int i=0; i<lines.size(); i++)
+		{
+			String[] fields=lines.get(i);
+			if (fields.length<2)
+			{
+				throw new IOException("Bad line in rate profile trace "+filename+": "+fields[0]);
+			}
+			_times[i]=Double.parseDouble(fields[0].trim());
+			_rates[i]=Double.parseDouble(fields[1].trim());
+			_segments[i]=(fields.length>2) ? fields[2].trim() : fields[0].trim()+"s";
+		}
+		if (_rates[_rates.length-1]<=0)
+		{
+			throw new IOException("Rate profile trace "+filename+" must end with a rate above 0, as that rate is held");
+		}
+	}
+
+	/**
+	 * The index of the line in effect at time t: the last one whose time is not after t.
+	 */
+	int line(double t)
+	{
+		int lo=0;
+		int hi=_times.length-1;
+		while (lo<hi)
+		{
+			int mid=(lo+hi+1)/2;
+			if (_times[mid]<=t)
+			{
+				lo=mid;
+			}
+			else
+			{
+				hi=mid-1;
+			}
+		}
+		return lo;
+	}
+
+	public double getRate(double t)
+	{
+		if (t<_times[0])
+		{
+			return 0;
+		}
+		return _rates[line(t)];
+	}
+
+	public String getSegment(double t)
+	{
+		return _segments[line(t)];
+	}
+}
@@ -33,6 +33,14 @@ public class RecordLogs
         return singleton;
     }
 
+    /**
+     * Discard the current record logs. The next call to getRecordLogs() returns a new, empty object.
+     */
+    public synchronized static void resetRecordLogs()
+    {
+        singleton=null;
+    }
+
     HashMap<String,OneRecordLog> data;
     boolean perline=true;
 
@@ -18,23 +18,32 @@
 package com.yahoo.ycsb.workloads;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.Properties;
+import java.util.Random;
 import com.yahoo.ycsb.*;
 import com.yahoo.ycsb.generator.CounterGenerator;
-import com.yahoo.ycsb.generator.DiscreteGenerator;
-import com.yahoo.ycsb.generator.Generator;
+import com.yahoo.ycsb.generator.AliasSampler;
 import com.yahoo.ycsb.generator.IntegerGenerator;
 import com.yahoo.ycsb.generator.ScrambledZipfianGenerator;
+import com.yahoo.ycsb.generator.ShiftingHotspotGenerator;
 import com.yahoo.ycsb.generator.SkewedLatestGenerator;
 import com.yahoo.ycsb.generator.UniformIntegerGenerator;
 import com.yahoo.ycsb.generator.ZipfianGenerator;
 import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.StageTimer;
 
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.TreeMap;
 import java.util.Vector;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.cassandra.db.SchedulerParameter;
 
@@ -58,7 +67,12 @@ import org.apache.cassandra.db.SchedulerParameter;
  * <LI><b>insertproportion</b>: what proportion of operations should be inserts (default: 0)
  * <LI><b>scanproportion</b>: what proportion of operations should be scans (default: 0)
  * <LI><b>readmodifywriteproportion</b>: what proportion of operations should be read a record, modify it, write it back (default: 0)
- * <LI><b>requestdistribution</b>: what distribution should be used to select the records to operate on - uniform, zipfian or latest (default: uniform)
+ * <LI><b>deleteproportion</b>: what proportion of operations should be deletes (default: 0)
+ * <LI><b>insertttl</b>: if more than 0, inserts (but not the load) write records that expire after this many seconds (default: 0)
+ * <LI><b>requestdistribution</b>: what distribution should be used to select the records to operate on - uniform, zipfian, latest or hotspot (default: uniform)
+ * <LI><b>hotspotmode</b>: for the hotspot distribution, a zipfian one whose popular records change, whether they "jump" to other records every period, or "slide" along the keyspace (default: jump)
+ * <LI><b>hotspotperiod</b>: for the hotspot distribution, the length of a period in seconds; each new period is stamped as an event (default: 60)
+ * <LI><b>hotspotshift</b>: for the sliding hotspot distribution, how many records the popular ones move by in a period (default: 1000)
  * <LI><b>maxscanlength</b>: for scans, what is the maximum number of records to scan (default: 1000)
  * <LI><b>scanlengthdistribution</b>: for scans, what distribution should be used to choose the number of records to scan, for each scan, between 1 and maxscanlength (default: uniform)
  * <LI><b>insertorder</b>: should records be inserted in order by key ("ordered"), or in hashed order ("hashed") (default: hashed)
@@ -178,9 +192,31 @@ public class CoreWorkload extends Workload
 	 * The default proportion of transactions that are scans.
 	 */
 	public static final String READMODIFYWRITE_PROPORTION_PROPERTY_DEFAULT="0.0";
+
+	/**
+	 * The name of the property for the proportion of transactions that are deletes.
+	 */
+	public static final String DELETE_PROPORTION_PROPERTY="deleteproportion";
+
+	/**
+	 * The default proportion of transactions that are deletes.
+	 */
+	public static final String DELETE_PROPORTION_PROPERTY_DEFAULT="0.0";
+
+	/**
+	 * The name of the property for the number of seconds after which records inserted by transactions expire,
+	 * or 0 if they never do. The load phase always inserts records that do not expire.
+	 */
+	public static final String INSERT_TTL_PROPERTY="insertttl";
+
+	/**
+	 * The default is for inserted records not to expire.
+	 */
+	public static final String INSERT_TTL_PROPERTY_DEFAULT="0";
 	
 	/**
-	 * The name of the property for the the distribution of requests across the keyspace. Options are "uniform", "zipfian" and "latest"
+	 * The name of the property for the the distribution of requests across the keyspace. Options are "uniform", "zipfian", "latest"
+	 * and "hotspot"
 	 */
 	public static final String REQUEST_DISTRIBUTION_PROPERTY="requestdistribution";
 	
@@ -189,6 +225,28 @@ public class CoreWorkload extends Workload
 	 */
 	public static final String REQUEST_DISTRIBUTION_PROPERTY_DEFAULT="uniform";
 
+	/**
+	 * The name of the property for how the hot set of the "hotspot" distribution moves: "jump" to other keys
+	 * at the start of every period, or "slide" along the keyspace.
+	 */
+	public static final String HOTSPOT_MODE_PROPERTY="hotspotmode";
+
+	public static final String HOTSPOT_MODE_PROPERTY_DEFAULT="jump";
+
+	/**
+	 * The name of the property for the length of a period (epoch) of the "hotspot" distribution, in seconds.
+	 */
+	public static final String HOTSPOT_PERIOD_PROPERTY="hotspotperiod";
+
+	public static final String HOTSPOT_PERIOD_PROPERTY_DEFAULT="60";
+
+	/**
+	 * The name of the property for how many keys the hot set slides by in a period.
+	 */
+	public static final String HOTSPOT_SHIFT_PROPERTY="hotspotshift";
+
+	public static final String HOTSPOT_SHIFT_PROPERTY_DEFAULT="1000";
+
 	/**
 	 * The name of the property for the max scan length (number of records)
 	 */
@@ -225,6 +283,58 @@ public class CoreWorkload extends Workload
 	public static final String WORKLOAD_PATH_PROPERTY="workloadpath";
 	
 	public static final String WORKLOAD_PATH_PROPERTY_DEFAULT="./workload.txt";
+
+	/**
+	 * The file the trace is written to when no workloadpath is set. The workers of a coordinated run write
+	 * their own, e.g. ./workload.0.txt, since they would clobber each other's trace otherwise.
+	 */
+	static String tracePath(Properties p)
+	{
+		String workerid=p.getProperty(Coordinator.WORKER_ID_PROPERTY);
+		if (workerid==null)
+		{
+			return WORKLOAD_PATH_PROPERTY_DEFAULT;
+		}
+		return "./workload."+workerid+".txt";
+	}
+
+	/**
+	 * Whether each client thread loads its own contiguous range of the records, instead of all threads taking
+	 * the next record from a shared sequence. The load phase can only be checkpointed and resumed this way,
+	 * so this is the default when a checkpoint file is set.
+	 */
+	public static final String THREAD_KEY_RANGES_PROPERTY="threadkeyranges";
+
+	/**
+	 * The number of records to insert at once in the load phase, with DB.insertBatch(). Batches are taken from
+	 * each thread's own key range, so batching turns thread key ranges on.
+	 */
+	public static final String INSERT_BATCH_SIZE_PROPERTY="insertbatchsize";
+
+	public static final String INSERT_BATCH_SIZE_PROPERTY_DEFAULT="1";
+
+	/**
+	 * Whether to send the records of a batch in key order rather than in the order they were generated.
+	 */
+	public static final String SORT_BATCH_KEYS_PROPERTY="sortbatchkeys";
+
+	public static final String SORT_BATCH_KEYS_PROPERTY_DEFAULT="false";
+
+	/**
+	 * Whether to record the operations in the trace file, so that they can be replayed with workloadpath.
+	 * Recording writes the file once per operation, which costs far more than generating the operation.
+	 */
+	public static final String TRACE_PROPERTY="trace";
+
+	public static final String TRACE_PROPERTY_DEFAULT="true";
+
+	/**
+	 * The number of random field values each client thread generates up front and then picks from, instead
+	 * of generating a new value for every field written. 0 means a new value every time.
+	 */
+	public static final String VALUE_POOL_PROPERTY="valuepool";
+
+	public static final String VALUE_POOL_PROPERTY_DEFAULT="0";
 	
 	public static final String tardiness_bound_PROPERTY="tardiness_bound";
 	
@@ -253,35 +363,176 @@ public class CoreWorkload extends Workload
 	
 	IntegerGenerator keysequence;
 
-	DiscreteGenerator operationchooser;
+	//these may be replaced by reconfigure() while the run is in progress
+	volatile AliasSampler<Operation> operationchooser;
 
-	IntegerGenerator keychooser;
-
-	Generator fieldchooser;
+	volatile IntegerGenerator keychooser;
 
 	CounterGenerator transactioninsertkeysequence;
+
+	/**
+	 * This client's index among the workers of a coordinated run, and their number (0 and 1 when running
+	 * alone). The records a worker inserts and deletes during the run are those whose number modulo
+	 * workercount is its workerid, so that workers never insert or delete the same record.
+	 */
+	int workerid;
+	int workercount;
 	
 	IntegerGenerator scanlength;
 	
 	boolean orderedinserts;
 
 	int recordcount;
+
+	volatile int insertttl;
+
+	/**
+	 * The records known to be gone, deleted or expired, by record number (before hashing), with the time
+	 * (System.currentTimeMillis()) from which they are gone. Keys are chosen so as to avoid them.
+	 */
+	ConcurrentHashMap<Integer,Long> deleted=new ConcurrentHashMap<Integer,Long>();
+
+	/**
+	 * How many keys in a row nextKeyName() skips because their records are gone, before it gives up and
+	 * uses one anyway; only reached when most of the records have been deleted.
+	 */
+	static final int MAX_SKIPPED_DELETED=100;
+
+	/**
+	 * When the workload was set up (System.nanoTime()), from which the periods of the hotspot distribution count.
+	 */
+	long starttime=System.nanoTime();
+
+	/**
+	 * The records to load: insertcount records, starting at insertstart.
+	 */
+	int insertstart;
+	int insertcount;
+
+	boolean threadkeyranges;
+	int insertbatchsize;
+	boolean sortbatchkeys;
+
+	boolean trace;
+	int valuepool;
+
+	/**
+	 * "field0", "field1", ...
+	 */
+	String[] fieldnames;
+
+	/**
+	 * The kinds of transaction operations. Traced operations are recorded under these names.
+	 */
+	enum Operation
+	{
+		READ, UPDATE, INSERT, SCAN, READMODIFYWRITE, DELETE;
+
+		static HashMap<String,Operation> byname=new HashMap<String,Operation>();
+		static
+		{
+			for (Operation op : values())
+			{
+				byname.put(op.name(),op);
+			}
+		}
+
+		/**
+		 * The operation with the given name, or null if there is none, such as for "LOAD".
+		 */
+		static Operation forName(String name)
+		{
+			return byname.get(name);
+		}
+	}
+
+	/**
+	 * The records one client thread loads when using thread key ranges.
+	 */
+	static class KeyRange
+	{
+		int _end;
+
+		/**
+		 * The next record to insert; the ones before it in the range are done.
+		 */
+		volatile int _next;
+	}
+
+	/**
+	 * What one client thread keeps from one operation to the next, so that the read, update and scan paths
+	 * allocate nothing but the key they choose (and, for reads, the scheduler parameters they send): its own
+	 * Random, a buffer to build keys and values in, and the maps and sets that are handed to the DB.
+	 */
+	public static class ThreadState
+	{
+		/**
+		 * The records this thread loads, when using thread key ranges; otherwise null.
+		 */
+		KeyRange _range;
+
+		Random _random=new Random();
+		StringBuilder _key=new StringBuilder();
+
+		/**
+		 * The record number of the last key built in _key.
+		 */
+		int _keynum;
+		byte[] _value;
+		String[] _valuepool;
+		SchedulerParameter _parameters=new SchedulerParameter();
+
+		/**
+		 * Whether the DB is done with the maps and sets of an operation when the call returns, so that the
+		 * thread can use them again for its next operation. Not so when driving the DB asynchronously, which
+		 * a run plan can do in some phases only.
+		 */
+		boolean _reusebuffers;
+
+		/**
+		 * For each field, a map and a set holding only that field.
+		 */
+		Vector<HashMap<String,String>> _fieldvalues=new Vector<HashMap<String,String>>();
+		Vector<HashSet<String>> _fieldsets=new Vector<HashSet<String>>();
+
+		HashMap<String,String> _allvalues=new HashMap<String,String>();
+		HashMap<String,String> _result=new HashMap<String,String>();
+		Vector<HashMap<String,String>> _scanresult=new Vector<HashMap<String,String>>();
+	}
+
+	/**
+	 * The checkpoint the load phase is resumed from, or null.
+	 */
+	Properties resumefrom;
+
+	/**
+	 * Held by the client threads while they record a completed insert, and by checkpoint() to see them all
+	 * at a consistent point.
+	 */
+	ReentrantReadWriteLock checkpointlock=new ReentrantReadWriteLock();
 	
 	
 	//chen add
 	boolean oldworkload = false;
 	
 	String workloadpath = null;
+
+	/**
+	 * Whether this workload records its trace in a file that another workload (such as the TenantWorkload
+	 * it is a part of) has set up, so that init() must leave the file as it is.
+	 */
+	boolean sharedtrace = false;
 	
 	
-	int tardiness_bound;
-	int staleness_bound;
-	
-	double low_bound_QoS_preference;
-	double high_bound_QoS_preference;
-	
-	int low_bound_query_weight;
-	int high_bound_query_weight;
+	/**
+	 * The bounds of the scheduler parameters of reads, replaced as a whole when they are reconfigured.
+	 */
+	volatile SchedulerBounds bounds;
+
+	/**
+	 * The properties the workload is currently configured with.
+	 */
+	Properties currentprops;
 	
 	BlockingQueue<String> workloadhistories;
 	
@@ -289,6 +540,7 @@ public class CoreWorkload extends Workload
 	class OperationLog
     {
         public String _name;
+        public Operation _op;
         public String _key;
         public HashSet<String> _field;
         public String _payload;
@@ -299,6 +551,7 @@ public class CoreWorkload extends Workload
         OperationLog(String _name, String _key, HashSet<String> _field, String _payload)
         {
             this._name = _name;
+            this._op = Operation.forName(_name);
             this._key = _key;
             this._field = _field;
             this._payload = _payload;
@@ -309,6 +562,7 @@ public class CoreWorkload extends Workload
             StringTokenizer tokenizer = new StringTokenizer(str, token);
             
             _name = tokenizer.nextToken();
+            _op = Operation.forName(_name);
             _key = tokenizer.nextToken();
             
             String field = tokenizer.nextToken();
@@ -377,35 +631,51 @@ public class CoreWorkload extends Workload
 	 */
 	public void init(Properties p) throws WorkloadException
 	{
+		currentprops=(Properties)p.clone();
 		table = p.getProperty(TABLENAME_PROPERTY,TABLENAME_PROPERTY_DEFAULT);
 		fieldcount=Integer.parseInt(p.getProperty(FIELD_COUNT_PROPERTY,FIELD_COUNT_PROPERTY_DEFAULT));
 		fieldlength=Integer.parseInt(p.getProperty(FIELD_LENGTH_PROPERTY,FIELD_LENGTH_PROPERTY_DEFAULT));
-		double readproportion=Double.parseDouble(p.getProperty(READ_PROPORTION_PROPERTY,READ_PROPORTION_PROPERTY_DEFAULT));
-		double updateproportion=Double.parseDouble(p.getProperty(UPDATE_PROPORTION_PROPERTY,UPDATE_PROPORTION_PROPERTY_DEFAULT));
-		double insertproportion=Double.parseDouble(p.getProperty(INSERT_PROPORTION_PROPERTY,INSERT_PROPORTION_PROPERTY_DEFAULT));
-		double scanproportion=Double.parseDouble(p.getProperty(SCAN_PROPORTION_PROPERTY,SCAN_PROPORTION_PROPERTY_DEFAULT));
-		double readmodifywriteproportion=Double.parseDouble(p.getProperty(READMODIFYWRITE_PROPORTION_PROPERTY,READMODIFYWRITE_PROPORTION_PROPERTY_DEFAULT));
 		recordcount=Integer.parseInt(p.getProperty(Client.RECORD_COUNT_PROPERTY));
-		String requestdistrib=p.getProperty(REQUEST_DISTRIBUTION_PROPERTY,REQUEST_DISTRIBUTION_PROPERTY_DEFAULT);
 		int maxscanlength=Integer.parseInt(p.getProperty(MAX_SCAN_LENGTH_PROPERTY,MAX_SCAN_LENGTH_PROPERTY_DEFAULT));
 		String scanlengthdistrib=p.getProperty(SCAN_LENGTH_DISTRIBUTION_PROPERTY,SCAN_LENGTH_DISTRIBUTION_PROPERTY_DEFAULT);
 		
-		int insertstart=Integer.parseInt(p.getProperty(INSERT_START_PROPERTY,INSERT_START_PROPERTY_DEFAULT));
+		insertstart=Integer.parseInt(p.getProperty(INSERT_START_PROPERTY,INSERT_START_PROPERTY_DEFAULT));
+		insertcount=(int)Client.getOpCount(p,false);
+		insertbatchsize=Integer.parseInt(p.getProperty(INSERT_BATCH_SIZE_PROPERTY,INSERT_BATCH_SIZE_PROPERTY_DEFAULT));
+		sortbatchkeys=Boolean.parseBoolean(p.getProperty(SORT_BATCH_KEYS_PROPERTY,SORT_BATCH_KEYS_PROPERTY_DEFAULT));
+		threadkeyranges=Boolean.parseBoolean(p.getProperty(THREAD_KEY_RANGES_PROPERTY,Boolean.toString((p.getProperty(Client.CHECKPOINT_FILE_PROPERTY)!=null) || (insertbatchsize>1))));
+		if ( (insertbatchsize>1) && (!threadkeyranges) )
+		{
+			throw new WorkloadException("Batched inserts ("+INSERT_BATCH_SIZE_PROPERTY+"="+insertbatchsize+") require "+THREAD_KEY_RANGES_PROPERTY+"=true");
+		}
+		//an async insert is recorded as done when it is issued, so a checkpoint could skip inserts that never completed
+		if ( (p.getProperty(Client.CHECKPOINT_FILE_PROPERTY)!=null) && (Boolean.parseBoolean(p.getProperty(Client.ASYNC_PROPERTY,Client.ASYNC_PROPERTY_DEFAULT))) )
+		{
+			throw new WorkloadException("A load phase with "+Client.ASYNC_PROPERTY+"=true cannot be checkpointed; unset "+Client.CHECKPOINT_FILE_PROPERTY);
+		}
+		//before anything is changed, such as the trace file
+		if (resumefrom!=null)
+		{
+			checkResume(p);
+		}
 		
+		insertttl=Integer.parseInt(p.getProperty(INSERT_TTL_PROPERTY,INSERT_TTL_PROPERTY_DEFAULT));
+		trace=Boolean.parseBoolean(p.getProperty(TRACE_PROPERTY,TRACE_PROPERTY_DEFAULT));
+		valuepool=Integer.parseInt(p.getProperty(VALUE_POOL_PROPERTY,VALUE_POOL_PROPERTY_DEFAULT));
+
+		fieldnames=new String[fieldcount];
+		for (int i=0; i<fieldcount; i++)
+		{
+			fieldnames[i]="field"+i;
+		}
+
 		readallfields=Boolean.parseBoolean(p.getProperty(READ_ALL_FIELDS_PROPERTY,READ_ALL_FIELDS_PROPERTY_DEFAULT));
 		writeallfields=Boolean.parseBoolean(p.getProperty(WRITE_ALL_FIELDS_PROPERTY,WRITE_ALL_FIELDS_PROPERTY_DEFAULT));
 		
 		/**
 		 * chen add
 		 */
-		tardiness_bound=Integer.parseInt(p.getProperty(tardiness_bound_PROPERTY,tardiness_bound_PROPERTY_DEFAULT));
-		staleness_bound=Integer.parseInt(p.getProperty(staleness_bound_PROPERTY, staleness_bound_PROPERTY_DEFAULT));
-		
-		low_bound_QoS_preference=Double.parseDouble(p.getProperty(low_bound_QoS_preference_PROPERTY, low_bound_QoS_preference_PROPERTY_DEFAULT));
-		high_bound_QoS_preference=Double.parseDouble(p.getProperty(high_bound_QoS_preference_PROPERTY, high_bound_QoS_preference_PROPERTY_DEFAULT));
-		
-		low_bound_query_weight=Integer.parseInt(p.getProperty(low_bound_query_weight_PROPERTY, low_bound_query_weight_PROPERTY_DEFAULT));
-		high_bound_query_weight=Integer.parseInt(p.getProperty(high_bound_query_weight_PROPERTY, high_bound_query_weight_PROPERTY_DEFAULT));
+		bounds=new SchedulerBounds(p);
 		
 		workloadpath = p.getProperty(WORKLOAD_PATH_PROPERTY);
 		if (workloadpath!=null)
@@ -416,12 +686,20 @@ public class CoreWorkload extends Workload
         }
 		else {
 		    oldworkload = false;
-		    p.setProperty(WORKLOAD_PATH_PROPERTY, WORKLOAD_PATH_PROPERTY_DEFAULT);
-		    
-		    workloadpath = WORKLOAD_PATH_PROPERTY_DEFAULT;
+		    workloadpath = tracePath(p);
+		    p.setProperty(WORKLOAD_PATH_PROPERTY, workloadpath);
 		    
 		    File file = new File(workloadpath);
-		    if (file.exists())
+		    if (sharedtrace)
+		    {
+		        //another workload looks after the file
+		    }
+		    else if (resumefrom!=null)
+		    {
+		        //keep the trace of the inserts that were done, and only those
+		        resumeTrace(file);
+		    }
+		    else if (file.exists())
             {
                 file.delete();
             }
@@ -442,34 +720,116 @@ public class CoreWorkload extends Workload
 		}
 
 		keysequence=new CounterGenerator(insertstart);
-		operationchooser=new DiscreteGenerator();
+		operationchooser=createOperationChooser(p);
+
+		workerid=Integer.parseInt(p.getProperty(Coordinator.WORKER_ID_PROPERTY,"0"));
+		workercount=Integer.parseInt(p.getProperty(Coordinator.WORKER_COUNT_PROPERTY,"1"));
+		//the first record after the loaded ones that is this worker's
+		transactioninsertkeysequence=new CounterGenerator(recordcount+((workerid-recordcount%workercount)+workercount)%workercount,workercount);
+		keychooser=createKeyChooser(p);
+
+		if (scanlengthdistrib.compareTo("uniform")==0)
+		{
+			scanlength=new UniformIntegerGenerator(1,maxscanlength);
+		}
+		else if (scanlengthdistrib.compareTo("zipfian")==0)
+		{
+			scanlength=new ZipfianGenerator(1,maxscanlength);
+		}
+		else
+		{
+			throw new WorkloadException("Distribution \""+scanlengthdistrib+"\" not allowed for scan length");
+		}
+
+	}
+
+	/**
+	 * Change the operation proportions, the request distribution and the QoS parameter bounds while the run
+	 * is in progress. Properties that are not given keep their current values.
+	 */
+	public synchronized void reconfigure(Properties p) throws WorkloadException
+	{
+		Properties newprops=(Properties)currentprops.clone();
+		newprops.putAll(p);
+
+		//build everything before changing anything, so that a bad setting changes nothing
+		AliasSampler<Operation> newoperationchooser=createOperationChooser(newprops);
+		IntegerGenerator newkeychooser=keychooser;
+		if ( (p.getProperty(REQUEST_DISTRIBUTION_PROPERTY)!=null) || (p.getProperty(HOTSPOT_MODE_PROPERTY)!=null)
+				|| (p.getProperty(HOTSPOT_PERIOD_PROPERTY)!=null) || (p.getProperty(HOTSPOT_SHIFT_PROPERTY)!=null) )
+		{
+			newkeychooser=createKeyChooser(newprops);
+		}
+
+		operationchooser=newoperationchooser;
+		keychooser=newkeychooser;
+		insertttl=Integer.parseInt(newprops.getProperty(INSERT_TTL_PROPERTY,INSERT_TTL_PROPERTY_DEFAULT));
+		bounds=new SchedulerBounds(newprops);
+		currentprops=newprops;
+	}
+
+	AliasSampler<Operation> createOperationChooser(Properties p) throws WorkloadException
+	{
+		double readproportion=Double.parseDouble(p.getProperty(READ_PROPORTION_PROPERTY,READ_PROPORTION_PROPERTY_DEFAULT));
+		double updateproportion=Double.parseDouble(p.getProperty(UPDATE_PROPORTION_PROPERTY,UPDATE_PROPORTION_PROPERTY_DEFAULT));
+		double insertproportion=Double.parseDouble(p.getProperty(INSERT_PROPORTION_PROPERTY,INSERT_PROPORTION_PROPERTY_DEFAULT));
+		double scanproportion=Double.parseDouble(p.getProperty(SCAN_PROPORTION_PROPERTY,SCAN_PROPORTION_PROPERTY_DEFAULT));
+		double readmodifywriteproportion=Double.parseDouble(p.getProperty(READMODIFYWRITE_PROPORTION_PROPERTY,READMODIFYWRITE_PROPORTION_PROPERTY_DEFAULT));
+		double deleteproportion=Double.parseDouble(p.getProperty(DELETE_PROPORTION_PROPERTY,DELETE_PROPORTION_PROPERTY_DEFAULT));
+
+		if (readproportion+updateproportion+insertproportion+scanproportion+readmodifywriteproportion+deleteproportion<=0)
+		{
+			throw new WorkloadException("The operation proportions add up to 0");
+		}
+
+		AliasSampler<Operation> operationchooser=new AliasSampler<Operation>();
 		if (readproportion>0)
 		{
-			operationchooser.addValue(readproportion,"READ");
+			operationchooser.addValue(readproportion,Operation.READ);
 		}
 
 		if (updateproportion>0)
 		{
-			operationchooser.addValue(updateproportion,"UPDATE");
+			operationchooser.addValue(updateproportion,Operation.UPDATE);
 		}
 
 		if (insertproportion>0)
 		{
-			operationchooser.addValue(insertproportion,"INSERT");
+			operationchooser.addValue(insertproportion,Operation.INSERT);
 		}
 		
 		if (scanproportion>0)
 		{
-			operationchooser.addValue(scanproportion,"SCAN");
+			operationchooser.addValue(scanproportion,Operation.SCAN);
 		}
 		
 		if (readmodifywriteproportion>0)
 		{
-			operationchooser.addValue(readmodifywriteproportion,"READMODIFYWRITE");
+			operationchooser.addValue(readmodifywriteproportion,Operation.READMODIFYWRITE);
+		}
+
+		if (deleteproportion>0)
+		{
+			operationchooser.addValue(deleteproportion,Operation.DELETE);
 		}
 
-		transactioninsertkeysequence=new CounterGenerator(recordcount);
-		if (requestdistrib.compareTo("uniform")==0)
+		return operationchooser;
+	}
+
+	IntegerGenerator createKeyChooser(Properties p) throws WorkloadException
+	{
+		String requestdistrib=p.getProperty(REQUEST_DISTRIBUTION_PROPERTY,REQUEST_DISTRIBUTION_PROPERTY_DEFAULT);
+		double insertproportion=Double.parseDouble(p.getProperty(INSERT_PROPORTION_PROPERTY,INSERT_PROPORTION_PROPERTY_DEFAULT));
+		double deleteproportion=Double.parseDouble(p.getProperty(DELETE_PROPORTION_PROPERTY,DELETE_PROPORTION_PROPERTY_DEFAULT));
+		IntegerGenerator keychooser;
+
+		if ( (requestdistrib.compareTo("uniform")==0) && (deleteproportion>0) )
+		{
+			//deleted records are not chosen again, so without the records inserted during the run, there would
+			//soon be none left to choose. as for zipfian, keys that have not been inserted yet are skipped
+			keychooser=new UniformIntegerGenerator(0,recordcount+expectedNewKeys(p,insertproportion)-1);
+		}
+		else if (requestdistrib.compareTo("uniform")==0)
 		{
 			keychooser=new UniformIntegerGenerator(0,recordcount-1);
 		}
@@ -482,41 +842,408 @@ public class CoreWorkload extends Workload
 			//plus the number of predicted keys as the total keyspace. then, if the generator picks a key that hasn't been inserted yet, will
 			//just ignore it and pick another key. this way, the size of the keyspace doesn't change from the perspective of the scrambled zipfian generator
 			
-			int opcount=Integer.parseInt(p.getProperty(Client.OPERATION_COUNT_PROPERTY));
-			int expectednewkeys=(int)(((double)opcount)*insertproportion*2.0); //2 is fudge factor
-			
-			keychooser=new ScrambledZipfianGenerator(recordcount+expectednewkeys);
+			keychooser=new ScrambledZipfianGenerator(recordcount+expectedNewKeys(p,insertproportion));
 		}
 		else if (requestdistrib.compareTo("latest")==0)
 		{
 			keychooser=new SkewedLatestGenerator(transactioninsertkeysequence);
 		}
+		else if (requestdistrib.compareTo("hotspot")==0)
+		{
+			ShiftingHotspotGenerator.Mode mode;
+			String hotspotmode=p.getProperty(HOTSPOT_MODE_PROPERTY,HOTSPOT_MODE_PROPERTY_DEFAULT);
+			if (hotspotmode.compareTo("jump")==0)
+			{
+				mode=ShiftingHotspotGenerator.Mode.JUMP;
+			}
+			else if (hotspotmode.compareTo("slide")==0)
+			{
+				mode=ShiftingHotspotGenerator.Mode.SLIDE;
+			}
+			else
+			{
+				throw new WorkloadException("Unknown "+HOTSPOT_MODE_PROPERTY+" \""+hotspotmode+"\"");
+			}
+			long period=(long)(Double.parseDouble(p.getProperty(HOTSPOT_PERIOD_PROPERTY,HOTSPOT_PERIOD_PROPERTY_DEFAULT))*1000000000L);
+			if (period<=0)
+			{
+				throw new WorkloadException(HOTSPOT_PERIOD_PROPERTY+" must be more than 0");
+			}
+			long shift=Long.parseLong(p.getProperty(HOTSPOT_SHIFT_PROPERTY,HOTSPOT_SHIFT_PROPERTY_DEFAULT));
+
+			//as for zipfian, the keyspace includes the keys expected to be inserted. the periods are counted
+			//from the start of the run, so that changing the distribution does not restart them
+			keychooser=new ShiftingHotspotGenerator(0,recordcount+expectedNewKeys(p,insertproportion)-1,mode,period,shift,starttime);
+		}
 		else
 		{
 			throw new WorkloadException("Unknown distribution \""+requestdistrib+"\"");
 		}
 
-		fieldchooser=new UniformIntegerGenerator(0,fieldcount-1);
-		
-		if (scanlengthdistrib.compareTo("uniform")==0)
+		return keychooser;
+	}
+
+	/**
+	 * The number of records the run is expected to insert, with some margin.
+	 */
+	int expectedNewKeys(Properties p, double insertproportion)
+	{
+		//a worker of a coordinated run does its share of the operations, but all workers insert into the keyspace
+		int opcount=Integer.parseInt(p.getProperty(Client.OPERATION_COUNT_PROPERTY));
+		int workers=Integer.parseInt(p.getProperty(Coordinator.WORKER_COUNT_PROPERTY,"1"));
+		return (int)(((double)opcount)*workers*insertproportion*2.0); //2 is fudge factor
+	}
+	
+	
+	/**
+	 * Create the state of a client thread. If using thread key ranges, this gives the thread its own range
+	 * of the records to load. The ranges are divided the same way as the operation counts, so a thread's
+	 * range holds as many records as it does inserts.
+	 */
+	public Object initThread(Properties p, int mythreadid, int threadcount) throws WorkloadException
+	{
+		ThreadState state=new ThreadState();
+		state._reusebuffers=!Boolean.parseBoolean(p.getProperty(Client.ASYNC_PROPERTY,Client.ASYNC_PROPERTY_DEFAULT));
+
+		state._value=new byte[fieldlength];
+		if (valuepool>0)
 		{
-			scanlength=new UniformIntegerGenerator(1,maxscanlength);
+			state._valuepool=new String[valuepool];
+			for (int i=0; i<valuepool; i++)
+			{
+				state._valuepool[i]=Utils.ASCIIString(state._value,state._random);
+			}
 		}
-		else if (scanlengthdistrib.compareTo("zipfian")==0)
+
+		for (int i=0; i<fieldcount; i++)
 		{
-			scanlength=new ZipfianGenerator(1,maxscanlength);
+			HashMap<String,String> values=new HashMap<String,String>();
+			values.put(fieldnames[i],"");
+			state._fieldvalues.add(values);
+			state._allvalues.put(fieldnames[i],"");
+
+			HashSet<String> fields=new HashSet<String>();
+			fields.add(fieldnames[i]);
+			state._fieldsets.add(fields);
 		}
-		else
+
+		if (threadkeyranges)
 		{
-			throw new WorkloadException("Distribution \""+scanlengthdistrib+"\" not allowed for scan length");
+			KeyRange range=new KeyRange();
+			range._next=rangeStart(mythreadid,threadcount);
+			range._end=rangeStart(mythreadid+1,threadcount);
+			if ( (resumefrom!=null) && (resumefrom.getProperty("thread."+mythreadid+".next")!=null) )
+			{
+				range._next=Integer.parseInt(resumefrom.getProperty("thread."+mythreadid+".next"));
+			}
+			state._range=range;
 		}
+		return state;
+	}
 
+	/**
+	 * The first record of the given thread's range.
+	 */
+	int rangeStart(int threadid, int threadcount)
+	{
+		return insertstart+threadid*(insertcount/threadcount)+Math.min(threadid,insertcount%threadcount);
 	}
-	
-	
+
+	/**
+	 * The next record each thread will insert, and the length of the trace file that goes with those
+	 * inserts. Only possible with thread key ranges, and when not replaying a trace.
+	 */
+	public Properties checkpoint(Object[] threadstates)
+	{
+		if ( (!threadkeyranges) || (oldworkload) )
+		{
+			return null;
+		}
+
+		Properties checkpoint=new Properties();
+		checkpoint.setProperty(INSERT_START_PROPERTY,Integer.toString(insertstart));
+		checkpoint.setProperty(Client.INSERT_COUNT_PROPERTY,Integer.toString(insertcount));
+		checkpoint.setProperty("threadcount",Integer.toString(threadstates.length));
+
+		checkpointlock.writeLock().lock();
+		try
+		{
+			int done=0;
+			for (int i=0; i<threadstates.length; i++)
+			{
+				int next;
+				if (threadstates[i]!=null)
+				{
+					next=((ThreadState)threadstates[i])._range._next;
+				}
+				else if ( (resumefrom!=null) && (resumefrom.getProperty("thread."+i+".next")!=null) )
+				{
+					next=Integer.parseInt(resumefrom.getProperty("thread."+i+".next"));
+				}
+				else
+				{
+					next=rangeStart(i,threadstates.length);
+				}
+				checkpoint.setProperty("thread."+i+".next",Integer.toString(next));
+				done+=next-rangeStart(i,threadstates.length);
+			}
+			checkpoint.setProperty("done",Integer.toString(done));
+			checkpoint.setProperty("trace.offset",Long.toString(new File(workloadpath).length()));
+		}
+		finally
+		{
+			checkpointlock.writeLock().unlock();
+		}
+		return checkpoint;
+	}
+
+	/**
+	 * Resume the load phase from the checkpoint when init() is called.
+	 */
+	public void resume(Properties checkpoint) throws WorkloadException
+	{
+		resumefrom=checkpoint;
+	}
+
+	/**
+	 * Make sure the checkpoint being resumed from is of the same load as the one configured.
+	 */
+	void checkResume(Properties p) throws WorkloadException
+	{
+		if (!threadkeyranges)
+		{
+			throw new WorkloadException("Resuming a load phase requires "+THREAD_KEY_RANGES_PROPERTY+"=true");
+		}
+		String[][] same={{INSERT_START_PROPERTY,Integer.toString(insertstart)},
+				{Client.INSERT_COUNT_PROPERTY,Integer.toString(insertcount)},
+				{"threadcount",p.getProperty("threadcount","1")}};
+		for (String[] prop : same)
+		{
+			if (!prop[1].equals(resumefrom.getProperty(prop[0])))
+			{
+				throw new WorkloadException("Cannot resume: the checkpoint has "+prop[0]+"="+resumefrom.getProperty(prop[0])+", but this load has "+prop[0]+"="+prop[1]);
+			}
+		}
+	}
+
+	/**
+	 * Cut the trace file back to what it was at the checkpoint being resumed from.
+	 */
+	void resumeTrace(File file) throws WorkloadException
+	{
+		long offset=Long.parseLong(resumefrom.getProperty("trace.offset","0"));
+		try
+		{
+			RandomAccessFile trace=new RandomAccessFile(file,"rw");
+			try
+			{
+				if (trace.length()<offset)
+				{
+					throw new WorkloadException("Cannot resume: trace file "+file+" is shorter than at the checkpoint");
+				}
+				trace.setLength(offset);
+			}
+			finally
+			{
+				trace.close();
+			}
+		}
+		catch (IOException e)
+		{
+			throw new WorkloadException(e);
+		}
+	}
+
 	public void writeOperation(OperationLog op)
 	{
+	    long st=StageTimer.start();
 	    Utils.writeLineAppend(workloadpath, op.toString());
+	    StageTimer.stop(StageTimer.TRACE_LOGGING,st);
+	}
+
+	/**
+	 * Choose the key of an existing record to operate on, from the request distribution.
+	 */
+	String nextKeyName(ThreadState state)
+	{
+		return nextKeyName(state,false);
+	}
+
+	/**
+	 * Choose the key of an existing record to operate on, from the request distribution; if own is set,
+	 * one of the records of this worker (see workerid).
+	 */
+	String nextKeyName(ThreadState state, boolean own)
+	{
+		long st=StageTimer.start();
+
+		int keynum;
+		int skipped=0;
+		do
+		{
+			keynum=keychooser.nextInt();
+		}
+		while ( (keynum>transactioninsertkeysequence.lastInt())
+				|| ( ( (isDeleted(keynum)) || ( (own) && (keynum%workercount!=workerid) ) ) && (++skipped<MAX_SKIPPED_DELETED) ) );
+
+		String keyname=keyName(state,keynum);
+
+		StageTimer.stop(StageTimer.KEY_CHOICE,st);
+		return keyname;
+	}
+
+	/**
+	 * Choose the key of the next record to insert, from the given sequence.
+	 */
+	String nextInsertKeyName(IntegerGenerator sequence, ThreadState state)
+	{
+		long st=StageTimer.start();
+
+		String dbkey=keyName(state,sequence.nextInt());
+
+		StageTimer.stop(StageTimer.KEY_CHOICE,st);
+		return dbkey;
+	}
+
+	/**
+	 * Whether the given record is known to be gone.
+	 */
+	boolean isDeleted(int keynum)
+	{
+		if (deleted.isEmpty())
+		{
+			return false;
+		}
+		Long gone=deleted.get(keynum);
+		return (gone!=null) && (gone.longValue()<=System.currentTimeMillis());
+	}
+
+	/**
+	 * The key of the given record, built in the thread's key buffer.
+	 */
+	String keyName(ThreadState state, int keynum)
+	{
+		state._keynum=keynum;
+		if (!orderedinserts)
+		{
+			keynum=Utils.hash(keynum);
+		}
+		state._key.setLength(0);
+		state._key.append("user").append(keynum);
+		return state._key.toString();
+	}
+
+	/**
+	 * Generate the value of one field.
+	 */
+	String buildValue()
+	{
+		long st=StageTimer.start();
+		String data=Utils.ASCIIString(fieldlength);
+		StageTimer.stop(StageTimer.VALUE_GENERATION,st);
+		return data;
+	}
+
+	/**
+	 * Generate the value of one field, with the thread's own Random and buffer, or from its pool of values.
+	 */
+	String buildValue(ThreadState state)
+	{
+		long st=StageTimer.start();
+		String data;
+		if (state._valuepool!=null)
+		{
+			data=state._valuepool[state._random.nextInt(state._valuepool.length)];
+		}
+		else
+		{
+			data=Utils.ASCIIString(state._value,state._random);
+		}
+		StageTimer.stop(StageTimer.VALUE_GENERATION,st);
+		return data;
+	}
+
+	/**
+	 * A random integer from the interval [lb,ub] inclusive.
+	 */
+	static int uniform(ThreadState state, int lb, int ub)
+	{
+		return state._random.nextInt(ub-lb+1)+lb;
+	}
+
+	/**
+	 * The set of fields holding only the given one, to hand to the DB.
+	 */
+	HashSet<String> fieldSet(ThreadState state, int field)
+	{
+		if (state._reusebuffers)
+		{
+			return state._fieldsets.get(field);
+		}
+		HashSet<String> fields=new HashSet<String>();
+		fields.add(fieldnames[field]);
+		return fields;
+	}
+
+	/**
+	 * A new value for the given field, in a map holding only that field, to hand to the DB.
+	 */
+	HashMap<String,String> fieldValues(ThreadState state, int field)
+	{
+		HashMap<String,String> values=state._reusebuffers ? state._fieldvalues.get(field) : new HashMap<String,String>();
+		values.put(fieldnames[field],buildValue(state));
+		return values;
+	}
+
+	/**
+	 * New values for all the fields, to hand to the DB. Reusing the map only replaces its values.
+	 */
+	HashMap<String,String> allValues(ThreadState state)
+	{
+		HashMap<String,String> values=state._reusebuffers ? state._allvalues : new HashMap<String,String>();
+		for (int i=0; i<fieldcount; i++)
+		{
+			values.put(fieldnames[i],buildValue(state));
+		}
+		return values;
+	}
+
+	/**
+	 * An empty map for the DB to read a record into.
+	 */
+	HashMap<String,String> resultMap(ThreadState state)
+	{
+		if (state._reusebuffers)
+		{
+			state._result.clear();
+			return state._result;
+		}
+		return new HashMap<String,String>();
+	}
+
+	/**
+	 * Whether the transaction phase issues the given operation: for the operations of the mix, whether
+	 * their proportion is above 0. Anything may be issued when replaying a trace, and names that are not
+	 * operations of the mix, such as the penalties, are not judged.
+	 */
+	public boolean doesOperation(String operation)
+	{
+		if (oldworkload)
+		{
+			return true;
+		}
+		AliasSampler<Operation> chooser=operationchooser;
+		if ( (operation.compareTo("INSERT")==0) || (operation.compareTo("INSERT-TTL")==0) )
+		{
+			//inserts are measured as INSERT-TTL when they expire
+			return (chooser.contains(Operation.INSERT)) && ((insertttl>0)==(operation.compareTo("INSERT-TTL")==0));
+		}
+		if (operation.compareTo("READ-MODIFY-WRITE")==0)
+		{
+			return chooser.contains(Operation.READMODIFYWRITE);
+		}
+		Operation op=Operation.byname.get(operation);
+		return (op==null) || (chooser.contains(op));
 	}
 
 	/**
@@ -531,25 +1258,26 @@ public class CoreWorkload extends Workload
         {
             return doInsert(db);
         }
+
+	    ThreadState state=(ThreadState)threadstate;
+	    if (state._range!=null)
+	    {
+	        return doRangeInsert(db,state);
+	    }
 	    
-		int keynum=keysequence.nextInt();
-		if (!orderedinserts)
-		{
-			keynum=Utils.hash(keynum);
-		}
-		String dbkey="user"+keynum;
+		String dbkey=nextInsertKeyName(keysequence,state);
 		HashMap<String,String> values=new HashMap<String,String>();
 		
 		HashSet<String> fields = new HashSet<String>();
 		
-		int field_count = new UniformIntegerGenerator(1, fieldcount).nextInt();
+		int field_count = uniform(state, 1, fieldcount);
 		
 		for (int i=0; i<field_count; i++)
         {
 		    //int field_length = new UniformIntegerGenerator(1, fieldlength).nextInt();
 		    
-            String fieldkey="field"+i;
-            String data=Utils.ASCIIString(fieldlength);
+            String fieldkey=fieldnames[i];
+            String data=buildValue(state);
             values.put(fieldkey,data);
             
             fields.add(fieldkey);
@@ -565,9 +1293,12 @@ public class CoreWorkload extends Workload
 		}*/
 		
 		
-		OperationLog oplog = new OperationLog("LOAD", dbkey, fields, "");
-        
-        writeOperation(oplog);
+		if (trace)
+		{
+		    OperationLog oplog = new OperationLog("LOAD", dbkey, fields, "");
+	        
+	        writeOperation(oplog);
+		}
 		
 		if (db.insert(table,dbkey,values) == 0)
 			return true;
@@ -575,6 +1306,72 @@ public class CoreWorkload extends Workload
 			return false;
 	}
 	
+	/**
+	 * Insert the next records of a thread's key range: one, or a batch of insertbatchsize through
+	 * DB.insertBatch(). The inserts are traced and counted as done only once they have succeeded, so that
+	 * a checkpoint never includes an insert that still has to be done.
+	 */
+	boolean doRangeInsert(DB db, ThreadState state)
+	{
+		KeyRange range=state._range;
+		int first=range._next;
+		int count=Math.min(insertbatchsize,range._end-first);
+		if (count<=0)
+		{
+			return false;
+		}
+
+		//keys in the order they are sent to the DB
+		Map<String,HashMap<String,String>> records=sortbatchkeys ? new TreeMap<String,HashMap<String,String>>() : new LinkedHashMap<String,HashMap<String,String>>();
+		for (int k=0; k<count; k++)
+		{
+			long st=StageTimer.start();
+			String dbkey=keyName(state,first+k);
+			StageTimer.stop(StageTimer.KEY_CHOICE,st);
+
+			HashMap<String,String> values=new HashMap<String,String>();
+			int field_count=uniform(state,1,fieldcount);
+			for (int i=0; i<field_count; i++)
+			{
+				values.put(fieldnames[i],buildValue(state));
+			}
+			records.put(dbkey,values);
+		}
+
+		int res;
+		if (count==1)
+		{
+			String dbkey=records.keySet().iterator().next();
+			res=db.insert(table,dbkey,records.get(dbkey));
+		}
+		else
+		{
+			res=db.insertBatch(table,new Vector<String>(records.keySet()),new Vector<HashMap<String,String>>(records.values()));
+		}
+		if (res!=0)
+		{
+			return false;
+		}
+
+		checkpointlock.readLock().lock();
+		try
+		{
+			if (trace)
+			{
+				for (Map.Entry<String,HashMap<String,String>> record : records.entrySet())
+				{
+					writeOperation(new OperationLog("LOAD",record.getKey(),new HashSet<String>(record.getValue().keySet()),""));
+				}
+			}
+			range._next=first+count;
+		}
+		finally
+		{
+			checkpointlock.readLock().unlock();
+		}
+		return true;
+	}
+	
 	public boolean doInsert(DB db)
     {
 	    if (workloadhistories.isEmpty())
@@ -598,7 +1395,7 @@ public class CoreWorkload extends Workload
         
         for (String fieldname : operation._field)
         {
-            String data=Utils.ASCIIString(fieldlength);         
+            String data=buildValue();         
             values.put(fieldname,data);
         }
 
@@ -621,36 +1418,37 @@ public class CoreWorkload extends Workload
 	     */
 	    if (oldworkload)
         {
-            return doTransaction(db);
+            return doTransaction(db, (ThreadState)threadstate);
         }
 	    
-		String op=operationchooser.nextString();
+		ThreadState state=(ThreadState)threadstate;
 
-		if (op.compareTo("READ")==0)
-		{
-			doTransactionRead(db);
-		}
-		else if (op.compareTo("UPDATE")==0)
-		{
-			doTransactionUpdate(db);
-		}
-		else if (op.compareTo("INSERT")==0)
-		{
-			doTransactionInsert(db);
-		}
-		else if (op.compareTo("SCAN")==0)
-		{
-			doTransactionScan(db);
-		}
-		else
+		switch (operationchooser.next())
 		{
-			doTransactionReadModifyWrite(db);
+		case READ:
+			doTransactionRead(db,state);
+			break;
+		case UPDATE:
+			doTransactionUpdate(db,state);
+			break;
+		case INSERT:
+			doTransactionInsert(db,state);
+			break;
+		case SCAN:
+			doTransactionScan(db,state);
+			break;
+		case DELETE:
+			doTransactionDelete(db,state);
+			break;
+		default:
+			doTransactionReadModifyWrite(db,state);
+			break;
 		}
 		
 		return true;
 	}
 	
-	public boolean doTransaction(DB db)
+	public boolean doTransaction(DB db, ThreadState state)
     {
 	    if (workloadhistories.isEmpty())
         {
@@ -667,27 +1465,29 @@ public class CoreWorkload extends Workload
             e.printStackTrace();
         }
         
-        String op = operation._name;
+        //anything that is not a traced transaction is replayed as a read-modify-write
+        Operation op = (operation._op != null) ? operation._op : Operation.READMODIFYWRITE;
 
-        if (op.compareTo("READ")==0)
+        switch (op)
         {
+        case READ:
             doTransactionRead(db, operation);
-        }
-        else if (op.compareTo("UPDATE")==0)
-        {
+            break;
+        case UPDATE:
             doTransactionUpdate(db, operation);
-        }
-        else if (op.compareTo("INSERT")==0)
-        {
+            break;
+        case INSERT:
             doTransactionInsert(db, operation);
-        }
-        else if (op.compareTo("SCAN")==0)
-        {
-            doTransactionScan(db);
-        }
-        else
-        {
-            doTransactionReadModifyWrite(db);
+            break;
+        case SCAN:
+            doTransactionScan(db, state);
+            break;
+        case DELETE:
+            doTransactionDelete(db, operation);
+            break;
+        default:
+            doTransactionReadModifyWrite(db, state);
+            break;
         }
         
         return true;
@@ -707,130 +1507,80 @@ public class CoreWorkload extends Workload
         db.read(table,keyname,fields,pa);   
     }
 
-    public void doTransactionRead(DB db)
+    public void doTransactionRead(DB db, ThreadState state)
 	{
 		//choose a random key
-		int keynum;
-		do
-		{
-			keynum=keychooser.nextInt();
-		}
-		while (keynum>transactioninsertkeysequence.lastInt());
-		
-		if (!orderedinserts)
-		{
-			keynum=Utils.hash(keynum);
-		}
-		String keyname="user"+keynum;
+		String keyname=nextKeyName(state);
 
 		HashSet<String> fields=null;
 
 		if (!readallfields)
 		{
 			//read a random field  
-			String fieldname="field"+fieldchooser.nextString();
-
-			fields=new HashSet<String>();
-			fields.add(fieldname);
+			fields=fieldSet(state,state._random.nextInt(fieldcount));
 		}
 		
-		SchedulerParameter paras = new SchedulerParameter();
+		SchedulerParameter paras = state._parameters;
 		
-		paras.tardiness_deadline = new UniformIntegerGenerator(0, tardiness_bound).nextInt();
-		
-		paras.staleness_deadline = new UniformIntegerGenerator(0, staleness_bound).nextInt();
-		
-		paras.QoS_preference = new UniformIntegerGenerator((int)(low_bound_QoS_preference*10d), 
-		        (int)(high_bound_QoS_preference*10d)).nextInt()/10d;
-		
-		paras.query_weight = new UniformIntegerGenerator(low_bound_query_weight, 
-		        high_bound_query_weight).nextInt();
+		bounds.draw(paras, state._random);
+
+		String para = paras.toString();
 
-		OperationLog oplog = new OperationLog("READ", keyname, fields, paras.toString());
+		if (trace)
+		{
+		    OperationLog oplog = new OperationLog("READ", keyname, fields, para);
 		
-		writeOperation(oplog);
+		    writeOperation(oplog);
+		}
 		
-		//db.read(table,keyname,fields,new HashMap<String,String>());
-		HashMap<String, String> pa = new HashMap<String, String>();
-		pa.put("para", paras.toString());
+		HashMap<String, String> pa = resultMap(state);
+		pa.put("para", para);
 		db.read(table,keyname,fields,pa);
 	}
 	
-	public void doTransactionReadModifyWrite(DB db)
+	public void doTransactionReadModifyWrite(DB db, ThreadState state)
 	{
 		//choose a random key
-		int keynum;
-		do
-		{
-			keynum=keychooser.nextInt();
-		}
-		while (keynum>transactioninsertkeysequence.lastInt());
-		
-		if (!orderedinserts)
-		{
-			keynum=Utils.hash(keynum);
-		}
-		String keyname="user"+keynum;
+		String keyname=nextKeyName(state);
 
 		HashSet<String> fields=null;
 
 		if (!readallfields)
 		{
 			//read a random field  
-			String fieldname="field"+fieldchooser.nextString();
-
-			fields=new HashSet<String>();
-			fields.add(fieldname);
+			fields=fieldSet(state,state._random.nextInt(fieldcount));
 		}
 		
-		HashMap<String,String> values=new HashMap<String,String>();
+		HashMap<String,String> values;
 
 		if (writeallfields)
 		{
 		   //new data for all the fields
-		   for (int i=0; i<fieldcount; i++)
-		   {
-		      String fieldname="field"+i;
-		      String data=Utils.ASCIIString(fieldlength);		   
-		      values.put(fieldname,data);
-		   }
+		   values=allValues(state);
 		}
 		else
 		{
 		   //update a random field
-		   String fieldname="field"+fieldchooser.nextString();
-		   String data=Utils.ASCIIString(fieldlength);		   
-		   values.put(fieldname,data);
+		   values=fieldValues(state,state._random.nextInt(fieldcount));
 		}
 
 		//do the transaction
 		
-		long st=System.currentTimeMillis();
+		long st=System.nanoTime();
 
-		db.read(table,keyname,fields,new HashMap<String,String>());
+		db.read(table,keyname,fields,resultMap(state));
 		
 		db.update(table,keyname,values);
 
-		long en=System.currentTimeMillis();
+		long en=System.nanoTime();
 		
-		Measurements.getMeasurements().measure("READ-MODIFY-WRITE", (int)(en-st));
+		Measurements.getMeasurements().measure("READ-MODIFY-WRITE", (int)((en-st)/1000));
 	}
 	
-	public void doTransactionScan(DB db)
+	public void doTransactionScan(DB db, ThreadState state)
 	{
 		//choose a random key
-		int keynum;
-		do
-		{
-			keynum=keychooser.nextInt();
-		}
-		while (keynum>transactioninsertkeysequence.lastInt());
-
-		if (!orderedinserts)
-		{
-			keynum=Utils.hash(keynum);
-		}
-		String startkeyname="user"+keynum;
+		String startkeyname=nextKeyName(state);
 		
 		//choose a random scan length
 		int len=scanlength.nextInt();
@@ -840,13 +1590,20 @@ public class CoreWorkload extends Workload
 		if (!readallfields)
 		{
 			//read a random field  
-			String fieldname="field"+fieldchooser.nextString();
-
-			fields=new HashSet<String>();
-			fields.add(fieldname);
+			fields=fieldSet(state,state._random.nextInt(fieldcount));
 		}
 
-		db.scan(table,startkeyname,len,fields,new Vector<HashMap<String,String>>());
+		Vector<HashMap<String,String>> result;
+		if (state._reusebuffers)
+		{
+			result=state._scanresult;
+			result.clear();
+		}
+		else
+		{
+			result=new Vector<HashMap<String,String>>();
+		}
+		db.scan(table,startkeyname,len,fields,result);
 	}
 	
 	private void doTransactionUpdate(DB db, OperationLog operation)
@@ -864,7 +1621,7 @@ public class CoreWorkload extends Workload
            for (int i=0; i<fieldcount; i++)
            {
               String fieldname="field"+i;
-              String data=Utils.ASCIIString(fieldlength);          
+              String data=buildValue();          
               values.put(fieldname,data);
            }
         }
@@ -875,7 +1632,7 @@ public class CoreWorkload extends Workload
            
            for (String fieldname : fields)
            {
-               String data=Utils.ASCIIString(fieldlength);         
+               String data=buildValue();         
                values.put(fieldname,data);
            }
         }
@@ -885,83 +1642,62 @@ public class CoreWorkload extends Workload
         
     }
 
-	public void doTransactionUpdate(DB db)
+	public void doTransactionUpdate(DB db, ThreadState state)
 	{
 		//choose a random key
-		int keynum;
-		do
-		{
-			keynum=keychooser.nextInt();
-		}
-		while (keynum>transactioninsertkeysequence.lastInt());
-
-		if (!orderedinserts)
-		{
-			keynum=Utils.hash(keynum);
-		}
-		String keyname="user"+keynum;
+		String keyname=nextKeyName(state);
 
-		HashMap<String,String> values=new HashMap<String,String>();
+		HashMap<String,String> values;
 
-		
-		HashSet<String> fields = new HashSet<String>();
+		HashSet<String> fields;
 		if (writeallfields)
 		{
 		   //new data for all the fields
-		   for (int i=0; i<fieldcount; i++)
-		   {
-		      String fieldname="field"+i;
-		      String data=Utils.ASCIIString(fieldlength);		   
-		      values.put(fieldname,data);
-		   }
+		   values=allValues(state);
 		   
 		   //chen add
 		   fields = null;
 		}
 		else
 		{
-		   
 		   //update a random field
-		   String fieldname="field"+fieldchooser.nextString();
-		   String data=Utils.ASCIIString(fieldlength);		   
-		   values.put(fieldname,data);
+		   int field=state._random.nextInt(fieldcount);
+		   values=fieldValues(state,field);
 		   
 		   //chen
-		   fields.add(fieldname);
+		   fields=fieldSet(state,field);
 		}
 		
 		//chen
-		OperationLog oplog = new OperationLog("UPDATE", keyname, fields, "");
-        
-        writeOperation(oplog);
+		if (trace)
+		{
+		    OperationLog oplog = new OperationLog("UPDATE", keyname, fields, "");
+	        
+	        writeOperation(oplog);
+		}
 
 
 		db.update(table,keyname,values);
 	}
 
-	public void doTransactionInsert(DB db)
+	public void doTransactionInsert(DB db, ThreadState state)
 	{
 		//choose the next key
-		int keynum=transactioninsertkeysequence.nextInt();
-		if (!orderedinserts)
-		{
-			keynum=Utils.hash(keynum);
-		}
-		String dbkey="user"+keynum;
+		String dbkey=nextInsertKeyName(transactioninsertkeysequence,state);
 		
 		HashMap<String,String> values=new HashMap<String,String>();
 		
 		HashSet<String> fields = new HashSet<String>();
 		
 
-		int field_count = new UniformIntegerGenerator(1, fieldcount).nextInt();
+		int field_count = uniform(state, 1, fieldcount);
         
         for (int i=0; i<field_count; i++)
         {
             //int field_length = new UniformIntegerGenerator(1, fieldlength).nextInt();
             
-            String fieldkey="field"+i;
-            String data=Utils.ASCIIString(fieldlength);
+            String fieldkey=fieldnames[i];
+            String data=buildValue(state);
             values.put(fieldkey,data);
             
             fields.add(fieldkey);
@@ -976,13 +1712,56 @@ public class CoreWorkload extends Workload
 			fields.add(fieldkey);
 		}*/
 		
+		int ttl=insertttl;
+		int keynum=state._keynum;
+
 		//chen
-        OperationLog oplog = new OperationLog("INSERT", dbkey, fields, "");
-        
-        writeOperation(oplog);
+        if (trace)
+        {
+            OperationLog oplog = new OperationLog("INSERT", dbkey, fields, (ttl>0) ? Integer.toString(ttl) : "");
+            
+            writeOperation(oplog);
+        }
 		
 		
-		db.insert(table,dbkey,values);
+		if (ttl>0)
+		{
+			if (db.insertWithTTL(table,dbkey,values,ttl)==0)
+			{
+				deleted.put(keynum,System.currentTimeMillis()+ttl*1000L);
+			}
+		}
+		else
+		{
+			db.insert(table,dbkey,values);
+		}
+	}
+
+	/**
+	 * Delete a record, and avoid choosing it from then on.
+	 */
+	public void doTransactionDelete(DB db, ThreadState state)
+	{
+		//choose a random key, of a record no other worker deletes
+		String keyname=nextKeyName(state,workercount>1);
+		int keynum=state._keynum;
+
+		if (trace)
+		{
+			OperationLog oplog = new OperationLog("DELETE", keyname, null, "");
+
+			writeOperation(oplog);
+		}
+
+		if (db.delete(table,keyname)==0)
+		{
+			deleted.put(keynum,System.currentTimeMillis());
+		}
+	}
+
+	public void doTransactionDelete(DB db, OperationLog operation)
+	{
+		db.delete(table,operation._key);
 	}
 	
 	public void doTransactionInsert(DB db, OperationLog operation)
@@ -1005,11 +1784,19 @@ public class CoreWorkload extends Workload
         
         for (String fieldname : operation._field)
         {
-            String data=Utils.ASCIIString(fieldlength);         
+            String data=buildValue();         
             values.put(fieldname,data);
         }
         
         
-        db.insert(table,dbkey,values);
+        //traced with the TTL, if the record expires
+        if ( (operation._payload != null) && (operation._payload.length() > 0) )
+        {
+            db.insertWithTTL(table,dbkey,values,Integer.parseInt(operation._payload));
+        }
+        else
+        {
+            db.insert(table,dbkey,values);
+        }
     }
 }
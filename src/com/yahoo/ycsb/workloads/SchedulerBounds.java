@@ -0,0 +1,64 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.workloads;
+
+import java.util.Properties;
+import java.util.Random;
+
+import org.apache.cassandra.db.SchedulerParameter;
+
+/**
+ * The bounds within which the scheduler parameters of reads are drawn, set by the same properties as for
+ * CoreWorkload (tardiness_bound, staleness_bound, low_preference, high_preference, low_weight, high_weight).
+ * To change them while running, replace the whole object.
+ */
+class SchedulerBounds
+{
+	final int tardiness_bound;
+	final int staleness_bound;
+	final double low_bound_QoS_preference;
+	final double high_bound_QoS_preference;
+	final int low_bound_query_weight;
+	final int high_bound_query_weight;
+
+	SchedulerBounds(Properties p)
+	{
+		tardiness_bound=Integer.parseInt(p.getProperty(CoreWorkload.tardiness_bound_PROPERTY,CoreWorkload.tardiness_bound_PROPERTY_DEFAULT));
+		staleness_bound=Integer.parseInt(p.getProperty(CoreWorkload.staleness_bound_PROPERTY,CoreWorkload.staleness_bound_PROPERTY_DEFAULT));
+		low_bound_QoS_preference=Double.parseDouble(p.getProperty(CoreWorkload.low_bound_QoS_preference_PROPERTY,CoreWorkload.low_bound_QoS_preference_PROPERTY_DEFAULT));
+		high_bound_QoS_preference=Double.parseDouble(p.getProperty(CoreWorkload.high_bound_QoS_preference_PROPERTY,CoreWorkload.high_bound_QoS_preference_PROPERTY_DEFAULT));
+		low_bound_query_weight=Integer.parseInt(p.getProperty(CoreWorkload.low_bound_query_weight_PROPERTY,CoreWorkload.low_bound_query_weight_PROPERTY_DEFAULT));
+		high_bound_query_weight=Integer.parseInt(p.getProperty(CoreWorkload.high_bound_query_weight_PROPERTY,CoreWorkload.high_bound_query_weight_PROPERTY_DEFAULT));
+	}
+
+	/**
+	 * Draw the parameters of one read, each uniformly within its bounds.
+	 */
+	void draw(SchedulerParameter paras, Random random)
+	{
+		paras.tardiness_deadline=uniform(random,0,tardiness_bound);
+		paras.staleness_deadline=uniform(random,0,staleness_bound);
+		paras.QoS_preference=uniform(random,(int)(low_bound_QoS_preference*10d),(int)(high_bound_QoS_preference*10d))/10d;
+		paras.query_weight=uniform(random,low_bound_query_weight,high_bound_query_weight);
+	}
+
+	static int uniform(Random random, int lb, int ub)
+	{
+		return random.nextInt(ub-lb+1)+lb;
+	}
+}
@@ -0,0 +1,394 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.workloads;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.yahoo.ycsb.Client;
+import com.yahoo.ycsb.Coordinator;
+import com.yahoo.ycsb.DB;
+import com.yahoo.ycsb.DBException;
+import com.yahoo.ycsb.DBFactory;
+import com.yahoo.ycsb.UnknownDBException;
+import com.yahoo.ycsb.Workload;
+import com.yahoo.ycsb.WorkloadException;
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.penalty.Penalty;
+
+import org.apache.cassandra.db.SchedulerParameter;
+
+/**
+ * Measures the staleness of reads on the client side, as a check on the staleness the store reports for
+ * them. Writer threads keep writing increasing version numbers into a set of probe records, and note when
+ * each write is acknowledged. Reader threads read the probe records back, on connections of their own,
+ * possibly to other hosts, and compare the version they get with the versions that had been acknowledged
+ * before the read started.
+ *
+ * For every read, the following are measured next to the latency and the penalties:
+ * <UL>
+ * <LI><b>STALENESS-OBSERVED</b>: how long before the read started the version it returned had already been
+ * overwritten, i.e. the time since the acknowledgement of the next version; 0 for a read that is not stale
+ * <LI><b>STALENESS-REPORTED</b>: the staleness of the same read according to the store's "scheduler" result,
+ * when the store returns one
+ * <LI><b>VERSION-LAG</b>: the number of acknowledged versions the read missed, exported in "versions"
+ * </UL>
+ * The times are in microseconds. A read of a record last written before this run counts as version 0, and
+ * if more versions were missed than are remembered, the observed staleness is a lower bound.
+ *
+ * Properties to control the workload, in addition to table, fieldlength and the bounds for the scheduler
+ * parameters of reads, as for CoreWorkload:
+ * <UL>
+ * <LI><b>recordcount</b>: the number of probe records, "probe0", "probe1", ...
+ * <LI><b>probewriters</b>: how many of the client threads write; the others read (default: 1)
+ * <LI><b>readerhosts</b>: the hosts the readers connect to, in the DB's "hosts" format (default: the same as the writers)
+ * </UL>
+ */
+public class StalenessProbeWorkload extends Workload
+{
+	public static final String PROBE_WRITERS_PROPERTY="probewriters";
+
+	public static final String PROBE_WRITERS_PROPERTY_DEFAULT="1";
+
+	public static final String READER_HOSTS_PROPERTY="readerhosts";
+
+	/**
+	 * The field that holds the version.
+	 */
+	public static final String VERSION_FIELD="field0";
+
+	/**
+	 * How many acknowledgement times are remembered per record, for the latest versions.
+	 */
+	static final int REMEMBERED_VERSIONS=64;
+
+	String table;
+	int fieldlength;
+	int recordcount;
+	int writers;
+	SchedulerBounds bounds;
+	Properties props;
+
+	/**
+	 * Written into every version, so that versions left by earlier runs are told apart.
+	 */
+	String runid;
+
+	/**
+	 * The latest acknowledged version of each record, 0 for none in this run. Each record is only written by
+	 * one writer thread, so a lazy set is enough to publish it.
+	 */
+	AtomicLongArray latest;
+
+	/**
+	 * When each of the latest versions of each record was acknowledged (System.nanoTime()): version v of
+	 * record r at r*REMEMBERED_VERSIONS+v%REMEMBERED_VERSIONS. Set before the version is published in latest.
+	 */
+	AtomicLongArray acked;
+
+	/**
+	 * The connections the readers opened themselves, to close at cleanup.
+	 */
+	Vector<DB> readerdbs=new Vector<DB>();
+
+	static class ProbeState
+	{
+		Random _random=new Random();
+		int _threadid;
+		int _threadcount;
+
+		/**
+		 * Whether the thread has been made a writer or a reader yet.
+		 */
+		boolean _started;
+		boolean _writer;
+
+		/**
+		 * For writers, the records this thread writes, and which of them is next.
+		 */
+		int[] _records;
+		int _current;
+
+		/**
+		 * For readers, the connection to read on, or null for the client's.
+		 */
+		DB _db;
+
+		/**
+		 * For the load, the records of this thread: the next one, and the end of its range.
+		 */
+		int _load;
+		int _loadend;
+
+		SchedulerParameter _parameters=new SchedulerParameter();
+		HashSet<String> _fields=new HashSet<String>();
+		char[] _filler;
+	}
+
+	public void init(Properties p) throws WorkloadException
+	{
+		props=p;
+		table=p.getProperty(CoreWorkload.TABLENAME_PROPERTY,CoreWorkload.TABLENAME_PROPERTY_DEFAULT);
+		fieldlength=Integer.parseInt(p.getProperty(CoreWorkload.FIELD_LENGTH_PROPERTY,CoreWorkload.FIELD_LENGTH_PROPERTY_DEFAULT));
+		recordcount=Integer.parseInt(p.getProperty(Client.RECORD_COUNT_PROPERTY,"0"));
+		if (recordcount<=0)
+		{
+			throw new WorkloadException(Client.RECORD_COUNT_PROPERTY+" must be more than 0");
+		}
+		if (recordcount>Integer.MAX_VALUE/REMEMBERED_VERSIONS)
+		{
+			throw new WorkloadException(Client.RECORD_COUNT_PROPERTY+" can be at most "+(Integer.MAX_VALUE/REMEMBERED_VERSIONS)+" probe records");
+		}
+		if (Integer.parseInt(p.getProperty(Coordinator.WORKER_COUNT_PROPERTY,"1"))>1)
+		{
+			//the writers of every worker would write the same probe records, each with versions of its own
+			throw new WorkloadException(getClass().getName()+" cannot be run by the workers of a Coordinator");
+		}
+		writers=Integer.parseInt(p.getProperty(PROBE_WRITERS_PROPERTY,PROBE_WRITERS_PROPERTY_DEFAULT));
+		bounds=new SchedulerBounds(p);
+
+		runid=Long.toString(System.currentTimeMillis(),36);
+		latest=new AtomicLongArray(recordcount);
+		acked=new AtomicLongArray(recordcount*REMEMBERED_VERSIONS);
+	}
+
+	public Object initThread(Properties p, int mythreadid, int threadcount)
+	{
+		ProbeState state=new ProbeState();
+		state._fields.add(VERSION_FIELD);
+		state._filler=new char[fieldlength];
+		Arrays.fill(state._filler,'x');
+
+		//the same split of the load as the client's
+		state._load=mythreadid*(recordcount/threadcount)+Math.min(mythreadid,recordcount%threadcount);
+		state._loadend=state._load+recordcount/threadcount+((mythreadid<recordcount%threadcount)?1:0);
+
+		state._threadid=mythreadid;
+		state._threadcount=threadcount;
+		return state;
+	}
+
+	/**
+	 * Make the thread a writer or a reader, before its first transaction: only the run needs both.
+	 *
+	 * @return false if the threads cannot be divided, or the reader's connection cannot be opened
+	 */
+	boolean startProbe(ProbeState state)
+	{
+		state._started=true;
+		if ( (writers<1) || (writers>=state._threadcount) || (writers>recordcount) )
+		{
+			System.out.println(PROBE_WRITERS_PROPERTY+" must be at least 1, less than the number of threads ("+state._threadcount+"), to leave some to read, and at most "+Client.RECORD_COUNT_PROPERTY);
+			return false;
+		}
+
+		if (state._threadid<writers)
+		{
+			state._writer=true;
+			int owned=(recordcount-state._threadid+writers-1)/writers;
+			state._records=new int[owned];
+			for (int i=0; i<owned; i++)
+			{
+				state._records[i]=state._threadid+i*writers;
+			}
+		}
+		else if (props.getProperty(READER_HOSTS_PROPERTY)!=null)
+		{
+			Properties readerprops=(Properties)props.clone();
+			readerprops.setProperty("hosts",props.getProperty(READER_HOSTS_PROPERTY));
+			try
+			{
+				DB db=DBFactory.newDB(props.getProperty("db","com.yahoo.ycsb.BasicDB"),readerprops);
+				if (db==null)
+				{
+					System.out.println("Unknown DB "+props.getProperty("db"));
+					return false;
+				}
+				db.init();
+				state._db=db;
+			}
+			catch (UnknownDBException e)
+			{
+				System.out.println("Unknown DB "+props.getProperty("db"));
+				return false;
+			}
+			catch (DBException e)
+			{
+				e.printStackTrace();
+				e.printStackTrace(System.out);
+				return false;
+			}
+			synchronized (readerdbs)
+			{
+				readerdbs.add(state._db);
+			}
+		}
+		return true;
+	}
+
+	public void cleanup() throws WorkloadException
+	{
+		for (DB db : readerdbs)
+		{
+			try
+			{
+				db.cleanup();
+			}
+			catch (DBException e)
+			{
+				throw new WorkloadException(e);
+			}
+		}
+	}
+
+	String keyName(int record)
+	{
+		return "probe"+record;
+	}
+
+	/**
+	 * The value that stamps the given version, padded to fieldlength.
+	 */
+	String versionValue(ProbeState state, long version)
+	{
+		StringBuilder sb=new StringBuilder(Math.max(fieldlength,32));
+		sb.append(runid).append(':').append(version).append(' ');
+		if (sb.length()<fieldlength)
+		{
+			sb.append(state._filler,0,fieldlength-sb.length());
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * The version stamped in the given value, or 0 if it was not written by this run.
+	 */
+	long parseVersion(String value)
+	{
+		if ( (value==null) || (!value.startsWith(runid)) || (value.length()<=runid.length()) || (value.charAt(runid.length())!=':') )
+		{
+			return 0;
+		}
+		int end=value.indexOf(' ',runid.length()+1);
+		try
+		{
+			return Long.parseLong(value.substring(runid.length()+1,(end<0)?value.length():end));
+		}
+		catch (NumberFormatException e)
+		{
+			return 0;
+		}
+	}
+
+	public boolean doInsert(DB db, Object threadstate)
+	{
+		ProbeState state=(ProbeState)threadstate;
+		if (state._load>=state._loadend)
+		{
+			return false;
+		}
+		int record=state._load++;
+		HashMap<String,String> values=new HashMap<String,String>();
+		values.put(VERSION_FIELD,versionValue(state,0));
+		return db.insert(table,keyName(record),values)==0;
+	}
+
+	public boolean doTransaction(DB db, Object threadstate)
+	{
+		ProbeState state=(ProbeState)threadstate;
+		if ( (!state._started) && (!startProbe(state)) )
+		{
+			return false;
+		}
+
+		if (state._writer)
+		{
+			doWrite(db,state);
+		}
+		else
+		{
+			doRead((state._db!=null)?state._db:db,state);
+		}
+		return true;
+	}
+
+	/**
+	 * Write the next version of the next of this thread's records, in turn.
+	 */
+	void doWrite(DB db, ProbeState state)
+	{
+		int record=state._records[state._current];
+		state._current=(state._current+1)%state._records.length;
+
+		long version=latest.get(record)+1;
+		HashMap<String,String> values=new HashMap<String,String>();
+		values.put(VERSION_FIELD,versionValue(state,version));
+		if (db.update(table,keyName(record),values)==0)
+		{
+			acked.lazySet(record*REMEMBERED_VERSIONS+(int)(version%REMEMBERED_VERSIONS),System.nanoTime());
+			latest.lazySet(record,version);
+		}
+	}
+
+	/**
+	 * Read a random record, and measure how far behind the acknowledged writes the result is.
+	 */
+	void doRead(DB db, ProbeState state)
+	{
+		int record=state._random.nextInt(recordcount);
+
+		bounds.draw(state._parameters,state._random);
+		HashMap<String,String> result=new HashMap<String,String>();
+		result.put("para",state._parameters.toString());
+
+		long known=latest.get(record);
+		long start=System.nanoTime();
+		if (db.read(table,keyName(record),state._fields,result)!=0)
+		{
+			return;
+		}
+
+		long version=parseVersion(result.get(VERSION_FIELD));
+		long lag=Math.max(0,known-version);
+		long staleness=0;
+		if (lag>0)
+		{
+			//the read is stale from the moment the next version was acknowledged; if that is no longer
+			//remembered, from the oldest one that is
+			long next=Math.max(version+1,known-REMEMBERED_VERSIONS+1);
+			long overwritten=acked.get(record*REMEMBERED_VERSIONS+(int)(next%REMEMBERED_VERSIONS));
+			staleness=Math.max(0,start-overwritten)/1000;
+		}
+
+		Measurements measurements=Measurements.getMeasurements();
+		measurements.measure("VERSION-LAG",(int)Math.min(lag,Integer.MAX_VALUE),"versions");
+		measurements.measure("STALENESS-OBSERVED",(int)Math.min(staleness,Integer.MAX_VALUE));
+
+		String scheduler=result.get("scheduler");
+		if (scheduler!=null)
+		{
+			//reported in milliseconds
+			measurements.measure("STALENESS-REPORTED",(int)(new Penalty(scheduler).getStaleness()*1000));
+		}
+	}
+}
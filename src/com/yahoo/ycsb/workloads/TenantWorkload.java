@@ -0,0 +1,390 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.workloads;
+
+import java.io.IOException;
+import java.util.Enumeration;
+import java.util.Properties;
+import java.util.StringTokenizer;
+import java.util.Vector;
+import java.util.concurrent.locks.LockSupport;
+
+import com.yahoo.ycsb.DB;
+import com.yahoo.ycsb.Workload;
+import com.yahoo.ycsb.WorkloadException;
+import com.yahoo.ycsb.measurements.ClientMonitor;
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.rate.ArrivalProcess;
+import com.yahoo.ycsb.rate.ConstantRateProfile;
+import com.yahoo.ycsb.rate.RateProfile;
+import com.yahoo.ycsb.rate.TokenBucket;
+
+/**
+ * Several tenant classes sharing one data set, such as paying customers with tight deadlines next to batch
+ * jobs that can wait. Each class is a CoreWorkload of its own, with its own operation mix, request
+ * distribution and bounds for the scheduler parameters of its reads, run by its own share of the client
+ * threads, optionally at its own target throughput. The load phase is the one of a CoreWorkload configured
+ * with the properties common to all classes.
+ *
+ * Every metric, including the penalties, is reported per class as well as in total, under its name followed
+ * by "@" and the name of the class, e.g. "READ@gold" and "QoS Penalty@gold"; the throughput of each class
+ * is reported as "OVERALL@gold".
+ *
+ * Properties to control the workload, in addition to those of CoreWorkload:
+ * <UL>
+ * <LI><b>tenantclasses</b>: the names of the classes, separated by commas (required)
+ * <LI><b>tenant.&lt;class&gt;.&lt;property&gt;</b>: the value of a CoreWorkload property for that class only,
+ * e.g. tenant.gold.readproportion, tenant.gold.requestdistribution, tenant.gold.tardiness_bound or tenant.gold.high_weight.
+ * The table and the trace cannot be set per class.
+ * <LI><b>tenant.&lt;class&gt;.threads</b>: the number of client threads that run the class. Set it for all the classes,
+ * adding up to the number of threads, or for none, to divide the threads evenly (default: an even share)
+ * <LI><b>tenant.&lt;class&gt;.target</b>: the throughput of the class, in operations per second, spaced out by the
+ * class's arrivalprocess (default: 0, as fast as its threads can go). A worker of a Coordinator runs its share of it.
+ * The latencies of a throttled class are measured from when its schedule meant each operation to start
+ * </UL>
+ * The scheduler parameters are generated per class, but the order in which waiting operations are served is
+ * up to the DB, or to the client's connection pool (see the "dispatch" property of Client).
+ */
+public class TenantWorkload extends Workload
+{
+	public static final String TENANT_CLASSES_PROPERTY="tenantclasses";
+
+	/**
+	 * The properties of a class start with this, followed by the name of the class and a dot.
+	 */
+	public static final String TENANT_PREFIX="tenant.";
+
+	public static final String THREADS_PROPERTY="threads";
+
+	public static final String TARGET_PROPERTY="target";
+
+	/**
+	 * One tenant class.
+	 */
+	static class TenantClass
+	{
+		String _name;
+		CoreWorkload _workload;
+
+		/**
+		 * The number of client threads that run the class, or 0 if not set.
+		 */
+		int _threads;
+
+		/**
+		 * The schedule of the class's operations, or null to run them as fast as possible.
+		 */
+		TokenBucket _bucket;
+
+		String _counter;
+	}
+
+	/**
+	 * The state of one client thread: the class it runs, and its state in the CoreWorkloads it uses.
+	 */
+	static class TenantState
+	{
+		TenantClass _class;
+		Object _loadstate;
+		Object _classstate;
+	}
+
+	/**
+	 * The workload with the properties common to all classes, which does the load phase.
+	 */
+	CoreWorkload load=new CoreWorkload();
+
+	Vector<TenantClass> classes=new Vector<TenantClass>();
+
+	/**
+	 * The share of the class targets this client generates.
+	 */
+	double ratescale;
+
+	public void init(Properties p) throws WorkloadException
+	{
+		String names=p.getProperty(TENANT_CLASSES_PROPERTY);
+		if ( (names==null) || (names.trim().length()==0) )
+		{
+			throw new WorkloadException("Missing property: "+TENANT_CLASSES_PROPERTY);
+		}
+
+		if (p.getProperty(CoreWorkload.WORKLOAD_PATH_PROPERTY)!=null)
+		{
+			throw new WorkloadException("A trace cannot be replayed with "+getClass().getName()+"; replay it with "+CoreWorkload.class.getName());
+		}
+
+		ratescale=RateProfile.getRateScale(p);
+
+		//init sets properties of its own, such as workloadpath, which the classes must not inherit
+		Properties common=(Properties)p.clone();
+		load.init(p);
+
+		StringTokenizer tokens=new StringTokenizer(names,",");
+		while (tokens.hasMoreTokens())
+		{
+			String name=tokens.nextToken().trim();
+			Properties props=classProperties(common,name);
+			String prefix=TENANT_PREFIX+name+".";
+
+			TenantClass c=new TenantClass();
+			c._name=name;
+			c._threads=Integer.parseInt(p.getProperty(prefix+THREADS_PROPERTY,"0"));
+			c._counter=Measurements.CLASS_OPERATIONS+name;
+
+			//not the "target" of the whole client
+			double target=Double.parseDouble(p.getProperty(prefix+TARGET_PROPERTY,"0"));
+			if (target>0)
+			{
+				try
+				{
+					c._bucket=new TokenBucket(new ConstantRateProfile(target*ratescale),ArrivalProcess.newArrivalProcess(props),1,false);
+				}
+				catch (IOException e)
+				{
+					throw new WorkloadException(e);
+				}
+			}
+
+			c._workload=new CoreWorkload();
+			c._workload.sharedtrace=true;
+			c._workload.init(props);
+
+			//all classes work on the same records: they insert with one sequence, and none of them
+			//chooses a record that another one deleted
+			c._workload.transactioninsertkeysequence=load.transactioninsertkeysequence;
+			c._workload.deleted=load.deleted;
+			c._workload.keychooser=c._workload.createKeyChooser(c._workload.currentprops);
+
+			classes.add(c);
+		}
+	}
+
+	/**
+	 * The properties of the given class: the common ones, overridden by those set for the class.
+	 */
+	Properties classProperties(Properties p, String name) throws WorkloadException
+	{
+		Properties props=(Properties)p.clone();
+		String prefix=TENANT_PREFIX+name+".";
+		for (Enumeration e=p.propertyNames(); e.hasMoreElements(); )
+		{
+			String prop=(String)e.nextElement();
+			if (prop.startsWith(prefix))
+			{
+				props.setProperty(prop.substring(prefix.length()),p.getProperty(prop));
+			}
+		}
+
+		if ( (props.getProperty(CoreWorkload.TABLENAME_PROPERTY)!=null) && (!props.getProperty(CoreWorkload.TABLENAME_PROPERTY).equals(p.getProperty(CoreWorkload.TABLENAME_PROPERTY))) )
+		{
+			throw new WorkloadException("The table cannot be set per tenant class");
+		}
+		if (p.getProperty(prefix+CoreWorkload.WORKLOAD_PATH_PROPERTY)!=null)
+		{
+			throw new WorkloadException("A trace cannot be replayed with "+getClass().getName()+"; replay it with "+CoreWorkload.class.getName());
+		}
+		return props;
+	}
+
+	public Object initThread(Properties p, int mythreadid, int threadcount) throws WorkloadException
+	{
+		TenantState state=new TenantState();
+		state._class=classOf(mythreadid,threadcount);
+		state._loadstate=load.initThread(p,mythreadid,threadcount);
+		state._classstate=state._class._workload.initThread(p,mythreadid,threadcount);
+		return state;
+	}
+
+	/**
+	 * The class that the given client thread runs.
+	 */
+	TenantClass classOf(int threadid, int threadcount) throws WorkloadException
+	{
+		int set=0;
+		int total=0;
+		for (TenantClass c : classes)
+		{
+			if (c._threads>0)
+			{
+				set++;
+				total+=c._threads;
+			}
+		}
+
+		if (set==0)
+		{
+			if (threadcount<classes.size())
+			{
+				throw new WorkloadException("Running "+classes.size()+" tenant classes takes at least as many threads, not "+threadcount);
+			}
+			//an even share, as for the coordinator's workers
+			return classes.get((int)(((long)threadid)*classes.size()/threadcount));
+		}
+
+		if ( (set<classes.size()) || (total!=threadcount) )
+		{
+			throw new WorkloadException("Set "+TENANT_PREFIX+"<class>."+THREADS_PROPERTY+" for all the tenant classes, adding up to the "+threadcount+" threads, or for none of them");
+		}
+		for (TenantClass c : classes)
+		{
+			if (threadid<c._threads)
+			{
+				return c;
+			}
+			threadid-=c._threads;
+		}
+		return classes.lastElement();
+	}
+
+	/**
+	 * Change the configuration of all classes. Properties set for a class change only that class.
+	 */
+	public synchronized void reconfigure(Properties p) throws WorkloadException
+	{
+		//check the targets before changing anything
+		for (TenantClass c : classes)
+		{
+			String target=p.getProperty(TENANT_PREFIX+c._name+"."+TARGET_PROPERTY);
+			if ( (target!=null) && (c._bucket==null) )
+			{
+				throw new WorkloadException("Tenant class "+c._name+" was started without a target, so its target cannot be changed");
+			}
+			if ( (target!=null) && (Double.parseDouble(target)<=0) )
+			{
+				throw new WorkloadException("The target of tenant class "+c._name+" can only be changed to a rate above 0, not "+target);
+			}
+		}
+
+		for (TenantClass c : classes)
+		{
+			String prefix=TENANT_PREFIX+c._name+".";
+			Properties props=new Properties();
+			for (Enumeration e=p.propertyNames(); e.hasMoreElements(); )
+			{
+				String prop=(String)e.nextElement();
+				if (!prop.startsWith(TENANT_PREFIX))
+				{
+					props.setProperty(prop,p.getProperty(prop));
+				}
+			}
+			for (Enumeration e=p.propertyNames(); e.hasMoreElements(); )
+			{
+				String prop=(String)e.nextElement();
+				if ( (prop.startsWith(prefix)) && (prop.compareTo(prefix+TARGET_PROPERTY)!=0) )
+				{
+					props.setProperty(prop.substring(prefix.length()),p.getProperty(prop));
+				}
+			}
+
+			String target=p.getProperty(prefix+TARGET_PROPERTY);
+			c._workload.reconfigure(props);
+			if (target!=null)
+			{
+				c._bucket.setProfile(new ConstantRateProfile(Double.parseDouble(target)*ratescale));
+			}
+		}
+	}
+
+	public Properties checkpoint(Object[] threadstates)
+	{
+		Object[] loadstates=new Object[threadstates.length];
+		for (int i=0; i<threadstates.length; i++)
+		{
+			if (threadstates[i]!=null)
+			{
+				loadstates[i]=((TenantState)threadstates[i])._loadstate;
+			}
+		}
+		return load.checkpoint(loadstates);
+	}
+
+	public void resume(Properties checkpoint) throws WorkloadException
+	{
+		load.resume(checkpoint);
+	}
+
+	/**
+	 * Whether any class issues the given operation, or for operation@class, whether that class does.
+	 */
+	public boolean doesOperation(String operation)
+	{
+		int at=operation.lastIndexOf('@');
+		for (TenantClass c : classes)
+		{
+			if (at<0)
+			{
+				if (c._workload.doesOperation(operation))
+				{
+					return true;
+				}
+			}
+			else if (c._name.compareTo(operation.substring(at+1))==0)
+			{
+				return c._workload.doesOperation(operation.substring(0,at));
+			}
+		}
+		return false;
+	}
+
+	public boolean doInsert(DB db, Object threadstate)
+	{
+		return load.doInsert(db,((TenantState)threadstate)._loadstate);
+	}
+
+	public boolean doTransaction(DB db, Object threadstate)
+	{
+		TenantState state=(TenantState)threadstate;
+		TenantClass c=state._class;
+
+		Measurements measurements=Measurements.getMeasurements();
+		measurements.setTenantClass(c._name);
+
+		//measure from when the class's schedule meant the operation to start, not from when a thread got to it
+		long intended=measurements.getIntendedStartTime();
+		if (c._bucket!=null)
+		{
+			long token=c._bucket.acquire();
+			long now;
+			boolean slept=false;
+			while ((now=System.nanoTime())<token)
+			{
+				LockSupport.parkNanos(token-now);
+				slept=true;
+			}
+			if (slept)
+			{
+				ClientMonitor.schedulingLag(now-token);
+			}
+			c._bucket.issued();
+			measurements.setIntendedStartTime(token);
+		}
+
+		boolean ret;
+		try
+		{
+			ret=c._workload.doTransaction(db,state._classstate);
+		}
+		finally
+		{
+			measurements.setIntendedStartTime(intended);
+		}
+		measurements.count(c._counter,1);
+		return ret;
+	}
+}
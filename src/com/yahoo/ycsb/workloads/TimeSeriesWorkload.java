@@ -0,0 +1,410 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.workloads;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.yahoo.ycsb.Client;
+import com.yahoo.ycsb.Coordinator;
+import com.yahoo.ycsb.DB;
+import com.yahoo.ycsb.Utils;
+import com.yahoo.ycsb.Workload;
+import com.yahoo.ycsb.WorkloadException;
+import com.yahoo.ycsb.generator.AliasSampler;
+
+import org.apache.cassandra.db.SchedulerParameter;
+
+/**
+ * Time-series ingestion: a number of series, each receiving points with increasing timestamps, while reads
+ * and scans go to the most recent points of a series. Point i of series s has the key
+ * "series&lt;s&gt;:&lt;timestamp&gt;", both zero padded so that the keys of a series sort by time; scans need
+ * a store that keeps keys in order (for Cassandra, the OrderPreservingPartitioner).
+ *
+ * Each series is written by one client thread only (series s by thread s modulo the number of threads), which
+ * keeps its own count of the points of its series and publishes the latest one for the readers. So there is
+ * no counter shared by all inserts, and the ingestion throughput grows with the number of threads. The load
+ * phase spreads recordcount points evenly over the series, each thread inserting its own range of them, and
+ * the run phase continues every series from there. In a coordinated run, the series are shared out among the
+ * threads of all the workers (which must all run the same number of threads); a worker only sees the points
+ * that other workers add to their series as of the load.
+ *
+ * Properties to control the workload, in addition to table, fieldcount, fieldlength, readallfields and the
+ * bounds for the scheduler parameters of reads, as for CoreWorkload:
+ * <UL>
+ * <LI><b>seriescount</b>: the number of series; at least the number of client threads, of all the workers of a
+ * coordinated run (default: 100)
+ * <LI><b>pointspersecond</b>: how many points a series has per second of its time, which spaces the timestamps
+ * of its points; how fast they are written depends on the target throughput (default: 1)
+ * <LI><b>windowsize</b>: the most recent part of a series that reads and scans go to, in seconds (default: 60)
+ * <LI><b>insertproportion</b>: what proportion of operations append a point to a series (default: 0.9)
+ * <LI><b>readproportion</b>: what proportion of operations read one point from the window of a series (default: 0.08)
+ * <LI><b>scanproportion</b>: what proportion of operations scan the whole window of a series (default: 0.02)
+ * </UL>
+ * The proportions and the window size can be changed while running (see reconfigure()).
+ */
+public class TimeSeriesWorkload extends Workload
+{
+	public static final String SERIES_COUNT_PROPERTY="seriescount";
+
+	public static final String SERIES_COUNT_PROPERTY_DEFAULT="100";
+
+	public static final String POINTS_PER_SECOND_PROPERTY="pointspersecond";
+
+	public static final String POINTS_PER_SECOND_PROPERTY_DEFAULT="1";
+
+	public static final String WINDOW_SIZE_PROPERTY="windowsize";
+
+	public static final String WINDOW_SIZE_PROPERTY_DEFAULT="60";
+
+	public static final String INSERT_PROPORTION_PROPERTY_DEFAULT="0.9";
+
+	public static final String READ_PROPORTION_PROPERTY_DEFAULT="0.08";
+
+	public static final String SCAN_PROPORTION_PROPERTY_DEFAULT="0.02";
+
+	/**
+	 * The number of digits of a timestamp in a key, enough for any time in milliseconds until the year 2286.
+	 */
+	static final int TIMESTAMP_DIGITS=13;
+
+	String table;
+	int fieldcount;
+	int fieldlength;
+	boolean readallfields;
+	String[] fieldnames;
+
+	int seriescount;
+	int seriesdigits;
+
+	/**
+	 * The time between two points of a series, in milliseconds.
+	 */
+	long interval;
+
+	/**
+	 * The number of points in the window.
+	 */
+	volatile int windowpoints;
+
+	volatile AliasSampler<CoreWorkload.Operation> operationchooser;
+
+	/**
+	 * The latest point of each series, -1 for none. Each entry is only written by the thread that owns the
+	 * series, so a lazy set is enough to publish it.
+	 */
+	AtomicLongArray latest;
+
+	int insertstart;
+	int insertcount;
+
+	volatile SchedulerBounds bounds;
+
+	/**
+	 * The properties in effect, to which reconfigure() applies its changes.
+	 */
+	Properties currentprops;
+
+	/**
+	 * What one client thread keeps from one operation to the next.
+	 */
+	static class SeriesState
+	{
+		Random _random=new Random();
+		StringBuilder _key=new StringBuilder();
+		byte[] _value;
+		SchedulerParameter _parameters=new SchedulerParameter();
+
+		/**
+		 * The series this thread appends to, and the next point of each.
+		 */
+		int[] _series;
+		long[] _next;
+
+		/**
+		 * The series of _series that gets the next point.
+		 */
+		int _current;
+
+		/**
+		 * The load points of this thread: the next one, and the end of its range.
+		 */
+		long _load;
+		long _loadend;
+	}
+
+	public void init(Properties p) throws WorkloadException
+	{
+		table=p.getProperty(CoreWorkload.TABLENAME_PROPERTY,CoreWorkload.TABLENAME_PROPERTY_DEFAULT);
+		fieldcount=Integer.parseInt(p.getProperty(CoreWorkload.FIELD_COUNT_PROPERTY,CoreWorkload.FIELD_COUNT_PROPERTY_DEFAULT));
+		fieldlength=Integer.parseInt(p.getProperty(CoreWorkload.FIELD_LENGTH_PROPERTY,CoreWorkload.FIELD_LENGTH_PROPERTY_DEFAULT));
+		readallfields=Boolean.parseBoolean(p.getProperty(CoreWorkload.READ_ALL_FIELDS_PROPERTY,CoreWorkload.READ_ALL_FIELDS_PROPERTY_DEFAULT));
+		fieldnames=new String[fieldcount];
+		for (int i=0; i<fieldcount; i++)
+		{
+			fieldnames[i]="field"+i;
+		}
+
+		seriescount=Integer.parseInt(p.getProperty(SERIES_COUNT_PROPERTY,SERIES_COUNT_PROPERTY_DEFAULT));
+		if (seriescount<=0)
+		{
+			throw new WorkloadException(SERIES_COUNT_PROPERTY+" must be more than 0");
+		}
+		seriesdigits=Integer.toString(seriescount-1).length();
+
+		double pointspersecond=Double.parseDouble(p.getProperty(POINTS_PER_SECOND_PROPERTY,POINTS_PER_SECOND_PROPERTY_DEFAULT));
+		interval=Math.round(1000/pointspersecond);
+		if ( (pointspersecond<=0) || (interval<1) )
+		{
+			throw new WorkloadException(POINTS_PER_SECOND_PROPERTY+" must be more than 0 and at most 1000");
+		}
+
+		int recordcount=Integer.parseInt(p.getProperty(Client.RECORD_COUNT_PROPERTY,"0"));
+		insertstart=Integer.parseInt(p.getProperty(INSERT_START_PROPERTY,INSERT_START_PROPERTY_DEFAULT));
+		insertcount=Integer.parseInt(p.getProperty(Client.INSERT_COUNT_PROPERTY,Integer.toString(recordcount-insertstart)));
+
+		//the series as the load phase leaves them: point n of the load goes to series n%seriescount
+		latest=new AtomicLongArray(seriescount);
+		for (int s=0; s<seriescount; s++)
+		{
+			latest.set(s,pointsLoaded(s,recordcount)-1);
+		}
+
+		currentprops=(Properties)p.clone();
+		configure(p);
+	}
+
+	/**
+	 * The number of points of the given series among the first n points of the load phase.
+	 */
+	long pointsLoaded(int series, long n)
+	{
+		return n/seriescount+((series<n%seriescount)?1:0);
+	}
+
+	/**
+	 * Set the operation mix, the window and the scheduler parameters from the given properties.
+	 */
+	void configure(Properties p) throws WorkloadException
+	{
+		double insertproportion=Double.parseDouble(p.getProperty(CoreWorkload.INSERT_PROPORTION_PROPERTY,INSERT_PROPORTION_PROPERTY_DEFAULT));
+		double readproportion=Double.parseDouble(p.getProperty(CoreWorkload.READ_PROPORTION_PROPERTY,READ_PROPORTION_PROPERTY_DEFAULT));
+		double scanproportion=Double.parseDouble(p.getProperty(CoreWorkload.SCAN_PROPORTION_PROPERTY,SCAN_PROPORTION_PROPERTY_DEFAULT));
+		if (insertproportion+readproportion+scanproportion<=0)
+		{
+			throw new WorkloadException("The operation proportions add up to 0");
+		}
+
+		AliasSampler<CoreWorkload.Operation> chooser=new AliasSampler<CoreWorkload.Operation>();
+		if (insertproportion>0)
+		{
+			chooser.addValue(insertproportion,CoreWorkload.Operation.INSERT);
+		}
+		if (readproportion>0)
+		{
+			chooser.addValue(readproportion,CoreWorkload.Operation.READ);
+		}
+		if (scanproportion>0)
+		{
+			chooser.addValue(scanproportion,CoreWorkload.Operation.SCAN);
+		}
+
+		double windowsize=Double.parseDouble(p.getProperty(WINDOW_SIZE_PROPERTY,WINDOW_SIZE_PROPERTY_DEFAULT));
+		int points=(int)Math.max(1,Math.round(windowsize*1000/interval));
+
+		operationchooser=chooser;
+		windowpoints=points;
+		bounds=new SchedulerBounds(p);
+	}
+
+	/**
+	 * Change the operation mix, the window size or the bounds of the scheduler parameters. The number of
+	 * series and their spacing cannot change, as the keys already written depend on them.
+	 */
+	public synchronized void reconfigure(Properties p) throws WorkloadException
+	{
+		if ( (p.getProperty(SERIES_COUNT_PROPERTY)!=null) || (p.getProperty(POINTS_PER_SECOND_PROPERTY)!=null) )
+		{
+			throw new WorkloadException(SERIES_COUNT_PROPERTY+" and "+POINTS_PER_SECOND_PROPERTY+" cannot be changed while running");
+		}
+
+		Properties newprops=(Properties)currentprops.clone();
+		newprops.putAll(p);
+		configure(newprops);
+		currentprops=newprops;
+	}
+
+	public Object initThread(Properties p, int mythreadid, int threadcount) throws WorkloadException
+	{
+		//in a coordinated run, the threads of all the workers share out the series
+		int worker=Integer.parseInt(p.getProperty(Coordinator.WORKER_ID_PROPERTY,"0"));
+		int writer=worker*threadcount+mythreadid;
+		int writers=Integer.parseInt(p.getProperty(Coordinator.WORKER_COUNT_PROPERTY,"1"))*threadcount;
+		if (seriescount<writers)
+		{
+			throw new WorkloadException("Each thread appends to series of its own, so "+SERIES_COUNT_PROPERTY+" ("+seriescount+") must be at least the number of threads of all workers ("+writers+")");
+		}
+
+		SeriesState state=new SeriesState();
+		state._value=new byte[fieldlength];
+
+		int owned=(seriescount-writer+writers-1)/writers;
+		state._series=new int[owned];
+		state._next=new long[owned];
+		for (int i=0; i<owned; i++)
+		{
+			state._series[i]=writer+i*writers;
+			state._next[i]=latest.get(state._series[i])+1;
+		}
+
+		//the same split of the load as the client's, which gives the first threads one more insert each
+		state._load=insertstart+((long)mythreadid)*(insertcount/threadcount)+Math.min(mythreadid,insertcount%threadcount);
+		state._loadend=state._load+insertcount/threadcount+((mythreadid<insertcount%threadcount)?1:0);
+		return state;
+	}
+
+	/**
+	 * The key of the given point of the given series.
+	 */
+	String keyName(SeriesState state, int series, long point)
+	{
+		StringBuilder key=state._key;
+		key.setLength(0);
+		key.append("series");
+		pad(key,Integer.toString(series),seriesdigits);
+		key.append(':');
+		pad(key,Long.toString(point*interval),TIMESTAMP_DIGITS);
+		return key.toString();
+	}
+
+	static void pad(StringBuilder sb, String digits, int width)
+	{
+		for (int i=digits.length(); i<width; i++)
+		{
+			sb.append('0');
+		}
+		sb.append(digits);
+	}
+
+	HashMap<String,String> buildValues(SeriesState state)
+	{
+		HashMap<String,String> values=new HashMap<String,String>();
+		for (int i=0; i<fieldcount; i++)
+		{
+			values.put(fieldnames[i],Utils.ASCIIString(state._value,state._random));
+		}
+		return values;
+	}
+
+	HashSet<String> readFields(SeriesState state)
+	{
+		if (readallfields)
+		{
+			return null;
+		}
+		HashSet<String> fields=new HashSet<String>();
+		fields.add(fieldnames[state._random.nextInt(fieldcount)]);
+		return fields;
+	}
+
+	/**
+	 * Insert the next point of this thread's part of the load.
+	 */
+	public boolean doInsert(DB db, Object threadstate)
+	{
+		SeriesState state=(SeriesState)threadstate;
+		if (state._load>=state._loadend)
+		{
+			return false;
+		}
+		long n=state._load++;
+		String key=keyName(state,(int)(n%seriescount),n/seriescount);
+		return db.insert(table,key,buildValues(state))==0;
+	}
+
+	public boolean doTransaction(DB db, Object threadstate)
+	{
+		SeriesState state=(SeriesState)threadstate;
+		switch (operationchooser.next())
+		{
+		case INSERT:
+			doTransactionAppend(db,state);
+			break;
+		case READ:
+			doTransactionRead(db,state);
+			break;
+		case SCAN:
+			doTransactionScan(db,state);
+			break;
+		default:
+			break;
+		}
+		return true;
+	}
+
+	/**
+	 * Append the next point to the next of this thread's series, in turn.
+	 */
+	void doTransactionAppend(DB db, SeriesState state)
+	{
+		int i=state._current;
+		state._current=(i+1)%state._series.length;
+
+		int series=state._series[i];
+		long point=state._next[i];
+		if (db.insert(table,keyName(state,series,point),buildValues(state))==0)
+		{
+			state._next[i]=point+1;
+			latest.lazySet(series,point);
+		}
+	}
+
+	/**
+	 * Read one point, chosen uniformly from the window of a random series.
+	 */
+	void doTransactionRead(DB db, SeriesState state)
+	{
+		int series=state._random.nextInt(seriescount);
+		long last=Math.max(0,latest.get(series));
+		long first=Math.max(0,last-windowpoints+1);
+		long point=first+(long)(state._random.nextDouble()*(last-first+1));
+
+		bounds.draw(state._parameters,state._random);
+
+		HashMap<String,String> result=new HashMap<String,String>();
+		result.put("para",state._parameters.toString());
+		db.read(table,keyName(state,series,point),readFields(state),result);
+	}
+
+	/**
+	 * Scan the whole window of a random series, oldest point first.
+	 */
+	void doTransactionScan(DB db, SeriesState state)
+	{
+		int series=state._random.nextInt(seriescount);
+		long last=Math.max(0,latest.get(series));
+		long first=Math.max(0,last-windowpoints+1);
+
+		Vector<HashMap<String,String>> result=new Vector<HashMap<String,String>>();
+		db.scan(table,keyName(state,series,first),(int)(last-first+1),readFields(state),result);
+	}
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.util.Properties;
+
+import com.yahoo.ycsb.generator.AliasSamplerCheck;
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.OneMeasurementHistogramCheck;
+import com.yahoo.ycsb.rate.MMPPArrivalProcessCheck;
+import com.yahoo.ycsb.rate.TokenBucketCheck;
+import com.yahoo.ycsb.workloads.CheckpointCheck;
+
+/**
+ * Runs the self-checks: small, deterministic checks of the parts of the client whose mistakes would not
+ * show up as errors, only as wrong numbers. Run with "ant check"; exits with an exception at the first
+ * check that fails.
+ */
+public class Checks
+{
+	/**
+	 * Fail the running check with the given message unless the condition holds.
+	 */
+	public static void check(boolean condition, String message)
+	{
+		if (!condition)
+		{
+			throw new IllegalStateException("Check failed: "+message);
+		}
+	}
+
+	public static void main(String[] args) throws Exception
+	{
+		Measurements.setProperties(new Properties());
+
+		TokenBucketCheck.main(args);
+		System.out.println("TokenBucket: ok");
+
+		MMPPArrivalProcessCheck.main(args);
+		System.out.println("MMPPArrivalProcess: ok");
+
+		AliasSamplerCheck.main(args);
+		System.out.println("AliasSampler: ok");
+
+		OneMeasurementHistogramCheck.main(args);
+		System.out.println("OneMeasurementHistogram: ok");
+
+		CheckpointCheck.main(args);
+		System.out.println("Checkpoint: ok");
+
+		DBConnectionPoolCheck.main(args);
+		System.out.println("DBConnectionPool: ok");
+	}
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import static com.yahoo.ycsb.Checks.check;
+
+import java.util.Vector;
+
+/**
+ * Checks that sessions waiting for a connection of the pool get one in the order of their priorities,
+ * earliest deadline first, and in the order they came when their priorities are the same.
+ */
+public class DBConnectionPoolCheck
+{
+	public static void main(String[] args) throws InterruptedException
+	{
+		Vector<DB> dbs=new Vector<DB>();
+		dbs.add(new NoopDB());
+		final DBConnectionPool pool=new DBConnectionPool(dbs,0,"edf");
+		check(pool.priority(1000,null)==1000,"an operation without scheduler parameters is due when generated");
+
+		//take the only connection, so that every session has to wait
+		DB db=pool.checkout(0);
+
+		long[] priorities={30,10,20,10,5};
+		final Vector<Long> order=new Vector<Long>();
+		Vector<Thread> sessions=new Vector<Thread>();
+		for (int i=0; i<priorities.length; i++)
+		{
+			final long priority=priorities[i];
+			final long seq=i;
+			Thread session=new Thread()
+			{
+				public void run()
+				{
+					DB connection=pool.checkout(priority);
+					order.add(priority*10+seq);
+					pool.checkin(connection);
+				}
+			};
+			session.start();
+			sessions.add(session);
+
+			//queue the sessions one at a time, so that their arrival order is known
+			while (waiting(pool)<i+1)
+			{
+				Thread.sleep(1);
+			}
+		}
+
+		pool.checkin(db);
+		for (Thread session : sessions)
+		{
+			session.join();
+		}
+
+		long[] expected={54,101,103,202,300};
+		for (int i=0; i<expected.length; i++)
+		{
+			check(order.get(i)==expected[i],"session "+(order.get(i)%10)+" of priority "+(order.get(i)/10)+" got connection "+i+", instead of session "+(expected[i]%10));
+		}
+	}
+
+	static int waiting(DBConnectionPool pool)
+	{
+		pool._lock.lock();
+		try
+		{
+			return pool._waiters.size();
+		}
+		finally
+		{
+			pool._lock.unlock();
+		}
+	}
+}
@@ -0,0 +1,83 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.generator;
+
+import static com.yahoo.ycsb.Checks.check;
+
+/**
+ * Checks that the alias table of an AliasSampler gives every value exactly its share of the weight. The
+ * probabilities are read off the table rather than sampled, so the check does not depend on chance.
+ */
+public class AliasSamplerCheck
+{
+	public static void main(String[] args)
+	{
+		double[][] weightsets={{1},{0.95,0.05},{0.5,0.5,0,0},{1,2,3,4,5,6,7},{0.001,1000,0.5}};
+		for (double[] weights : weightsets)
+		{
+			AliasSampler<Integer> sampler=new AliasSampler<Integer>();
+			double total=0;
+			for (int i=0; i<weights.length; i++)
+			{
+				sampler.addValue(weights[i],i);
+				total+=weights[i];
+			}
+
+			double[] probabilities=probabilities(sampler,weights.length);
+			for (int i=0; i<weights.length; i++)
+			{
+				check(Math.abs(probabilities[i]-weights[i]/total)<1e-9,"value "+i+" of weights "+format(weights)+" is chosen with probability "+probabilities[i]+" instead of "+(weights[i]/total));
+				check(sampler.contains(i)==(weights[i]>0),"contains("+i+") for weights "+format(weights));
+			}
+
+			for (int n=0; n<1000; n++)
+			{
+				int value=sampler.next();
+				check(weights[value]>0,"value "+value+" of weight 0 was chosen");
+			}
+		}
+	}
+
+	/**
+	 * The probability of each value 0..count-1, from the slots of the table.
+	 */
+	static double[] probabilities(AliasSampler<Integer> sampler, int count)
+	{
+		double[] probabilities=new double[count];
+		int slots=sampler._slots.length;
+		for (int s=0; s<slots; s++)
+		{
+			probabilities[(Integer)sampler._slots[s]]+=sampler._probabilities[s]/slots;
+			if (sampler._probabilities[s]<1)
+			{
+				probabilities[(Integer)sampler._aliases[s]]+=(1-sampler._probabilities[s])/slots;
+			}
+		}
+		return probabilities;
+	}
+
+	static String format(double[] weights)
+	{
+		StringBuilder s=new StringBuilder();
+		for (double w : weights)
+		{
+			s.append((s.length()>0)?",":"").append(w);
+		}
+		return s.toString();
+	}
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import static com.yahoo.ycsb.Checks.check;
+
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * Checks the bucket layout of OneMeasurementHistogram, and that merging the histograms of several clients
+ * gives the same histogram as measuring everything in one.
+ */
+public class OneMeasurementHistogramCheck
+{
+	public static void main(String[] args)
+	{
+		Properties props=new Properties();
+
+		//buckets are in order, and each value falls in the bucket that starts at or below it
+		OneMeasurementHistogram layout=new OneMeasurementHistogram("LAYOUT",props);
+		int previous=-1;
+		for (int b=0; b<layout._buckets; b++)
+		{
+			int value=layout.bucketValue(b);
+			check(value>previous,"bucket "+b+" starts at "+value+", not after bucket "+(b-1)+" at "+previous);
+			check(layout.bucket(value/layout._bucketwidth)==b,"the start of bucket "+b+" falls in bucket "+layout.bucket(value/layout._bucketwidth));
+			previous=value;
+		}
+
+		//measured in three histograms and merged, or all in one
+		Random random=new Random(1);
+		OneMeasurementHistogram all=new OneMeasurementHistogram("READ",props);
+		OneMeasurementHistogram[] parts=new OneMeasurementHistogram[3];
+		for (int i=0; i<parts.length; i++)
+		{
+			parts[i]=new OneMeasurementHistogram("READ",props);
+		}
+		int[] latencies=new int[100000];
+		for (int n=0; n<latencies.length; n++)
+		{
+			//log-normal around 3 ms, with some beyond the range of the histogram
+			latencies[n]=(int)Math.exp(8+1.5*random.nextGaussian());
+			int code=(n%97==0) ? -1 : 0;
+			all.measure(latencies[n]);
+			all.reportReturnCode(code);
+			parts[n%parts.length].measure(latencies[n]);
+			parts[n%parts.length].reportReturnCode(code);
+		}
+
+		OneMeasurementHistogram merged=new OneMeasurementHistogram("READ",props);
+		for (OneMeasurementHistogram part : parts)
+		{
+			merged.merge(part);
+		}
+		check(Arrays.equals(merged.getCounts(),all.getCounts()),"the merged bucket counts differ from those measured in one histogram");
+		check(merged.getOperations()==all.getOperations(),"merged "+merged.getOperations()+" operations, not "+all.getOperations());
+		check(merged.getErrors()==all.getErrors(),"merged "+merged.getErrors()+" errors, not "+all.getErrors());
+		check(merged.totallatency.sum()==all.totallatency.sum(),"the merged total latency differs");
+		check( (merged.min.get()==all.min.get()) && (merged.max.get()==all.max.get()),"the merged min or max differs");
+
+		//the percentiles are within a bucket of the exact ones
+		Arrays.sort(latencies);
+		for (double p : new double[] {50,95,99,99.9})
+		{
+			int exact=latencies[(int)Math.ceil(p/100*latencies.length)-1];
+			int reported=merged.getPercentile(p);
+			check(merged.getPercentile(p)==all.getPercentile(p),"the merged p"+p+" differs");
+			if (exact<1000000)
+			{
+				check( (reported<=exact) && (exact-reported<=Math.max(merged._bucketwidth,exact/128)),"p"+p+" is "+reported+" us, but "+exact+" us exactly");
+			}
+			else
+			{
+				check(reported==merged.max.get(),"p"+p+" is beyond the histogram, but reported as "+reported+" us, not the max");
+			}
+		}
+
+		//histograms with different layouts cannot be merged
+		Properties wide=new Properties();
+		wide.setProperty(OneMeasurementHistogram.BUCKET_WIDTH,"100");
+		try
+		{
+			merged.merge(new OneMeasurementHistogram("READ",wide));
+			check(false,"histograms with different bucket widths were merged");
+		}
+		catch (IllegalArgumentException e)
+		{
+			//expected
+		}
+	}
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.rate;
+
+import static com.yahoo.ycsb.Checks.check;
+
+import java.util.Random;
+
+/**
+ * Checks that the bursts of an MMPP arrival process do not change its mean rate: over a long stretch of
+ * simulated time, it issues the rate asked for.
+ */
+public class MMPPArrivalProcessCheck
+{
+	public static void main(String[] args)
+	{
+		double[][] rates={{0.5,5},{0,1},{1,1}};
+		double[][] durations={{9,1},{1,1},{2,3}};
+		for (int i=0; i<rates.length; i++)
+		{
+			MMPPArrivalProcess process=new MMPPArrivalProcess(rates[i],durations[i]);
+			process._random=new Random(i);
+
+			//20000 simulated seconds at 1000 ops/sec, thousands of visits to each state
+			long end=20000L*1000000000L;
+			long time=0;
+			long arrivals=0;
+			while (time<end)
+			{
+				time+=process.nextInterArrival(time,1000);
+				arrivals++;
+			}
+			double mean=arrivals/20000.0;
+			check(Math.abs(mean-1000)<20,"MMPP with rates "+rates[i][0]+","+rates[i][1]+" and durations "+durations[i][0]+","+durations[i][1]+" issued "+mean+" ops/sec instead of 1000");
+		}
+
+		try
+		{
+			new MMPPArrivalProcess(new double[] {0,0},new double[] {1,1});
+			check(false,"an MMPP without any arrivals was accepted");
+		}
+		catch (IllegalArgumentException e)
+		{
+			//expected
+		}
+	}
+}
@@ -0,0 +1,70 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.rate;
+
+import static com.yahoo.ycsb.Checks.check;
+
+/**
+ * Checks that the token bucket keeps to the schedule when running open-loop, and lets at most its size
+ * of unused tokens pile up when running closed-loop.
+ */
+public class TokenBucketCheck
+{
+	static final long INTERVAL=1000000;
+
+	public static void main(String[] args)
+	{
+		//open-loop: every token is exactly one interval after the previous one, however far behind we are
+		TokenBucket bucket=new TokenBucket(new ConstantRateProfile(1000),new UniformArrivalProcess(),1,true);
+		long first=bucket.acquire();
+		bucket._next-=1000*INTERVAL;
+		first-=1000*INTERVAL;
+		for (int i=1; i<=1000; i++)
+		{
+			long token=bucket.acquire();
+			check(token-first==i*INTERVAL,"open-loop token "+i+" is "+(token-first)+" ns after the first");
+		}
+
+		//closed-loop: after falling a second behind, the backlog is cut to the bucket size
+		bucket=new TokenBucket(new ConstantRateProfile(1000),new UniformArrivalProcess(),5,false);
+		bucket.acquire();
+		bucket._next-=1000*INTERVAL;
+		long before=System.nanoTime();
+		long last=bucket.acquire();
+		check(last>=before-4*INTERVAL,"closed-loop token "+(before-last)+" ns overdue, more than the 4 intervals a bucket of 5 allows");
+		for (int i=0; i<10; i++)
+		{
+			long token=bucket.acquire();
+			check(token-last>=INTERVAL,"closed-loop tokens only "+(token-last)+" ns apart");
+			last=token;
+		}
+
+		//while the rate is 0, a stopped bucket returns at once instead of waiting for the next token
+		RateProfile idle=new RateProfile()
+		{
+			public double getRate(double t)
+			{
+				return 0;
+			}
+		};
+		bucket=new TokenBucket(idle,new UniformArrivalProcess(),1,false);
+		bucket.stop();
+		before=System.nanoTime();
+		check(bucket.acquire()>=before,"a stopped bucket handed out a token from the past");
+	}
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.workloads;
+
+import static com.yahoo.ycsb.Checks.check;
+
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+
+import com.yahoo.ycsb.Client;
+import com.yahoo.ycsb.DB;
+import com.yahoo.ycsb.WorkloadException;
+
+/**
+ * Checks that a load phase interrupted and resumed from a checkpoint inserts every record exactly once.
+ */
+public class CheckpointCheck
+{
+	/**
+	 * Counts the inserts of each key.
+	 */
+	static class CountingDB extends DB
+	{
+		HashMap<String,Integer> _inserts=new HashMap<String,Integer>();
+
+		public int read(String table, String key, Set<String> fields, HashMap<String,String> result)
+		{
+			return 0;
+		}
+
+		public int scan(String table, String startkey, int recordcount, Set<String> fields, Vector<HashMap<String,String>> result)
+		{
+			return 0;
+		}
+
+		public int update(String table, String key, HashMap<String,String> values)
+		{
+			return 0;
+		}
+
+		public int insert(String table, String key, HashMap<String,String> values)
+		{
+			Integer n=_inserts.get(key);
+			_inserts.put(key,(n==null) ? 1 : n+1);
+			return 0;
+		}
+
+		public int delete(String table, String key)
+		{
+			return 0;
+		}
+	}
+
+	public static void main(String[] args) throws WorkloadException
+	{
+		Properties props=new Properties();
+		props.setProperty(Client.RECORD_COUNT_PROPERTY,"100");
+		props.setProperty("threadcount","3");
+		props.setProperty(CoreWorkload.THREAD_KEY_RANGES_PROPERTY,"true");
+		props.setProperty(CoreWorkload.INSERT_BATCH_SIZE_PROPERTY,"4");
+		props.setProperty(CoreWorkload.TRACE_PROPERTY,"false");
+		CountingDB db=new CountingDB();
+
+		//the first run stops after thread 0 has inserted 3 batches and thread 1 one, and thread 2 has not started
+		CoreWorkload first=newWorkload(props,null);
+		Object[] states=new Object[3];
+		states[0]=first.initThread(props,0,3);
+		states[1]=first.initThread(props,1,3);
+		for (int i=0; i<3; i++)
+		{
+			first.doInsert(db,states[0]);
+		}
+		first.doInsert(db,states[1]);
+		Properties checkpoint=first.checkpoint(states);
+		check(checkpoint.getProperty("done").compareTo("16")==0,"the checkpoint has "+checkpoint.getProperty("done")+" records done, not 16");
+
+		//the second run resumes from the checkpoint and finishes the load
+		CoreWorkload second=newWorkload(props,checkpoint);
+		for (int t=0; t<3; t++)
+		{
+			Object state=second.initThread(props,t,3);
+			while (second.doInsert(db,state))
+			{
+			}
+		}
+
+		check(db._inserts.size()==100,db._inserts.size()+" records were inserted, not 100");
+		for (String key : db._inserts.keySet())
+		{
+			check(db._inserts.get(key)==1,"record "+key+" was inserted "+db._inserts.get(key)+" times");
+		}
+
+		//a checkpoint of a load with a different number of threads cannot be resumed
+		Properties other=new Properties();
+		other.putAll(props);
+		other.setProperty("threadcount","4");
+		try
+		{
+			newWorkload(other,checkpoint);
+			check(false,"a checkpoint of 3 threads was resumed with 4");
+		}
+		catch (WorkloadException e)
+		{
+			//expected
+		}
+	}
+
+	/**
+	 * A workload that leaves the trace file alone, resuming from the given checkpoint if it is not null.
+	 * It gets its own copy of the properties, since init() adds the trace file to them.
+	 */
+	static CoreWorkload newWorkload(Properties props, Properties checkpoint) throws WorkloadException
+	{
+		Properties p=new Properties();
+		p.putAll(props);
+		CoreWorkload workload=new CoreWorkload();
+		workload.sharedtrace=true;
+		if (checkpoint!=null)
+		{
+			workload.resume(checkpoint);
+		}
+		workload.init(p);
+		return workload;
+	}
+}